@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks headless and writes the results as JSON to out/jmh/results.json, unless the arguments
+ * specify a result format or file. All other arguments are passed on to JMH, e.g. a benchmark name filter
+ * or "-p map=1000 -p nestingDepth=2 -p cloneDensity=0.1" to restrict the maps.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-rf")) {
+            jmhArgs.addAll(Arrays.asList("-rf", "json"));
+        }
+        if (!jmhArgs.contains("-rff")) {
+            new java.io.File("out/jmh").mkdirs();
+            jmhArgs.addAll(Arrays.asList("-rff", "out/jmh/results.json"));
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
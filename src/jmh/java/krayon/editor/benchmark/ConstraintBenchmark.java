@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.benchmark;
+
+import com.yworks.yfiles.graph.IGraph;
+import com.yworks.yfiles.graph.INode;
+import krayon.editor.sbgn.model.SbgnConstraintManager;
+import krayon.editor.sbgn.model.SbgnDataKt;
+import krayon.editor.sbgn.model.SbgnType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Constraint checks as issued during arc creation and node conversion, for a fixed random sample of node pairs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ConstraintBenchmark {
+
+    private static final SbgnType[] ARC_TYPES = { SbgnType.CONSUMPTION, SbgnType.PRODUCTION, SbgnType.CATALYSIS, SbgnType.INHIBITION };
+    private static final int SAMPLE_SIZE = 200;
+
+    @Param({"1000", "10000", "50000"})
+    public String map;
+
+    /** complex nesting levels of synthetic maps, ignored for help diagrams */
+    @Param({"0", "2", "4"})
+    public int nestingDepth;
+
+    /** share of cloned entity pool nodes in synthetic maps, ignored for help diagrams */
+    @Param({"0.0", "0.1", "0.3"})
+    public double cloneDensity;
+
+    private IGraph graph;
+    private final List<INode> sources = new ArrayList<>();
+    private final List<INode> targets = new ArrayList<>();
+    private final SbgnConstraintManager constraintManager = SbgnConstraintManager.INSTANCE;
+
+    @Setup
+    public void setup() {
+        graph = BenchmarkFixtures.createMap(map, nestingDepth, cloneDensity);
+        List<INode> nodes = new ArrayList<>();
+        graph.getNodes().forEach(nodes::add);
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            sources.add(nodes.get(random.nextInt(nodes.size())));
+            targets.add(nodes.get(random.nextInt(nodes.size())));
+        }
+    }
+
+    @Benchmark
+    public void isValidTarget(Blackhole blackhole) {
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            INode target = targets.get(i);
+            for (SbgnType arcType : ARC_TYPES) {
+                blackhole.consume(constraintManager.isValidTarget(graph, sources.get(i), arcType, target, SbgnDataKt.getType(target), null));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getEdgeCreationHints(Blackhole blackhole) {
+        for (INode source : sources) {
+            blackhole.consume(constraintManager.getEdgeCreationHints(graph, source, null));
+        }
+    }
+
+    @Benchmark
+    public void getNodeConversionTypes(Blackhole blackhole) {
+        for (INode node : sources) {
+            blackhole.consume(constraintManager.getNodeConversionTypes(graph, node));
+        }
+    }
+}
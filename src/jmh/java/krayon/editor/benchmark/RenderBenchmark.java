@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.benchmark;
+
+import com.yworks.yfiles.view.GraphComponent;
+import com.yworks.yfiles.view.PixelImageExporter;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offscreen rendering of a whole map through the same exporter the graphics export uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+    @Param({"1000", "10000", "50000", "glycolysis"})
+    public String map;
+
+    /** complex nesting levels of synthetic maps, ignored for help diagrams */
+    @Param({"0", "2", "4"})
+    public int nestingDepth;
+
+    /** share of cloned entity pool nodes in synthetic maps, ignored for help diagrams */
+    @Param({"0.0", "0.1", "0.3"})
+    public double cloneDensity;
+
+    @Param({"2000"})
+    public int imageWidth;
+
+    private GraphComponent graphComponent;
+    private PixelImageExporter exporter;
+
+    @Setup
+    public void setup() {
+        graphComponent = new GraphComponent();
+        graphComponent.setGraph(BenchmarkFixtures.createMap(map, nestingDepth, cloneDensity));
+        graphComponent.updateContentRect();
+        exporter = new PixelImageExporter(graphComponent.getContentRect());
+        exporter.getConfiguration().setScale(exporter.getConfiguration().calculateScaleForWidth(imageWidth));
+    }
+
+    @Benchmark
+    public BufferedImage export() {
+        return exporter.exportToBitmap(graphComponent);
+    }
+}
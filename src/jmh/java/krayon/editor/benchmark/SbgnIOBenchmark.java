@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.benchmark;
+
+import com.yworks.yfiles.graph.DefaultGraph;
+import com.yworks.yfiles.graph.IGraph;
+import krayon.editor.sbgn.io.SbgnReader;
+import krayon.editor.sbgn.io.SbgnWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SbgnIOBenchmark {
+
+    @Param({"1000", "10000", "50000", "glycolysis", "camkii-signaling-pathway"})
+    public String map;
+
+    /** complex nesting levels of synthetic maps, ignored for help diagrams */
+    @Param({"0", "2", "4"})
+    public int nestingDepth;
+
+    /** share of cloned entity pool nodes in synthetic maps, ignored for help diagrams */
+    @Param({"0.0", "0.1", "0.3"})
+    public double cloneDensity;
+
+    private IGraph graph;
+    private byte[] sbgnml;
+
+    @Setup
+    public void setup() {
+        graph = BenchmarkFixtures.createMap(map, nestingDepth, cloneDensity);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new SbgnWriter(true).write(output, graph, null);
+        sbgnml = output.toByteArray();
+    }
+
+    @Benchmark
+    public IGraph read() {
+        IGraph result = new DefaultGraph();
+        new SbgnReader().read(new ByteArrayInputStream(sbgnml), result, null);
+        return result;
+    }
+
+    @Benchmark
+    public int write() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(sbgnml.length);
+        new SbgnWriter(true).write(output, graph, null);
+        return output.size();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.benchmark;
+
+import com.yworks.yfiles.graph.IGraph;
+import krayon.editor.base.style.GraphStyle;
+import krayon.editor.base.style.StyleManager;
+import krayon.editor.sbgn.io.SbgnStyleIO;
+import krayon.editor.sbgn.model.SbgnType;
+import krayon.editor.sbgn.style.SbgnBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class StyleBenchmark {
+
+    @Param({"1000", "10000", "50000", "glycolysis"})
+    public String map;
+
+    /** complex nesting levels of synthetic maps, ignored for help diagrams */
+    @Param({"0", "2", "4"})
+    public int nestingDepth;
+
+    /** share of cloned entity pool nodes in synthetic maps, ignored for help diagrams */
+    @Param({"0.0", "0.1", "0.3"})
+    public double cloneDensity;
+
+    private IGraph graph;
+    private StyleManager<SbgnType> styleManager;
+    private List<GraphStyle<SbgnType>> styles;
+    private int styleIndex;
+    private String css;
+
+    @Setup
+    public void setup() {
+        graph = BenchmarkFixtures.createMap(map, nestingDepth, cloneDensity);
+        styleManager = SbgnBuilder.INSTANCE.getStyleManager();
+        styles = BenchmarkFixtures.initStyles();
+        css = BenchmarkFixtures.readStyleCss(styles.get(styles.size() - 1).getName());
+    }
+
+    /**
+     * alternates between the bundled styles, so that every invocation actually changes the diagram.
+     */
+    @Benchmark
+    public IGraph applyStyle() {
+        styleIndex = (styleIndex + 1) % styles.size();
+        styleManager.applyStyle(styles.get(styleIndex), graph, true);
+        return graph;
+    }
+
+    @Benchmark
+    public Object readCss() {
+        return new SbgnStyleIO().readCss(new StringReader(css));
+    }
+
+    @Benchmark
+    public int writeCss() {
+        StringWriter writer = new StringWriter();
+        new SbgnStyleIO().writeStyleMap(writer, styles.get(0));
+        return writer.getBuffer().length();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.benchmark
+
+import com.yworks.yfiles.graph.DefaultGraph
+import com.yworks.yfiles.graph.IGraph
+import krayon.editor.base.style.GraphStyle
+import krayon.editor.sbgn.io.SbgnReader
+import krayon.editor.sbgn.io.SbgnStyleIO
+import krayon.editor.sbgn.model.SbgnMapGenerator
+import krayon.editor.sbgn.model.SbgnType
+import krayon.editor.sbgn.style.SbgnBuilder
+import java.io.InputStreamReader
+
+/**
+ * Shared setup for the benchmarks. Maps are either bundled help diagrams (given by file name without suffix)
+ * or synthetic maps (given by glyph count).
+ */
+object BenchmarkFixtures {
+
+    private const val helpDiagramPath = "/resources/help/diagrams"
+    private const val systemStylePath = "/resources/styles/read-only"
+
+    val styleNames:List<String> by lazy {
+        InputStreamReader(javaClass.getResourceAsStream("$systemStylePath/styles.list")).readLines().filter { it.isNotBlank() }
+    }
+
+    /**
+     * Registers the bundled styles with the style manager. The first one serves as default style, a role that
+     * is taken by the palette-derived style within the application.
+     */
+    @JvmStatic
+    fun initStyles():List<GraphStyle<SbgnType>> {
+        SbgnBuilder.styleManager.apply {
+            if(styles.isEmpty()) {
+                styleNames.forEachIndexed { index, name ->
+                    javaClass.getResourceAsStream("$systemStylePath/$name.css").use { stream ->
+                        if(index == 0) {
+                            val style = GraphStyle(name, true, SbgnStyleIO().readCss(InputStreamReader(stream)))
+                            normalizeStyle(style)
+                            addStyle(style)
+                        }
+                        else addStyleFromStream(stream, name, readOnly = true)
+                    }
+                }
+                currentStyle = styles.first()
+            }
+            return styles
+        }
+    }
+
+    @JvmStatic
+    fun readStyleCss(name:String):String {
+        return javaClass.getResourceAsStream("$systemStylePath/$name.css").use { InputStreamReader(it).readText() }
+    }
+
+    /**
+     * [nestingDepth] and [cloneDensity] only apply to synthetic maps, see [createSyntheticMap].
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun createMap(name:String, nestingDepth:Int = 2, cloneDensity:Double = 0.1):IGraph {
+        initStyles()
+        return name.toIntOrNull()?.let { createSyntheticMap(it, nestingDepth, cloneDensity) } ?: readHelpDiagram(name)
+    }
+
+    @JvmStatic
+    fun readHelpDiagram(name:String):IGraph {
+        val graph = DefaultGraph()
+        javaClass.getResourceAsStream("$helpDiagramPath/$name.sbgn").use { SbgnReader().read(it, graph, null) }
+        return graph
+    }
+
+    /**
+     * Creates a map with [SbgnMapGenerator]. Complexes nest up to [nestingDepth] levels. A share of [cloneDensity]
+     * of the entity pool nodes repeats an existing node and gets a clone marker.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun createSyntheticMap(glyphCount:Int, nestingDepth:Int = 2, cloneDensity:Double = 0.1, seed:Long = 42L):IGraph {
+        return SbgnMapGenerator(seed).apply {
+            this.glyphCount = glyphCount
+            maxComplexDepth = nestingDepth
+            cloneRatio = cloneDensity
+        }.generate()
+    }
+}
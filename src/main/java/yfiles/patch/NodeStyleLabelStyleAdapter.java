@@ -105,6 +105,7 @@ public class NodeStyleLabelStyleAdapter implements ILabelStyle, Cloneable {
       throw new NullPointerException();
     }
     nodeStyle = value;
+    invalidate();
   }
 
   /**
@@ -128,6 +129,7 @@ public class NodeStyleLabelStyleAdapter implements ILabelStyle, Cloneable {
       throw new NullPointerException();
     }
     labelStyle = value;
+    invalidate();
   }
 
   /**
@@ -152,6 +154,7 @@ public class NodeStyleLabelStyleAdapter implements ILabelStyle, Cloneable {
   @Obfuscation(exclude = true, stripAfterObfuscation = false)
   public final void setAutoFlippingEnabled( boolean value ) {
     autoFlip = value;
+    invalidate();
   }
 
   private InsetsD labelStyleInsets = new InsetsD();
@@ -176,6 +179,7 @@ public class NodeStyleLabelStyleAdapter implements ILabelStyle, Cloneable {
   @Obfuscation(exclude = true, stripAfterObfuscation = false)
   public final void setLabelStyleInsets( InsetsD value ) {
     this.labelStyleInsets = value;
+    invalidate();
   }
 
   public NodeStyleLabelStyleAdapter clone() {
@@ -187,5 +191,23 @@ public class NodeStyleLabelStyleAdapter implements ILabelStyle, Cloneable {
   }
 
   //region Add new code here
+
+  private int styleVersion;
+
+  /**
+   * Gets a counter that changes whenever the style is modified. Renderers compare it to decide whether cached
+   * visuals are still valid.
+   */
+  public final int getStyleVersion() {
+    return styleVersion;
+  }
+
+  /**
+   * Marks the style as modified. Needs to be called after changing the wrapped node or label style in place.
+   */
+  public final void invalidate() {
+    styleVersion++;
+  }
+
   //endregion END: new code
 }
@@ -45,10 +45,12 @@ import com.yworks.yfiles.graph.ITagOwner;
 import com.yworks.yfiles.graph.labelmodels.FreeLabelModel;
 import com.yworks.yfiles.graph.SimpleLabel;
 import com.yworks.yfiles.graph.SimpleNode;
+import com.yworks.yfiles.graph.styles.DefaultLabelStyle;
 import com.yworks.yfiles.graph.styles.ILabelStyle;
 import com.yworks.yfiles.graph.styles.ILabelStyleRenderer;
 import com.yworks.yfiles.graph.styles.INodeStyle;
 import com.yworks.yfiles.graph.styles.UIElementHelpers;
+import com.yworks.yfiles.utils.ICloneable;
 import com.yworks.yfiles.utils.MethodId;
 import com.yworks.yfiles.utils.Obfuscation;
 import com.yworks.yfiles.view.IBoundsProvider;
@@ -66,7 +68,10 @@ import com.yworks.yfiles.view.RenderContextExtensions;
 import com.yworks.yfiles.view.VisualGroup;
 import com.yworks.yfiles.view.VoidVisualCreator;
 
+import krayon.editor.base.style.LevelOfDetail;
+
 import java.awt.Graphics2D;
+import java.util.Objects;
 
 class NodeStyleLabelStyleRenderer implements ILabelStyleRenderer, IBoundsProvider, IVisibilityTestable, IMarqueeTestable, IHitTestable, ILookup, IVisualCreator {
   private final SimpleNode dummyNode;
@@ -141,7 +146,8 @@ class NodeStyleLabelStyleRenderer implements ILabelStyleRenderer, IBoundsProvide
   //region IStyleRenderer
 
   /**
-   * Configures the {@code style} and {@code label} parameters, calls {@link #configure()} and returns {@code this}.
+   * Configures the {@code style} and {@code label} parameters and returns {@code this}. Unlike the other getters,
+   * {@link #configure()} is deferred until a visual actually needs to be created or updated.
    * @param label The label to retrieve the {@link IVisualCreator} for. The value will be stored in the {@link #getLabel() Label}
    * property.
    * @param style The style to associate with the label. The value will be stored in the {@link #getStyle() Style} property.
@@ -155,7 +161,7 @@ class NodeStyleLabelStyleRenderer implements ILabelStyleRenderer, IBoundsProvide
     if (theStyle != null) {
       setStyle(theStyle);
       setLabel(label);
-      configure();
+      layout = GraphExtensions.getLayout(label);
       return this;
     } else {
       return VoidVisualCreator.INSTANCE;
@@ -364,15 +370,15 @@ class NodeStyleLabelStyleRenderer implements ILabelStyleRenderer, IBoundsProvide
   private void configureDummyLabel( SimpleLabel dummyLabel ) {
     dummyLabel.setStyle(style.getLabelStyle());
 
-    ITagOwner tagOwner = label.lookup(ITagOwner.class);
-    if (tagOwner != null) {
-      dummyLabel.setTag(tagOwner.getTag());
-    } else {
-      dummyLabel.setTag(null);
-    }
+    dummyLabel.setTag(getTag(label));
     dummyLabel.setText(label.getText());
   }
 
+  private static Object getTag( ILabel label ) {
+    ITagOwner tagOwner = label.lookup(ITagOwner.class);
+    return tagOwner != null ? tagOwner.getTag() : null;
+  }
+
   private void updateDummyLabelLayout() {
     ILookup lookup = style.getNodeStyle().getRenderer().getContext(dummyNode, style.getNodeStyle());
     INodeInsetsProvider provider = lookup.lookup(INodeInsetsProvider.class);
@@ -402,6 +408,7 @@ class NodeStyleLabelStyleRenderer implements ILabelStyleRenderer, IBoundsProvide
     if (w < 0 || h < 0) {
       return null;
     }
+    configure();
     INodeStyle nodeStyle = style.getNodeStyle();
     ILabelStyle labelStyle = style.getLabelStyle();
 
@@ -436,7 +443,9 @@ class NodeStyleLabelStyleRenderer implements ILabelStyleRenderer, IBoundsProvide
     }
 
     container.setTransform(UIElementHelpers.createTransformForLayout(layout, isAutoFlip()));
-    container.setRenderDataCache(new DummyElements(dummyNode, dummyLabel, rect, nodeStyle, labelStyle));
+    DummyElements dummyElements = new DummyElements(dummyNode, dummyLabel, rect, nodeStyle, labelStyle);
+    dummyElements.updateKey(context, style, layout, label);
+    container.setRenderDataCache(dummyElements);
     RenderContextExtensions.registerForChildrenIfNecessary(context, container, NodeStyleLabelStyleRenderer.createIDisposeVisualCallback(container, disposeChildren_MethodId));
     return container;
   }
@@ -486,6 +495,46 @@ class NodeStyleLabelStyleRenderer implements ILabelStyleRenderer, IBoundsProvide
       this.labelStyle = labelStyle;
     }
 
+    // what the child visuals were last created or updated for
+    private NodeStyleLabelStyleAdapter style;
+    private int styleVersion;
+    private double width;
+    private double height;
+    private String text;
+    /** copy of the label tag, so that changes of a mutable tag are noticed */
+    private Object tag;
+    private int detail;
+
+    void updateKey(IRenderContext context, NodeStyleLabelStyleAdapter style, IOrientedRectangle layout, ILabel label) {
+      this.style = style;
+      this.styleVersion = style.getStyleVersion();
+      this.width = layout.getWidth();
+      this.height = layout.getHeight();
+      this.text = label.getText();
+      Object labelTag = getTag(label);
+      this.tag = labelTag instanceof ICloneable ? ((ICloneable)labelTag).clone() : labelTag;
+      this.detail = getDetail(context, style.getLabelStyle());
+    }
+
+    /**
+     * whether the child visuals are still valid. Instead of the zoom, the key holds the level of detail the wrapped
+     * styles chose, so that zooming only rebuilds the visuals when that level changes.
+     */
+    boolean matches(IRenderContext context, NodeStyleLabelStyleAdapter style, IOrientedRectangle layout, ILabel label) {
+      return this.style == style && styleVersion == style.getStyleVersion() && nodeStyle == style.getNodeStyle() && labelStyle == style.getLabelStyle()
+          && width == layout.getWidth() && height == layout.getHeight() && detail == getDetail(context, style.getLabelStyle())
+          && Objects.equals(tag, getTag(label)) && text.equals(label.getText());
+    }
+
+    private static int getDetail(IRenderContext context, ILabelStyle labelStyle) {
+      LevelOfDetail lod = LevelOfDetail.INSTANCE;
+      int detail = (lod.showDecorations(context) ? 1 : 0) | (lod.showOutlines(context) ? 2 : 0);
+      if (labelStyle instanceof DefaultLabelStyle && lod.isGreeked(context, ((DefaultLabelStyle)labelStyle).getFont())) {
+        detail |= 4;
+      }
+      return detail;
+    }
+
     //endregion END: new code
   }
 
@@ -502,6 +551,13 @@ class NodeStyleLabelStyleRenderer implements ILabelStyleRenderer, IBoundsProvide
     CachingVisualGroup container = (oldVisual instanceof CachingVisualGroup) ? (CachingVisualGroup)oldVisual : null;
     DummyElements dummyElements;
     if (container != null && container.getChildren().size() == 2 && (dummyElements = container.getRenderDataCache()) != null) {
+      if (dummyElements.matches(context, style, layout, label)) {
+        // unchanged label: only the location may differ
+        container.setTransform(UIElementHelpers.createTransformForLayout(layout, isAutoFlip()));
+        RenderContextExtensions.registerForChildrenIfNecessary(context, container, NodeStyleLabelStyleRenderer.createIDisposeVisualCallback(container, disposeChildren_MethodId));
+        return container;
+      }
+      configure();
       SimpleNode dummyNode = dummyElements.dummyNode;
       dummyNode.setStyle(getStyle().getNodeStyle());
       RectangleExtensions.reshape(((IMutableRectangle)dummyNode.getLayout()), 0, 0, w, h);
@@ -549,6 +605,7 @@ class NodeStyleLabelStyleRenderer implements ILabelStyleRenderer, IBoundsProvide
         RenderContextExtensions.childVisualRemoved(context, visual);
       }
       container.setTransform(UIElementHelpers.createTransformForLayout(layout, isAutoFlip()));
+      dummyElements.updateKey(context, style, layout, label);
       RenderContextExtensions.registerForChildrenIfNecessary(context, container, NodeStyleLabelStyleRenderer.createIDisposeVisualCallback(container, disposeChildren_MethodId));
       return container;
     }
@@ -18,6 +18,8 @@ typealias ApplicationListener = (ApplicationEvent) -> Unit
 
 object Application {
     var focusedGraphComponent:GraphComponent? = null
+    /** graph components of all open documents */
+    val graphComponents = mutableListOf<GraphComponent>()
     val applicationFrame:JFrame? get() = focusedGraphComponent?.let {
         SwingUtilities.getWindowAncestor(focusedGraphComponent) as? JFrame
     }
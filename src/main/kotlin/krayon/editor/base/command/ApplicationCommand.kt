@@ -16,6 +16,7 @@ import krayon.editor.base.Application
 import krayon.editor.base.ui.*
 import krayon.editor.base.util.IconManager
 import java.awt.event.ActionEvent
+import java.util.WeakHashMap
 import javax.swing.AbstractAction
 import javax.swing.Action
 import javax.swing.Icon
@@ -25,6 +26,10 @@ abstract class ApplicationCommand(final override val id: String, final override
 
     var name:String? = null
     var keyStroke:KeyStroke? = null
+        set(value) {
+            field = value
+            CommandManager.invalidateKeyStrokeTable()
+        }
     override var description:String? = null
     override var mouseGestureDescription: String? = null
 
@@ -36,21 +41,54 @@ abstract class ApplicationCommand(final override val id: String, final override
     val selectedNodes: ISelectionModel<INode> get() = graphComponent.selection.selectedNodes
     val selectedEdges: ISelectionModel<IEdge> get() = graphComponent.selection.selectedEdges
 
+    val selectionSummary get() = SelectionSummary.of(graphComponent)
+
     fun getNodes(param:Any?) = if(param is INode) listOf(param) else selectedNodes
     fun getUniqueNode(param:Any?) = param as? INode ?: with(graphComponent.selection.selectedNodes) { if(size() == 1) first() else null }
     fun getUniqueEdge(param:Any?) = param as? IEdge ?: with(graphComponent.selection.selectedEdges) { if(size() == 1) first() else null }
     fun getUniqueLabel(param:Any?) = param as? ILabel ?: with(graphComponent.selection.selectedLabels) { if(size() == 1) first() else null }
     fun getUniquePort(param:Any?) = param as? IPort ?: with(graphComponent.selection.selectedPorts) { if(size() == 1) first() else null }
 
+    /**
+     * commands whose enablement depends on more than selection and graph, e.g. on the clipboard, the zoom level or
+     * the state of an input mode, must not be cached.
+     */
+    protected open val isEnablementCacheable:Boolean get() = scope == CommandScope.DEFAULT
+
+    /**
+     * the inputs [canExecute] depends on. Enablement is only requeried after one of them has changed.
+     */
+    open val enablementInputs:Set<CommandManager.EnablementInput> get() = CommandManager.EnablementInput.ALL
+    private var enablementEpoch = -1L
+    // params are often graph items, weak keys keep removed items collectable until the next epoch clears the cache
+    private val enablementCache = WeakHashMap<Any?, Boolean>()
+
     fun managedCanExecute(param:Any?):Boolean {
-        if(Application.focusedGraphComponent == null) return false
+        val graphComponent = Application.focusedGraphComponent ?: return false
+        if(isEnablementCacheable) {
+            CommandManager.validateEnablementEpoch(graphComponent)
+            val epoch = CommandManager.getEnablementEpoch(enablementInputs)
+            if(enablementEpoch != epoch) {
+                enablementEpoch = epoch
+                enablementCache.clear()
+            }
+            else enablementCache[param]?.let { return it }
+        }
         val result = canExecute(param)
+        if(isEnablementCacheable) enablementCache[param] = result
         parameterizedActions.forEach {
             if (it.param == param) it.action.isEnabled = result
         }
         return result
     }
 
+    /**
+     * requeries the enablement of all actions created for this command.
+     */
+    internal fun updateActionEnablement() {
+        parameterizedActions.map { it.param }.distinct().forEach { managedCanExecute(it) }
+    }
+
     internal data class ParameterizedAction(val action: Action, val param:Any? = null, val target:Any)
 
     fun getAction(target:Any, param:Any? = null): Action {
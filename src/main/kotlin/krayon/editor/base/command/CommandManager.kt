@@ -10,15 +10,22 @@
 package krayon.editor.base.command
 
 import com.beust.klaxon.JsonReader
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.utils.IEventListener
+import com.yworks.yfiles.view.GraphComponent
+import com.yworks.yfiles.view.ItemSelectionChangedEventArgs
 import com.yworks.yfiles.view.input.CreateEdgeInputMode
 import com.yworks.yfiles.view.input.KeyboardInputMode
 import krayon.editor.base.Application
+import krayon.editor.base.model.ItemDataChanges
 import krayon.editor.base.ui.GraphPaletteDropInputMode
 import krayon.editor.base.ui.UnicodeTextEditorInputMode
 import krayon.editor.base.util.geim
 import krayon.util.OperatingSystemChecker
 import java.io.InputStream
+import java.util.EnumSet
 import javax.swing.KeyStroke
+import javax.swing.SwingUtilities
 
 //private typealias Context = String?
 private typealias Id = String
@@ -31,8 +38,50 @@ object CommandManager {
         UNSPECIFIED
     }
 
+    /**
+     * what command enablement may depend on. Changes of an input only requery the commands depending on it.
+     */
+    enum class EnablementInput {
+        SELECTION,
+        GRAPH,
+        ITEM_DATA;
+
+        companion object {
+            val ALL:Set<EnablementInput> = EnumSet.allOf(EnablementInput::class.java)
+            val SELECTION_ONLY:Set<EnablementInput> = EnumSet.of(SELECTION)
+            /** selection and the types or properties of the selected items */
+            val SELECTED_DATA:Set<EnablementInput> = EnumSet.of(SELECTION, ITEM_DATA)
+        }
+    }
+
     private val scopeCommandMap = mutableMapOf<CommandScope, MutableMap<Id, ApplicationCommand>>()
 
+    // (scope, key stroke) -> command. Rebuilt lazily after commands or key strokes have changed.
+    private var keyStrokeTable:Map<CommandScope, Map<KeyStroke, ApplicationCommand>>? = null
+
+    /**
+     * changes whenever command enablement may have changed: on selection changes, graph changes, item data changes,
+     * command execution, and focus changes. [ApplicationCommand.managedCanExecute] caches its results per epoch.
+     */
+    var enablementEpoch = 0L
+        private set
+    private var epochGraphComponent:GraphComponent? = null
+    private val inputEpochs = LongArray(EnablementInput.values().size)
+
+    init {
+        // type and property changes of items are not reported by graph events
+        ItemDataChanges.addListener { _ -> invalidateEnablement(EnablementInput.ITEM_DATA) }
+    }
+
+    /**
+     * changes whenever one of the given inputs has changed.
+     */
+    fun getEnablementEpoch(inputs:Set<EnablementInput>):Long {
+        var epoch = 0L
+        inputs.forEach { epoch += inputEpochs[it.ordinal] }
+        return epoch
+    }
+
     fun initializeKeyMap(stream: InputStream) {
         JsonReader(stream.reader()).use { reader ->
             reader.beginArray {
@@ -45,7 +94,7 @@ object CommandManager {
                                         val keyString = if (OperatingSystemChecker.isMac) it.replace("ctrl", "meta") else it
                                         KeyStroke.getKeyStroke(keyString)?.let { keyStroke ->
                                             command.keyStroke = keyStroke
-                                        }
+                                        } ?: System.err.println("invalid key stroke '$it' for command $fqId")
                                     }
                                 }
                             }
@@ -55,6 +104,8 @@ object CommandManager {
             }
         }
 
+        getKeyStrokeTable()
+
         if(System.getProperty("verbose") != null) {
             scopeCommandMap.forEach { context, commandMap ->
                 commandMap.values.forEach { command ->
@@ -142,6 +193,7 @@ object CommandManager {
         if(hasValidCommandContext(command) && command.canExecute(param)) {
             fireCommandEvent(command, param, invocationMethod)
             command.execute(param)
+            invalidateEnablement()
 
         }
     }
@@ -153,6 +205,7 @@ object CommandManager {
             scopeCommandMap[command.scope] = commandMap
         }
         commandMap[command.id] = command
+        invalidateKeyStrokeTable()
     }
 
     operator fun plusAssign(command: ApplicationCommand) {
@@ -160,7 +213,111 @@ object CommandManager {
     }
 
     fun getCommand(keyStroke:KeyStroke, scope: CommandScope = CommandScope.DEFAULT):ApplicationCommand? {
-        return scopeCommandMap[scope]!!.values.firstOrNull { it.keyStroke == keyStroke }
+        return getKeyStrokeTable()[scope]?.get(keyStroke)
+    }
+
+    internal fun invalidateKeyStrokeTable() {
+        keyStrokeTable = null
+    }
+
+    private fun getKeyStrokeTable():Map<CommandScope, Map<KeyStroke, ApplicationCommand>> {
+        keyStrokeTable?.let { return it }
+        val table = scopeCommandMap.mapValues { (scope, commandMap) ->
+            val keyStrokeMap = HashMap<KeyStroke, ApplicationCommand>()
+            commandMap.values.forEach { command ->
+                command.keyStroke?.let { keyStroke ->
+                    val boundCommand = keyStrokeMap.putIfAbsent(keyStroke, command)
+                    if(boundCommand != null) System.err.println("key stroke $keyStroke of scope $scope bound to ${boundCommand.id} and ${command.id}")
+                }
+            }
+            keyStrokeMap
+        }
+        keyStrokeTable = table
+        return table
+    }
+
+    private val pendingInputs = EnumSet.noneOf(EnablementInput::class.java)
+
+    /**
+     * starts a new enablement epoch for the given input, or for all inputs if none is given. Action enablement gets
+     * updated once per EDT cycle, no matter how many changes occur within it, and only for commands that depend on
+     * a changed input.
+     */
+    fun invalidateEnablement(input:EnablementInput? = null) {
+        enablementEpoch++
+        val inputs = if(input == null) EnablementInput.ALL else EnumSet.of(input)
+        inputs.forEach { inputEpochs[it.ordinal]++ }
+        if(pendingInputs.isEmpty()) {
+            SwingUtilities.invokeLater {
+                val changedInputs = EnumSet.copyOf(pendingInputs)
+                pendingInputs.clear()
+                if(Application.focusedGraphComponent != null) {
+                    getCommands().filter { command -> command.enablementInputs.any { it in changedInputs } }.forEach { it.updateActionEnablement() }
+                }
+            }
+        }
+        pendingInputs.addAll(inputs)
+    }
+
+    /**
+     * validates the enablement epoch for the given component. Listeners get moved when another component gains focus
+     * or the graph of the component is replaced.
+     */
+    internal fun validateEnablementEpoch(graphComponent:GraphComponent) {
+        if(epochGraphComponent !== graphComponent) {
+            epochGraphComponent?.let { removeEnablementListeners(it) }
+            epochGraphComponent = graphComponent
+            addEnablementListeners(graphComponent)
+            invalidateEnablement()
+        }
+    }
+
+    private val selectionListener = IEventListener<ItemSelectionChangedEventArgs<IModelItem>> { _, _ -> invalidateEnablement(EnablementInput.SELECTION) }
+    private val graphReplacedListener = IEventListener<ItemChangedEventArgs<IGraph,IGraph>> { _, args ->
+        args.oldValue?.let { removeGraphListeners(it) }
+        args.item?.let { addGraphListeners(it) }
+        invalidateEnablement()
+    }
+    private val nodeCreatedListener = IEventListener<ItemEventArgs<INode>> { _, _ -> invalidateEnablement(EnablementInput.GRAPH) }
+    private val nodeRemovedListener = IEventListener<NodeEventArgs> { _, _ -> invalidateEnablement(EnablementInput.GRAPH) }
+    private val edgeCreatedListener = IEventListener<ItemEventArgs<IEdge>> { _, _ -> invalidateEnablement(EnablementInput.GRAPH) }
+    private val edgeRemovedListener = IEventListener<EdgeEventArgs> { _, _ -> invalidateEnablement(EnablementInput.GRAPH) }
+    private val labelAddedListener = IEventListener<ItemEventArgs<ILabel>> { _, _ -> invalidateEnablement(EnablementInput.GRAPH) }
+    private val labelRemovedListener = IEventListener<LabelEventArgs> { _, _ -> invalidateEnablement(EnablementInput.GRAPH) }
+    private val labelTextChangedListener = IEventListener<ItemChangedEventArgs<ILabel, String>> { _, _ -> invalidateEnablement(EnablementInput.GRAPH) }
+
+    private fun addEnablementListeners(graphComponent: GraphComponent) {
+        graphComponent.selection.addItemSelectionChangedListener(selectionListener)
+        graphComponent.addGraphChangedListener(graphReplacedListener)
+        addGraphListeners(graphComponent.graph)
+    }
+
+    private fun removeEnablementListeners(graphComponent: GraphComponent) {
+        graphComponent.selection.removeItemSelectionChangedListener(selectionListener)
+        graphComponent.removeGraphChangedListener(graphReplacedListener)
+        removeGraphListeners(graphComponent.graph)
+    }
+
+    private fun addGraphListeners(graph:IGraph) {
+        graph.addNodeCreatedListener(nodeCreatedListener)
+        graph.addNodeRemovedListener(nodeRemovedListener)
+        graph.addParentChangedListener(nodeRemovedListener)
+        graph.addEdgeCreatedListener(edgeCreatedListener)
+        graph.addEdgeRemovedListener(edgeRemovedListener)
+        graph.addLabelAddedListener(labelAddedListener)
+        graph.addLabelRemovedListener(labelRemovedListener)
+        graph.addLabelTextChangedListener(labelTextChangedListener)
+    }
+
+    private fun removeGraphListeners(graph:IGraph) {
+        graph.removeNodeCreatedListener(nodeCreatedListener)
+        graph.removeNodeRemovedListener(nodeRemovedListener)
+        graph.removeParentChangedListener(nodeRemovedListener)
+        graph.removeEdgeCreatedListener(edgeCreatedListener)
+        graph.removeEdgeRemovedListener(edgeRemovedListener)
+        graph.removeLabelAddedListener(labelAddedListener)
+        graph.removeLabelRemovedListener(labelRemovedListener)
+        graph.removeLabelTextChangedListener(labelTextChangedListener)
     }
 
     fun registerKeyBindings(kim: KeyboardInputMode) {
@@ -17,7 +17,8 @@ import krayon.editor.base.util.getMainCanvasObject
 object DrawingOrderCommands {
 
     private abstract class DrawingOrderCommand(id:String) : ApplicationCommand(id) {
-        override fun canExecute(param: Any?) = selectedNodes.any()
+        override fun canExecute(param: Any?) = selectionSummary.nodeCount > 0
+        override val enablementInputs get() = EnablementInput.SELECTION_ONLY
 
         override fun execute(param: Any?) {
             graph.beginEdit(id).use {
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.command
+
+import krayon.editor.base.ui.ExtensionFileFilter
+import krayon.editor.base.ui.showSaveDialogFX
+import krayon.editor.base.util.ApplicationSettings
+import krayon.editor.sbgn.command.SbgnCommand
+import krayon.util.RenderMetrics
+import java.io.File
+import java.io.FileWriter
+import javax.swing.JFileChooser
+
+object DumpRenderMetrics : SbgnCommand("DUMP_RENDER_METRICS") {
+
+    private val fileChooser:JFileChooser by lazy {
+        JFileChooser().apply {
+            isAcceptAllFileFilterUsed = false
+            addChoosableFileFilter(ExtensionFileFilter("CSV file (*.csv)", "csv"))
+        }
+    }
+
+    override val isEnablementCacheable = false
+
+    override fun canExecute(param: Any?) = RenderMetrics.frames.isNotEmpty()
+
+    override fun execute(param: Any?) {
+        fileChooser.apply {
+            dialogTitle = "Save Render Metrics"
+            dialogType = JFileChooser.SAVE_DIALOG
+            (ApplicationSettings.LAST_FILE_LOCATION.value as? String)?.let { currentDirectory = File(it) }
+        }
+
+        val file = (param as? String)?.let { File(it) } ?:
+        if(fileChooser.showSaveDialogFX(graphComponent) == JFileChooser.APPROVE_OPTION) {
+            ApplicationSettings.LAST_FILE_LOCATION.value = fileChooser.selectedFile.parent
+            fileChooser.selectedFile.let { if(it.extension.isEmpty()) File(it.path + ".csv") else it }
+        }
+        else return
+
+        FileWriter(file).use { RenderMetrics.writeCsv(it) }
+    }
+}
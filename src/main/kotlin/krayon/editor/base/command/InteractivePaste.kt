@@ -51,6 +51,8 @@ object InteractivePaste : ApplicationCommand("INTERACTIVE_PASTE") {
         }
     }
 
+    override val isEnablementCacheable = false
+
     override fun canExecute(param: Any?): Boolean {
         //println("canExecute=" + !graphComponent.clipboard.isEmpty)
         return !graphComponent.clipboard.isEmpty
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.command
+
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.view.GraphComponent
+import krayon.editor.base.model.IItemType
+import krayon.editor.base.model.ItemDataChanges
+
+/**
+ * Facts about the selection of a graph component that commands need for their enablement. A summary is computed once
+ * per enablement epoch and item data change count, i.e. after the selection, the graph or an item type has changed,
+ * and shared by all commands.
+ */
+class SelectionSummary private constructor(graphComponent: GraphComponent) {
+
+    val nodeCount:Int
+    val edgeCount:Int
+    val labelCount:Int
+    val portCount:Int
+    val bendCount:Int
+
+    val uniqueNode:INode?
+    val uniqueEdge:IEdge?
+    val uniqueLabel:ILabel?
+    val uniquePort:IPort?
+
+    /** number of selected nodes without adjacent edges */
+    val isolatedNodeCount:Int
+    val selectedEdgesAtUniqueNode:Int
+    val unselectedEdgesAtUniqueNode:Int
+
+    private val nodeTypeCounts = HashMap<Any?, Int>()
+    private val edgeTypeCounts = HashMap<Any?, Int>()
+    private val labelTypeCounts = HashMap<Any?, Int>()
+
+    init {
+        val graph = graphComponent.graph
+        val itemType = graphComponent.lookup(IItemType::class.java)
+        with(graphComponent.selection) {
+            nodeCount = selectedNodes.size()
+            edgeCount = selectedEdges.size()
+            labelCount = selectedLabels.size()
+            portCount = selectedPorts.size()
+            bendCount = selectedBends.size()
+            uniqueNode = if(nodeCount == 1) selectedNodes.first() else null
+            uniqueEdge = if(edgeCount == 1) selectedEdges.first() else null
+            uniqueLabel = if(labelCount == 1) selectedLabels.first() else null
+            uniquePort = if(portCount == 1) selectedPorts.first() else null
+
+            var isolatedNodes = 0
+            selectedNodes.forEach { node ->
+                nodeTypeCounts.increment(itemType?.getType(node))
+                if(graph.contains(node) && graph.degree(node) == 0) isolatedNodes++
+            }
+            isolatedNodeCount = isolatedNodes
+            selectedEdges.forEach { edgeTypeCounts.increment(itemType?.getType(it)) }
+            selectedLabels.forEach { labelTypeCounts.increment(itemType?.getType(it)) }
+
+            var selectedAtNode = 0
+            var unselectedAtNode = 0
+            uniqueNode?.let { node ->
+                graph.edgesAt(node).forEach { if(isSelected(it)) selectedAtNode++ else unselectedAtNode++ }
+            }
+            selectedEdgesAtUniqueNode = selectedAtNode
+            unselectedEdgesAtUniqueNode = unselectedAtNode
+        }
+    }
+
+    private fun HashMap<Any?, Int>.increment(type:Any?) {
+        this[type] = (this[type] ?: 0) + 1
+    }
+
+    val isEmpty get() = nodeCount + edgeCount + labelCount + portCount + bendCount == 0
+
+    fun getNodeCount(type:Any?) = nodeTypeCounts[type] ?: 0
+    fun getEdgeCount(type:Any?) = edgeTypeCounts[type] ?: 0
+    fun getLabelCount(type:Any?) = labelTypeCounts[type] ?: 0
+
+    /**
+     * whether any selected node has a type matching the predicate. Only distinct types are tested.
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <T> anyNodeType(predicate:(T) -> Boolean) = nodeTypeCounts.keys.any { predicate(it as T) }
+
+    @Suppress("UNCHECKED_CAST")
+    fun <T> allNodeTypes(predicate:(T) -> Boolean) = nodeTypeCounts.keys.all { predicate(it as T) }
+
+    companion object {
+        private var summary:SelectionSummary? = null
+        private var summaryEpoch = -1L
+        private var summaryDataChanges = -1L
+        private var summaryComponent:GraphComponent? = null
+
+        fun of(graphComponent: GraphComponent):SelectionSummary {
+            CommandManager.validateEnablementEpoch(graphComponent)
+            // item data changes made off the EDT do not advance the epoch
+            val dataChanges = ItemDataChanges.count
+            summary?.let {
+                if(summaryComponent === graphComponent && summaryEpoch == CommandManager.enablementEpoch && summaryDataChanges == dataChanges) return it
+            }
+            return SelectionSummary(graphComponent).also {
+                summary = it
+                summaryEpoch = CommandManager.enablementEpoch
+                summaryDataChanges = dataChanges
+                summaryComponent = graphComponent
+            }
+        }
+    }
+}
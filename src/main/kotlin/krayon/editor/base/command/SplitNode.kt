@@ -16,10 +16,11 @@ import krayon.editor.base.util.convertToRatioPoint
 
 object SplitNode : ApplicationCommand("SPLIT_NODE") {
     override fun canExecute(param: Any?): Boolean {
-        val nodes = getNodes(param)
-        return nodes.count() == 1 &&
-                graph.edgesAt(nodes.first()).any { graphComponent.selection.isSelected(it) } &&
-                graph.edgesAt(nodes.first()).any { !graphComponent.selection.isSelected(it) }
+        if(param is INode) {
+            return graph.edgesAt(param).any { graphComponent.selection.isSelected(it) } &&
+                    graph.edgesAt(param).any { !graphComponent.selection.isSelected(it) }
+        }
+        return with(selectionSummary) { uniqueNode != null && selectedEdgesAtUniqueNode > 0 && unselectedEdgesAtUniqueNode > 0 }
     }
 
     override fun execute(param: Any?) {
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.command
+
+import com.yworks.yfiles.view.GraphComponent
+import krayon.editor.sbgn.command.SbgnCommand
+import krayon.util.RenderMonitor
+
+object ToggleRenderMonitor : SbgnCommand("TOGGLE_RENDER_MONITOR") {
+
+    /** one monitor per diagram, dropped by [release] when the diagram is closed */
+    private val renderMonitors = HashMap<GraphComponent, RenderMonitor>()
+
+    override fun canExecute(param: Any?) = true
+
+    override fun execute(param: Any?) {
+        val renderMonitor = renderMonitors.getOrPut(graphComponent) { RenderMonitor(graphComponent) }
+        if(renderMonitor.isRunning) renderMonitor.stop() else renderMonitor.start()
+    }
+
+    fun release(graphComponent: GraphComponent) {
+        renderMonitors.remove(graphComponent)?.stop()
+    }
+}
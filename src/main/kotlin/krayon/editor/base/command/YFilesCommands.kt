@@ -14,6 +14,8 @@ import com.yworks.yfiles.view.input.ICommand
 object YFilesCommands {
 
     class YFilesCommand(private val iCommand: ICommand, id:String = iCommand.name, private val fixedParam:Any? = null) : ApplicationCommand(id) {
+        override val isEnablementCacheable = false
+
         override fun canExecute(param: Any?): Boolean {
             return iCommand.canExecute(fixedParam ?: param, graphComponent)
         }
@@ -32,6 +32,13 @@ interface IModelConstraintManager<T> {
     fun isMergeable(aGraph: IGraph, aNode: INode, targetGraph: IGraph, targetNode: INode): Boolean
     fun isMergeablePort(aGraph: IGraph, aPort: IPort, targetGraph: IGraph, targetPort: IPort): Boolean
     fun isValidChild(graph: IGraph, groupNodeType: T, node: INode): Boolean
+
+    /**
+     * Marks the start of an interaction on the given graph, e.g. an edge creation gesture. Implementations may memoize
+     * query results until the matching [endInteraction] call. Interactions may be nested.
+     */
+    fun beginInteraction(graph: IGraph) {}
+    fun endInteraction() {}
 }
 
 interface IEdgeCreationHint<T> {
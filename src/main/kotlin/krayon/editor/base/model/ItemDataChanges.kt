@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.model
+
+import java.util.concurrent.atomic.AtomicLong
+import javax.swing.SwingUtilities
+
+/**
+ * Counts changes of item data that the graph does not report as events, e.g. type and property changes of tags.
+ * Changes made on the EDT are reported to the listeners right away, changes made on other threads, e.g. while reading
+ * a file into a new graph, only advance the count. Listeners get the changed data, or the item whose tag was replaced.
+ */
+object ItemDataChanges {
+
+    private val counter = AtomicLong()
+    private val listeners = mutableListOf<(Any) -> Unit>()
+
+    val count get() = counter.get()
+
+    fun addListener(listener: (Any) -> Unit) {
+        listeners += listener
+    }
+
+    fun removeListener(listener: (Any) -> Unit) {
+        listeners -= listener
+    }
+
+    fun fireChanged(source: Any) {
+        counter.incrementAndGet()
+        if(listeners.isNotEmpty() && SwingUtilities.isEventDispatchThread()) listeners.toList().forEach { it(source) }
+    }
+}
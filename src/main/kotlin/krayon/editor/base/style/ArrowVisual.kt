@@ -32,6 +32,7 @@ abstract class ArrowVisual : IVisual {
     abstract fun getSize():ISize
 
     override fun paint(context: IRenderContext, gfx: Graphics2D) {
+        if(!LevelOfDetail.showDecorations(context)) return
         val oldTransform = gfx.transform
         gfx.transform(transform)
         paintArrow(context, gfx)
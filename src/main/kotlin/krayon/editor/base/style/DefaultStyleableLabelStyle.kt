@@ -15,7 +15,7 @@ import com.yworks.yfiles.graph.styles.DefaultLabelStyleRenderer
 import com.yworks.yfiles.view.Pen
 import java.awt.Color
 
-open class DefaultStyleableLabelStyle(renderer: DefaultLabelStyleRenderer = DefaultLabelStyleRenderer()) : DefaultLabelStyle(renderer), IStyleable {
+open class DefaultStyleableLabelStyle(renderer: DefaultLabelStyleRenderer = LevelOfDetail.LabelStyleRenderer()) : DefaultLabelStyle(renderer), IStyleable {
 
     override fun applyStyle(context: IStyleableContext, map: Map<StyleProperty, Any?>) {
         (map[StyleProperty.FontSize] as? Double)?.let {
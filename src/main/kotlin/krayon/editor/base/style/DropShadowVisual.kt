@@ -16,6 +16,7 @@ import com.yworks.yfiles.view.IRenderContext
 import com.yworks.yfiles.view.IVisual
 import krayon.editor.base.ui.create
 import krayon.editor.base.util.Cache
+import krayon.util.RenderMetrics
 import java.awt.Color
 import java.awt.Graphics2D
 import java.awt.RenderingHints
@@ -97,14 +98,17 @@ class DropShadowVisual : IVisual {
     }
 
     override fun paint(context: IRenderContext, g: Graphics2D) {
+        if(!LevelOfDetail.showShadows(context)) return
+        val startTime = RenderMetrics.startTimer()
         g.create { gfx ->
             gfx.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR)
             gfx.drawImage(shadowImage, -imageOffsetX, -imageOffsetY, null)
         }
+        RenderMetrics.addPaintTime("DropShadowVisual", startTime)
     }
 
     companion object {
-        val imageCache = Cache.createWeakCache<Pair<SizeD,Any>, BufferedImage>()
+        val imageCache = Cache.createWeakCache<Pair<SizeD,Any>, BufferedImage>("drop shadow")
         //val imageCache = Cache.createSoftCache<Pair<SizeD,Any>, BufferedImage>(5)
         //val imageCache = Cache.createNoCache<Pair<SizeD,Any>, BufferedImage>()
 
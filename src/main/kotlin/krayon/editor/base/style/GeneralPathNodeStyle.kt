@@ -27,6 +27,8 @@ abstract class GeneralPathNodeStyle: AbstractNodeStyle(), IStyleable, Cloneable
     var paint: Paint = Color.WHITE
     set(value) { field = value; requiresVisualUpdate = true}
     var hasDropShadow = false
+    /** decorations, e.g. auxiliary units, are not painted at low zoom */
+    protected open val isDecoration = false
     private var isDirty = false
 
     override fun applyStyle(context: IStyleableContext, map: Map<StyleProperty, Any?>) {
@@ -66,20 +68,24 @@ abstract class GeneralPathNodeStyle: AbstractNodeStyle(), IStyleable, Cloneable
                     DropShadowVisual.DropShadowParam(0, 6, 20, Color(0f, 0f, 0f, 0.19f))
             )
             dropShadow.update(node.layout.toSizeD(), shape!!, node.tag) //breaks base <--> sbgn packaging
-            return VisualGroup().apply {
+            return createVisualGroup().apply {
                 add(dropShadow)
                 add(visual)
                 transform = AffineTransform.getTranslateInstance(node.layout.x, node.layout.y)
+                (this as? LevelOfDetail.OutlineVisualGroup)?.update(node.layout.toSizeD(), paint, pen)
             }
         }
         else {
-            return VisualGroup().apply {
+            return createVisualGroup().apply {
                 add(visual)
                 transform = AffineTransform.getTranslateInstance(node.layout.x, node.layout.y)
+                (this as? LevelOfDetail.OutlineVisualGroup)?.update(node.layout.toSizeD(), paint, pen)
             }
         }
     }
 
+    private fun createVisualGroup() = if(isDecoration) LevelOfDetail.DecorationVisualGroup() else LevelOfDetail.OutlineVisualGroup()
+
     override fun updateVisual(context: IRenderContext, visual: IVisual, node: INode): IVisual {
         //println("updateVisual")
         if(isDirty) {
@@ -103,6 +109,7 @@ abstract class GeneralPathNodeStyle: AbstractNodeStyle(), IStyleable, Cloneable
             (group.children[0] as ShapeVisual).update(shape!!, pen, paint)
         }
         group.transform = AffineTransform.getTranslateInstance(node.layout.x, node.layout.y)
+        (group as? LevelOfDetail.OutlineVisualGroup)?.update(size, paint, pen)
         return group
     }
 
@@ -16,34 +16,45 @@ import com.yworks.yfiles.view.Pen
 import com.yworks.yfiles.view.RectangleIndicatorInstaller
 import java.awt.Color
 
+/**
+ * Labeled highlights of nodes. Highlights are kept in groups, e.g. one per feature, so that a feature can clear its
+ * highlights without removing those of others. A node keeps its indicator while it is highlighted in any group.
+ */
 open class HighlightNodesManager(val graphComponent:GraphComponent) {
 
-    private val highlightedNodeSet = mutableSetOf<INode>()
+    private val highlightedNodeSets = HashMap<String, MutableSet<INode>>()
 
-    fun isHighlighted(node: INode):Boolean {
-        return highlightedNodeSet.contains(node)
+    fun isHighlighted(node: INode, group:String = DEFAULT_GROUP):Boolean {
+        return highlightedNodeSets[group]?.contains(node) == true
     }
 
     protected open fun createVisualTemplate(node:INode, tag:String):IVisualTemplate {
         return LabeledHighlightNodeVisualTemplate(Pen.getBlack(), tag, Color.WHITE)
     }
 
-    fun addHighlight(node: INode, text:String) {
+    fun addHighlight(node: INode, text:String, group:String = DEFAULT_GROUP) {
         with(graphComponent) {
             val prefTemplate = getClientProperty(RectangleIndicatorInstaller.HIGHLIGHT_TEMPLATE_KEY)
             putClientProperty(RectangleIndicatorInstaller.HIGHLIGHT_TEMPLATE_KEY, createVisualTemplate(node, text))
             highlightIndicatorManager.addHighlight(node)
             putClientProperty(RectangleIndicatorInstaller.HIGHLIGHT_TEMPLATE_KEY, prefTemplate)
-            highlightedNodeSet.add(node)
+            highlightedNodeSets.getOrPut(group) { mutableSetOf() }.add(node)
         }
     }
 
-    fun clearHighlights() {
-        highlightedNodeSet.forEach { graphComponent.highlightIndicatorManager.removeHighlight(it) }
+    fun clearHighlights(group:String = DEFAULT_GROUP) {
+        val highlightedNodes = highlightedNodeSets.remove(group) ?: return
+        highlightedNodes.forEach { if(!isHighlightedInAnyGroup(it)) graphComponent.highlightIndicatorManager.removeHighlight(it) }
+    }
+
+    fun removeHighlight(node: INode, group:String = DEFAULT_GROUP) {
+        highlightedNodeSets[group]?.remove(node)
+        if(!isHighlightedInAnyGroup(node)) graphComponent.highlightIndicatorManager.removeHighlight(node)
     }
 
-    fun removeHighlight(node: INode) {
-        highlightedNodeSet.remove(node)
-        graphComponent.highlightIndicatorManager.removeHighlight(node)
+    private fun isHighlightedInAnyGroup(node: INode) = highlightedNodeSets.values.any { node in it }
+
+    companion object {
+        const val DEFAULT_GROUP = "default"
     }
-}
\ No newline at end of file
+}
@@ -96,6 +96,39 @@ enum class StateVariableShapeValue {
 class GraphStyle<T>(var name:String, val isReadOnly:Boolean = true, val styleTemplateMap: StyleTemplateMap<T>) {
     var isFileLocal = false
 
+    /**
+     * Hash over the content of the template map (type -> property -> value). Independent of name, flags and
+     * map iteration order. Enum keys and values are hashed by name, so the result is stable across sessions.
+     */
+    val contentHash:Int get() {
+        var result = 0
+        for ((typeKey, styleMap) in styleTemplateMap.entries) {
+            var mapHash = 0
+            for ((key, value) in styleMap.entries) {
+                mapHash += key.name.hashCode() * 31 + canonicalHash(value)
+            }
+            result += canonicalHash(typeKey) * 31 + mapHash
+        }
+        return result
+    }
+
+    fun hasSameContent(other:GraphStyle<T>) = this === other || styleTemplateMap == other.styleTemplateMap
+
+    /**
+     * copy with its own template maps, which later edits of this style do not reach. The style values are shared.
+     */
+    fun copy():GraphStyle<T> {
+        val templateMap = styleTemplateMap.toMutableMap()
+        templateMap.keys.forEach { key -> templateMap[key] = templateMap[key]!!.toMutableMap() }
+        return GraphStyle(name, isReadOnly, templateMap).also { it.isFileLocal = isFileLocal }
+    }
+
+    private fun canonicalHash(value:Any?):Int = when(value) {
+        null -> 0
+        is Enum<*> -> value.name.hashCode()
+        else -> value.hashCode()
+    }
+
     //for debugging purposes
     fun compareStyle(other:GraphStyle<T>) {
         val otherName = other.name
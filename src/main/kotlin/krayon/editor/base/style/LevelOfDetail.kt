@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.style
+
+import com.yworks.yfiles.geometry.RectD
+import com.yworks.yfiles.geometry.SizeD
+import com.yworks.yfiles.graph.styles.DefaultLabelStyleRenderer
+import com.yworks.yfiles.view.IRenderContext
+import com.yworks.yfiles.view.IVisual
+import com.yworks.yfiles.view.Pen
+import com.yworks.yfiles.view.TextAlignment
+import com.yworks.yfiles.view.VisualGroup
+import krayon.editor.base.ui.create
+import java.awt.Font
+import java.awt.Graphics2D
+import java.awt.Paint
+import java.awt.geom.Rectangle2D
+
+/**
+ * Zoom dependent simplifications applied while painting. Below [shadowZoom] drop shadows are skipped, below
+ * [decorationZoom] clone markers, multimer outlines, auxiliary units and arrow heads are skipped, and below
+ * [outlineZoom] node shapes are painted as plain rectangles. Text is drawn as greeked bars when its height on
+ * screen falls below [minTextHeight] pixels.
+ */
+object LevelOfDetail {
+
+    var isEnabled = true
+    var shadowZoom = 0.5
+    var decorationZoom = 0.3
+    var outlineZoom = 0.15
+    var minTextHeight = 5.0
+
+    fun showShadows(context: IRenderContext) = !isEnabled || context.zoom >= shadowZoom
+    fun showDecorations(context: IRenderContext) = !isEnabled || context.zoom >= decorationZoom
+    fun showOutlines(context: IRenderContext) = !isEnabled || context.zoom >= outlineZoom
+    fun isGreeked(context: IRenderContext, font: Font) = isEnabled && context.zoom * font.size2D < minTextHeight
+
+    /**
+     * runs the block with level of detail disabled, e.g. for exporting or printing.
+     */
+    fun <T> withFullDetail(block: () -> T): T {
+        val wasEnabled = isEnabled
+        isEnabled = false
+        try {
+            return block()
+        }
+        finally {
+            isEnabled = wasEnabled
+        }
+    }
+
+    /**
+     * paints one bar per text line. Bar widths are estimated from the number of characters, so that no text layout
+     * is needed. Alignment ranges from 0 (left) to 1 (right).
+     */
+    fun paintGreekedText(g: Graphics2D, text: String, font: Font, paint: Paint, bounds: RectD, alignment: Double) {
+        val lines = text.lines()
+        val lineHeight = font.size2D * 1.2
+        val barHeight = font.size2D * 0.5
+        var y = bounds.centerY - 0.5 * (lines.size * lineHeight) + 0.5 * (lineHeight - barHeight)
+        val oldPaint = g.paint
+        g.paint = paint
+        val bar = Rectangle2D.Double()
+        lines.forEach { line ->
+            val width = Math.min(bounds.width, line.trim().length * font.size2D * 0.55)
+            bar.setRect(bounds.x + (bounds.width - width) * alignment, y, width, barHeight)
+            g.fill(bar)
+            y += lineHeight
+        }
+        g.paint = oldPaint
+    }
+
+    /**
+     * paints the plain rectangle that stands in for a node shape below [outlineZoom].
+     */
+    fun paintSimplifiedOutline(g: Graphics2D, size: SizeD, paint: Paint?, pen: Pen?) {
+        val rect = Rectangle2D.Double(0.0, 0.0, size.width, size.height)
+        val oldPaint = g.paint
+        if(paint != null) {
+            g.paint = paint
+            g.fill(rect)
+        }
+        if(pen?.paint != null) {
+            g.paint = pen.paint
+            g.draw(rect)
+        }
+        g.paint = oldPaint
+    }
+
+    val emptyVisual = IVisual { _, _ -> }
+
+    /**
+     * node visual group that is painted as a plain rectangle of [size] while outlines are not shown.
+     */
+    class OutlineVisualGroup : VisualGroup() {
+        var size = SizeD.EMPTY!!
+        var paint: Paint? = null
+        var pen: Pen? = null
+
+        fun update(size: SizeD, paint: Paint?, pen: Pen?) {
+            this.size = size
+            this.paint = paint
+            this.pen = pen
+        }
+
+        override fun paint(context: IRenderContext, g: Graphics2D) {
+            if(showOutlines(context)) super.paint(context, g)
+            else g.create { gfx ->
+                transform?.let { gfx.transform(it) }
+                paintSimplifiedOutline(gfx, size, paint, pen)
+            }
+        }
+    }
+
+    /**
+     * group that is only painted while decorations are shown.
+     */
+    class DecorationVisualGroup : VisualGroup() {
+        override fun paint(context: IRenderContext, g: Graphics2D) {
+            if(showDecorations(context)) super.paint(context, g)
+        }
+    }
+
+    class GreekedTextVisual : IVisual {
+        var text = ""
+        lateinit var font: Font
+        lateinit var paint: Paint
+        var bounds = RectD.EMPTY!!
+        var alignment = 0.5
+
+        override fun paint(context: IRenderContext, g: Graphics2D) {
+            paintGreekedText(g, text, font, paint, bounds, alignment)
+        }
+    }
+
+    /**
+     * label renderer that greeks text at low zoom. Labels of a decoration renderer are not painted at all below
+     * [decorationZoom].
+     */
+    open class LabelStyleRenderer(private val isDecoration: Boolean = false) : DefaultLabelStyleRenderer() {
+
+        private fun isHidden(context: IRenderContext) = isDecoration && !showDecorations(context)
+        private fun isGreeked(context: IRenderContext) = label.text.isNotEmpty() && style.textPaint != null && isGreeked(context, style.font)
+
+        override fun createVisual(context: IRenderContext): IVisual? {
+            return when {
+                isHidden(context) -> emptyVisual
+                isGreeked(context) -> updateGreekedVisual(GreekedTextVisual())
+                else -> super.createVisual(context)
+            }
+        }
+
+        override fun updateVisual(context: IRenderContext, oldVisual: IVisual?): IVisual? {
+            return when {
+                isHidden(context) -> emptyVisual
+                isGreeked(context) -> updateGreekedVisual(oldVisual as? GreekedTextVisual ?: GreekedTextVisual())
+                oldVisual is GreekedTextVisual || oldVisual === emptyVisual -> super.createVisual(context)
+                else -> super.updateVisual(context, oldVisual)
+            }
+        }
+
+        private fun updateGreekedVisual(visual: GreekedTextVisual): GreekedTextVisual {
+            return visual.apply {
+                text = label.text
+                font = style.font
+                paint = style.textPaint
+                bounds = label.layout.bounds.getReduced(style.insets)
+                alignment = when(style.textAlignment) {
+                    TextAlignment.LEFT -> 0.0
+                    TextAlignment.RIGHT -> 1.0
+                    else -> 0.5
+                }
+            }
+        }
+    }
+}
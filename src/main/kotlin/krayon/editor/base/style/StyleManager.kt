@@ -31,13 +31,55 @@ class StyleManager<T>(private val typeMapper:(IModelItem) -> T, private val styl
     val styles:List<GraphStyle<T>> get() = _styles
     val styleListeners = mutableListOf<StyleListener<T>>()
 
+    //managed styles bucketed by content hash. keys are the hashes at registration time.
+    private val internTable = HashMap<Int, MutableList<GraphStyle<T>>>()
+    private val internKeys = HashMap<GraphStyle<T>, Int>()
+
     fun addStyle(style: GraphStyle<T>) {
         _styles.add(style)
+        registerContent(style)
     }
 
     @Suppress("MemberVisibilityCanBePrivate")
     fun removeStyle(style: GraphStyle<T>) {
         _styles.remove(style)
+        unregisterContent(style)
+    }
+
+    /**
+     * Returns a managed style with the same content as the given style, or null if there is none.
+     */
+    fun findEquivalentStyle(style: GraphStyle<T>): GraphStyle<T>? {
+        if(internKeys.containsKey(style)) return style
+        return internTable[style.contentHash]?.firstOrNull { it.hasSameContent(style) }
+    }
+
+    /**
+     * Returns the managed style with the same content as the given style. If there is none, the style gets added.
+     */
+    fun internStyle(style: GraphStyle<T>): GraphStyle<T> {
+        return findEquivalentStyle(style) ?: style.also { addStyle(it) }
+    }
+
+    private fun registerContent(style: GraphStyle<T>) {
+        val hash = style.contentHash
+        internKeys[style] = hash
+        internTable.getOrPut(hash) { mutableListOf() }.add(style)
+    }
+
+    private fun unregisterContent(style: GraphStyle<T>) {
+        val hash = internKeys.remove(style) ?: return
+        internTable[hash]?.let { bucket ->
+            bucket.remove(style)
+            if(bucket.isEmpty()) internTable.remove(hash)
+        }
+    }
+
+    private fun updateContent(style: GraphStyle<T>) {
+        if(internKeys.containsKey(style)) {
+            unregisterContent(style)
+            registerContent(style)
+        }
     }
 
     fun applyStyle(graphStyle: GraphStyle<T>, graph: IGraph, applySize:Boolean = true) {
@@ -182,6 +224,7 @@ class StyleManager<T>(private val typeMapper:(IModelItem) -> T, private val styl
                 }
             }
         }
+        updateContent(graphStyle)
     }
 
     fun updateStyle(graphStyle: GraphStyle<T>, types:List<T>, styleKey: StyleProperty, value:Any?) {
@@ -190,6 +233,7 @@ class StyleManager<T>(private val typeMapper:(IModelItem) -> T, private val styl
             targetStyleMap[styleKey] = value
             graphStyle.styleTemplateMap[type] = targetStyleMap
         }
+        updateContent(graphStyle)
         styleListeners.forEach { it.onStyleEvent(graphStyle, StyleOp.MODIFY) }
     }
 
@@ -13,6 +13,7 @@ import com.yworks.yfiles.geometry.IRectangle
 import com.yworks.yfiles.geometry.RectD
 import com.yworks.yfiles.geometry.SizeD
 import com.yworks.yfiles.view.IRenderContext
+import krayon.util.RenderMetrics
 import java.awt.Font
 import java.awt.Graphics2D
 import java.awt.Paint
@@ -39,7 +40,17 @@ class TextVisual(var text:String, var font: Font, var textColor: Paint, var layo
 
     override fun paint(context: IRenderContext, g: Graphics2D) {
         if(text.isEmpty()) return
+        if(LevelOfDetail.isGreeked(context, font)) {
+            val alignment = when(horizontalAlignment) {
+                HorizontalAlignment.CENTER -> 0.5
+                HorizontalAlignment.LEFT -> 0.0
+                HorizontalAlignment.RIGHT -> 1.0
+            }
+            LevelOfDetail.paintGreekedText(g, text, font, textColor, layout.toRectD(), alignment)
+            return
+        }
 
+        val startTime = RenderMetrics.startTimer()
         val gfx = g.create() as Graphics2D
         val frc = FontRenderContext(font.transform, true, true)
         val textLayout = TextLayout(text, font, frc)
@@ -56,6 +67,7 @@ class TextVisual(var text:String, var font: Font, var textColor: Paint, var layo
         gfx.drawString(text, xPos.toFloat(), (layout.y + (layout.height + textLayout.ascent - textLayout.descent) * 0.5).toFloat())
 
         gfx.dispose()
+        RenderMetrics.addPaintTime("TextVisual", startTime)
     }
 
     companion object {
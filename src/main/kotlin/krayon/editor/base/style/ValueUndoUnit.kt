@@ -10,8 +10,24 @@
 package krayon.editor.base.style
 
 import com.yworks.yfiles.graph.AbstractUndoUnit
+import com.yworks.yfiles.graph.IUndoUnit
+import krayon.editor.base.util.BoundedUndoEngine
+
+/**
+ * Units with the same non-null [mergeKey] are merged when they follow each other within [MERGE_WINDOW] milliseconds,
+ * so that repeated changes of one property take a single undo step. Keys should identify the changed item and
+ * property, see [mergeKey].
+ */
+class ValueUndoUnit<T>(name:String, val startValue:T, endValue:T, val mergeKey:Any? = null, val actor: (T) -> Unit ) : AbstractUndoUnit(name), BoundedUndoEngine.ISizedUndoUnit {
+
+    var endValue = endValue
+        private set
+
+    /** time of the last change held by this unit */
+    private var changeTime = System.currentTimeMillis()
+
+    override val estimatedBytes get() = 64L
 
-class ValueUndoUnit<T>(name:String, val startValue:T, val endValue:T, val actor: (T) -> Unit ) : AbstractUndoUnit(name) {
     override fun redo() {
         actor(endValue)
     }
@@ -19,4 +35,19 @@ class ValueUndoUnit<T>(name:String, val startValue:T, val endValue:T, val actor:
     override fun undo() {
         actor(startValue)
     }
-}
\ No newline at end of file
+
+    override fun tryMergeUnit(unit: IUndoUnit): Boolean {
+        if(mergeKey == null || unit !is ValueUndoUnit<*> || unit.mergeKey != mergeKey) return false
+        if(unit.changeTime - changeTime > MERGE_WINDOW) return false
+        @Suppress("UNCHECKED_CAST")
+        endValue = unit.endValue as T
+        changeTime = unit.changeTime
+        return true
+    }
+
+    companion object {
+        const val MERGE_WINDOW = 1500L
+
+        fun mergeKey(item:Any, property:String):Any = Pair(item, property)
+    }
+}
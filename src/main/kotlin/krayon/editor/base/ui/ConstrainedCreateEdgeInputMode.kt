@@ -41,6 +41,7 @@ open class ConstrainedCreateEdgeInputMode<T> : CreateEdgeInputMode() {
     val constraintManager get() = inputModeContext.graphComponent.lookup(IModelConstraintManager::class.java) as IModelConstraintManager<T>
 
     private var showInvalidPorts = true
+    private var isInteractionActive = false
 
     protected open fun configureTargetNode(target:INode, targetType:T, location:PointD, edgeHint: IEdgeCreationHint<T>) {
         typeModel.setType(target,targetType)
@@ -142,6 +143,7 @@ open class ConstrainedCreateEdgeInputMode<T> : CreateEdgeInputMode() {
         val source = sourcePortCandidate?.owner as? INode
         val edge = dummyEdge
         if(source != null) {
+            beginConstraintInteraction()
             edgeCreationHints = constraintManager.getEdgeCreationHints(graph, source, sourcePort)
             nextHintIndex = 0
             if(edgeCreationHints.isEmpty()) throw IllegalStateException("edge creation hints cannot be empty")
@@ -164,11 +166,30 @@ open class ConstrainedCreateEdgeInputMode<T> : CreateEdgeInputMode() {
     override fun onCanceled() {
         super.onCanceled()
         resetEdgeCreationHints()
+        endConstraintInteraction()
     }
 
     override fun onEdgeCreated(p0: EdgeEventArgs?) {
         super.onEdgeCreated(p0)
         resetEdgeCreationHints()
+        endConstraintInteraction()
+    }
+
+    /**
+     * validity checks for hovered port candidates are memoized while a gesture is in progress
+     */
+    private fun beginConstraintInteraction() {
+        if(!isInteractionActive) {
+            constraintManager.beginInteraction(graph)
+            isInteractionActive = true
+        }
+    }
+
+    private fun endConstraintInteraction() {
+        if(isInteractionActive) {
+            isInteractionActive = false
+            constraintManager.endInteraction()
+        }
     }
 
     fun doCreateEdge() {
@@ -199,6 +220,7 @@ open class ConstrainedCreateEdgeInputMode<T> : CreateEdgeInputMode() {
     }
 
     override fun uninstall(context: IInputModeContext) {
+        endConstraintInteraction()
         context.canvasComponent.apply {
             removeMouse2DClickedListener(mouseClickedListener)
             removeKeyListener(keyListener)
@@ -20,6 +20,7 @@ import com.yworks.yfiles.graph.styles.ShapeNodeStyle
 import com.yworks.yfiles.view.*
 import krayon.editor.base.model.IModelItemFeature
 import krayon.editor.base.model.SimpleFeature
+import krayon.editor.base.style.LevelOfDetail
 import krayon.editor.base.util.translate
 import krayon.editor.base.util.unaryMinus
 import java.awt.*
@@ -243,11 +244,15 @@ open class GraphPaletteComponent(val modelGraph:IGraph = DefaultGraph()) : JPane
         }
     }
 
+    /** notified when the palette items change their appearance, e.g. after a style change */
+    val paletteChangedListeners = mutableListOf<() -> Unit>()
+
     open fun invalidateRenderer() {
         sections.forEach {
             (it.cellRenderer as? PaletteNodeRenderer)?.invalidateCache()
             repaint()
         }
+        paletteChangedListeners.forEach { it() }
     }
 
     fun addPaletteNodeLabel(configure: (INode, ILabel, IGraph) -> Unit) {
@@ -512,7 +517,7 @@ open class GraphPaletteComponent(val modelGraph:IGraph = DefaultGraph()) : JPane
                 val scale1 = Math.min(1.0, pixelImageExporter.configuration.calculateScaleForWidth(maxIconWidth.toDouble()))
                 val scale2 = Math.min(1.0, pixelImageExporter.configuration.calculateScaleForHeight(maxIconHeight.toDouble()))
                 pixelImageExporter.configuration.scale = Math.min(scale1, scale2)
-                image = pixelImageExporter.exportToBitmap(graphComponent)
+                image = LevelOfDetail.withFullDetail { pixelImageExporter.exportToBitmap(graphComponent) }
             }
 
             override fun paintIcon(c: Component, g: Graphics, x: Int, y: Int) {
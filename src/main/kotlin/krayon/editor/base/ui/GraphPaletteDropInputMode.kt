@@ -12,11 +12,14 @@ package krayon.editor.base.ui
 import com.yworks.yfiles.geometry.IPoint
 import com.yworks.yfiles.geometry.PointD
 import com.yworks.yfiles.geometry.RectD
+import com.yworks.yfiles.geometry.SizeD
 import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.graph.labelmodels.ILabelModel
 import com.yworks.yfiles.graph.labelmodels.ILabelModelParameter
 import com.yworks.yfiles.graph.labelmodels.ILabelModelParameterFinder
 import com.yworks.yfiles.graph.labelmodels.ILabelModelParameterProvider
 import com.yworks.yfiles.graph.portlocationmodels.IPortLocationModelParameter
+import com.yworks.yfiles.graph.styles.IEdgeStyle
 import com.yworks.yfiles.graph.styles.ILabelStyle
 import com.yworks.yfiles.graph.styles.INodeStyle
 import com.yworks.yfiles.graph.styles.IPortStyle
@@ -39,7 +42,10 @@ import java.util.*
 import javax.swing.KeyStroke
 import javax.swing.SwingUtilities
 
-open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDropInputMode() {
+open class GraphPaletteDropInputMode(val transferData: PaletteTransferData) : NodeDropInputMode() {
+
+    constructor(paletteGraph: IGraph) : this(PaletteTransferData(paletteGraph))
+
     private var edgeGraph: IGraph? = null
     private var hitNode: INode? = null
     private var hitEdge: IEdge? = null
@@ -49,10 +55,13 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
     /**
      * This graph holds the transfer data elements.
      */
-    val transferGraph:IGraph = DefaultGraph()
+    val transferGraph:IGraph get() = transferData.transferGraph
 
     private var originalTransferData:Any? = null
     private var mappedTransferData:Any? = null
+    private var mappedTransferVersion = -1
+    /** the dragged transfer copy has been changed during this drag, see [onTransferDataModified] */
+    private var isTransferDataModified = false
 
     /** minimum time in ms between commands that are triggered via the keyboard during dnd */
     var keyEventResolution = 500L
@@ -93,51 +102,35 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
                 val keyStroke = KeyStroke.getKeyStroke(e.keyCode, e.modifiers)
                 CommandManager.getCommand(keyStroke, CommandScope.DRAG_ITEM)?.let {
                     CommandManager.execute(it, null, CommandManager.InvocationMethod.VIA_KEYBOARD)
+                    clearHitCache()
                 }
             }
         }
     }
 
     /**
-     * return a copy of the Transferable data
+     * returns the pre-built transfer copy of the dragged palette node, see [PaletteTransferData]. Drop handlers clone
+     * styles and tags, so the copies never end up in the target graph.
      */
     override fun getTransferData(transferable: Transferable, dataFlavor: DataFlavor): Any? {
         val data = super.getTransferData(transferable, dataFlavor)
-        if(data != originalTransferData) {
-            transferGraph.clear()
-            val paletteNode = data as INode
-            val copyFilter = { item:IModelItem ->
-                item == paletteNode || item is IPort && item.owner == paletteNode || item is ILabel && item.owner == paletteNode
-            }
-            GraphCopier().copy(paletteGraph, copyFilter, transferGraph, PointD.ORIGIN) { _, copiedItem ->
-                if (copiedItem.tag is IGraph) {
-                    val innerGraph = copiedItem.tag as IGraph
-                    val origInnerGraphTag = innerGraph.tag
-                    //println("origInnerGraphTag=$origInnerGraphTag")
-                    val newInnerGraph = DefaultGraph().apply {
-                        tag = origInnerGraphTag
-                    }
-                    GraphCopier().copy(copiedItem.tag as IGraph, { _ -> true }, newInnerGraph, PointD.ORIGIN, { innerOrigItem, innerCopiedItem ->
-                        if(innerOrigItem == origInnerGraphTag) {
-                            newInnerGraph.tag = innerCopiedItem
-                        }
-                        else if (innerCopiedItem.tag is ICloneable) {
-                            innerCopiedItem.tag = (innerCopiedItem.tag as ICloneable).clone()
-                        }
-                    })
-                    //println("assign newInnerGraph")
-                    copiedItem.tag = newInnerGraph
-                }
-                else if (copiedItem.tag is ICloneable) {
-                    copiedItem.tag = (copiedItem.tag as ICloneable).clone()
-                }
-            }
-            mappedTransferData = transferGraph.nodes.first()
+        if(data != originalTransferData || mappedTransferVersion != transferData.version) {
+            mappedTransferData = (data as? INode)?.let { transferData.getTransferNode(it) }
             originalTransferData = data
+            mappedTransferVersion = transferData.version
         }
         return mappedTransferData
     }
 
+    /**
+     * drops all transfer copies, e.g. after the palette style changed. Copies are rebuilt on the EDT in a later
+     * event cycle.
+     */
+    fun invalidateTransferData() {
+        transferData.invalidate()
+        clearTransferState()
+    }
+
     override fun onDragEntered(event: DropTargetDragEvent) {
         super.onDragEntered(event)
         val node = dropData as INode
@@ -153,6 +146,7 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
             validDropHitTestable = onNodeHitTestable
         }
 
+        clearHitCache()
         graphComponent.requestFocus()
         graphComponent.addKeyListener(keyListener)
     }
@@ -162,20 +156,39 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
     }
 
     override fun onDragDropped(p0: DropTargetDropEvent?) {
+        val paletteItem = originalTransferData
         removeKeyListeners()
         clearTransferState()
         super.onDragDropped(p0)
+        discardModifiedTransferData(paletteItem)
     }
 
     override fun onDragExited(p0: DropTargetEvent?) {
+        val paletteItem = originalTransferData
         removeKeyListeners()
         clearTransferState()
         super.onDragExited(p0)
+        discardModifiedTransferData(paletteItem)
+    }
+
+    /**
+     * to be called when the dragged transfer copy gets changed, e.g. rotated. Since copies are shared, the changed copy
+     * is discarded when the drag ends, so that later drags in any document start from the palette item again.
+     */
+    fun onTransferDataModified() {
+        isTransferDataModified = true
+    }
+
+    private fun discardModifiedTransferData(paletteItem: Any?) {
+        if(!isTransferDataModified) return
+        isTransferDataModified = false
+        (paletteItem as? INode)?.let { transferData.discard(it) }
     }
 
     private fun clearTransferState() {
         originalTransferData = null
         mappedTransferData = null
+        clearHitCache()
     }
 
     val affectedNodeOffset = object: IPoint {
@@ -183,7 +196,7 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
         override fun getY() = draggedItem?.let { mousePosition.y - it.layout.center.y + it.layout.y} ?: 0.0
     }
 
-    private val onNodeHitTestable = IHitTestable { context, location ->
+    private val onNodeHitTestable = CachingHitTestable(IHitTestable { context, location ->
         //println("isHit")
         hitNode = localContext.lookup(INodeHitTester::class.java)?.enumerateHits(localContext, location)?.firstOrNull()
         val draggedEdge = getItemFromDraggedNode() as? IEdge
@@ -206,10 +219,10 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
             if(feature != null && !isAcceptingFeature(hitNode as INode, feature)) return@IHitTestable false
         }
         hitNode != null
-    }
+    })
 
 
-    private val onEdgeHitTestable = IHitTestable { context, location ->
+    private val onEdgeHitTestable = CachingHitTestable(IHitTestable { context, location ->
         hitEdge = context.lookup(IEdgeHitTester::class.java)?.enumerateHits(context, location)?.firstOrNull()
         if(hitEdge != null) {
             val draggedItem = getItemFromDraggedNode() as? IModelItem
@@ -220,10 +233,65 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
             }
         }
         else false
-    }
+    })
 
-    private val onNodeOrEdgeHitTestable = IHitTestable { context, location ->
+    private val onNodeOrEdgeHitTestable = CachingHitTestable(IHitTestable { context, location ->
         if(onNodeHitTestable.isHit(context, location)) true else onEdgeHitTestable.isHit(context, location)
+    })
+
+    /** size in view pixels of the cells in which drag locations share hit test results */
+    var hitCacheResolution = 2.0
+
+    private class HitResult(val isHit:Boolean, val hitNode:INode?, val hitEdge:IEdge?)
+    private class DropTargetResult(val dropTarget:IModelItem?, val hitNode:INode?, val hitEdge:IEdge?)
+
+    private val dropTargetCache = HashMap<Long, DropTargetResult>()
+    private var hitCacheZoom = 0.0
+
+    /**
+     * Hit results are kept for the current drag session, keyed by the quantized drag location, and restore
+     * [hitNode] and [hitEdge] along with the result. Edge drags are not cached, since port highlights follow the exact
+     * mouse location.
+     */
+    private inner class CachingHitTestable(private val hitTestable: IHitTestable) : IHitTestable {
+        val cache = HashMap<Long, HitResult>()
+
+        override fun isHit(context: IInputModeContext, location: PointD): Boolean {
+            if(!isHitCacheEnabled()) return hitTestable.isHit(context, location)
+            val key = getHitCacheKey(location)
+            cache[key]?.let {
+                hitNode = it.hitNode
+                hitEdge = it.hitEdge
+                return it.isHit
+            }
+            val isHit = hitTestable.isHit(context, location)
+            cache[key] = HitResult(isHit, hitNode, hitEdge)
+            return isHit
+        }
+    }
+
+    private fun isHitCacheEnabled() = getItemFromDraggedNode() !is IEdge
+
+    private fun getHitCacheKey(location: PointD):Long {
+        val zoom = graphComponent.zoom
+        if(zoom != hitCacheZoom) {
+            clearHitCache()
+            hitCacheZoom = zoom
+        }
+        val x = Math.floor(location.x * zoom / hitCacheResolution).toLong()
+        val y = Math.floor(location.y * zoom / hitCacheResolution).toLong()
+        return (x shl 32) xor (y and 0xffffffffL)
+    }
+
+    /**
+     * drops cached hit results, e.g. when the dragged item or the graph changed during the drag.
+     */
+    protected fun clearHitCache() {
+        onNodeHitTestable.cache.clear()
+        onEdgeHitTestable.cache.clear()
+        onNodeOrEdgeHitTestable.cache.clear()
+        dropTargetCache.clear()
+        labelCandidateCache.clear()
     }
 
     init {
@@ -244,6 +312,17 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
     }
 
     override fun getDropTarget(location: PointD): IModelItem? {
+        if(!isHitCacheEnabled()) return findDropTarget(location)
+        val key = getHitCacheKey(location)
+        dropTargetCache[key]?.let {
+            hitNode = it.hitNode
+            hitEdge = it.hitEdge
+            return it.dropTarget
+        }
+        return findDropTarget(location).also { dropTargetCache[key] = DropTargetResult(it, hitNode, hitEdge) }
+    }
+
+    private fun findDropTarget(location: PointD): IModelItem? {
         return if(onNodeOrEdgeHitTestable.isHit(localContext, location)) {
             val draggedNode = getItemFromDraggedNode() as? INode
             val draggedGraph = getItemFromDraggedNode() as? IGraph
@@ -339,8 +418,14 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
         val selection = graphComponent.selection
         selection.clear()
         GraphCopier().copy(paletteGraph, { _ -> true }, graph, offset, { _, copiedItem ->
-            if (copiedItem is INode) {
-                selection.setSelected(copiedItem, true)
+            when(copiedItem) {
+                is INode -> {
+                    selection.setSelected(copiedItem, true)
+                    graph.setStyle(copiedItem, copiedItem.style.clone() as INodeStyle)
+                }
+                is IEdge -> graph.setStyle(copiedItem, copiedItem.style.clone() as IEdgeStyle)
+                is ILabel -> graph.setStyle(copiedItem, copiedItem.style.clone() as ILabelStyle)
+                is IPort -> graph.setStyle(copiedItem, copiedItem.style.clone() as IPortStyle)
             }
             if(copiedItem.tag is ICloneable) {
                 copiedItem.tag = (copiedItem.tag as ICloneable).clone()
@@ -369,6 +454,7 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
         return newNode.apply {
             labels.forEach { label ->
                 label.tag = if (label.tag is ICloneable) (label.tag as ICloneable).clone() else label.tag
+                localContext.graph.setStyle(label, label.style.clone() as ILabelStyle)
             }
             localContext.graph.setStyle(this, style.clone() as INodeStyle)
             if (paletteNode.tag is Cloneable) tag = (paletteNode.tag as ICloneable).clone()
@@ -423,27 +509,23 @@ open class GraphPaletteDropInputMode(private val paletteGraph: IGraph) : NodeDro
         //leave this to subclasses
     }
 
+    private class LabelCandidate(val parameter: ILabelModelParameter, val center: PointD)
+
+    /** label candidates with their centers, computed once per label owner, model and size during a drag session */
+    private val labelCandidateCache = HashMap<Triple<ILabelOwner, ILabelModel, SizeD>, List<LabelCandidate>>()
+
     private fun getNearestLabelParameter(label: ILabel): ILabelModelParameter {
-        //return label.layoutParameter
-        var bestParam = label.layoutParameter
-        val model = bestParam.model
-        var bestDistance:Double = Double.MAX_VALUE
-
-        if(model is ILabelModelParameterProvider) {
-            val candidates = ArrayList<ILabelModelParameter>()
-            candidates.add(bestParam)
-            model.getParameters(label, model).forEach { c -> candidates.add(c) }
-            val dropPoint = PointD(dropLocation.x, dropLocation.y)
-            candidates.forEach { candidate ->
-                val bounds = candidate.model.getGeometry(label,candidate).bounds
-                val dist = bounds.center.distanceTo(dropPoint)
-                if(dist < bestDistance) {
-                    bestParam = candidate
-                    bestDistance = dist
-                }
-            }
+        val model = label.layoutParameter.model
+        if(model !is ILabelModelParameterProvider) return label.layoutParameter
+
+        val candidates = labelCandidateCache.getOrPut(Triple(label.owner, model, label.preferredSize)) {
+            val parameters = ArrayList<ILabelModelParameter>()
+            parameters.add(label.layoutParameter)
+            model.getParameters(label, model).forEach { c -> parameters.add(c) }
+            parameters.map { LabelCandidate(it, it.model.getGeometry(label, it).bounds.center) }
         }
-        return bestParam
+        val dropPoint = PointD(dropLocation.x, dropLocation.y)
+        return candidates.minBy { it.center.distanceTo(dropPoint) }?.parameter ?: label.layoutParameter
     }
 
     private fun getNearestPortLocation(port: IPort): IPortLocationModelParameter {
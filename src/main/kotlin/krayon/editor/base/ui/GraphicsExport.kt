@@ -23,6 +23,7 @@ import org.w3c.dom.DocumentFragment
 import org.w3c.dom.Element
 import org.w3c.dom.svg.SVGDocument
 import krayon.editor.base.config.GraphicsExportConfiguration
+import krayon.editor.base.style.LevelOfDetail
 import yfiles.demo.toolkit.optionhandler.OptionEditor
 import java.awt.*
 import java.awt.event.ActionEvent
@@ -130,7 +131,7 @@ class GraphicsExport(val graphComponent: GraphComponent)  {
                 param.compressionMode = ImageWriteParam.MODE_EXPLICIT
                 param.compressionQuality = config.imageQuality.toFloat()
                 try {
-                    exporter.export(component, stream, writer, param)
+                    LevelOfDetail.withFullDetail { exporter.export(component, stream, writer, param) }
                 } catch (e: IOException) {
                     e.printStackTrace()
                 } finally {
@@ -138,7 +139,7 @@ class GraphicsExport(val graphComponent: GraphComponent)  {
                 }
             } else {
                 try {
-                    exporter.export(component, stream, format.canonicalExtension())
+                    LevelOfDetail.withFullDetail { exporter.export(component, stream, format.canonicalExtension()) }
                 } catch (e: IOException) {
                     e.printStackTrace()
                 }
@@ -297,7 +298,7 @@ class GraphicsExport(val graphComponent: GraphComponent)  {
         val svgGraphics2D = SVGGraphics2D(doc)
 
         // paintSvg the content of the exporting graph component to the Graphics object
-        paintSvg(getExportingGraphComponent(), svgGraphics2D)
+        LevelOfDetail.withFullDetail { paintSvg(getExportingGraphComponent(), svgGraphics2D) }
 
         svgGraphics2D.dispose()
         val svgRoot = svgGraphics2D.getRoot(doc.documentElement)
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.ui
+
+import com.yworks.yfiles.geometry.MutableRectangle
+import com.yworks.yfiles.geometry.RectD
+import com.yworks.yfiles.graph.IEdge
+import com.yworks.yfiles.graph.ILabel
+import com.yworks.yfiles.graph.INode
+import com.yworks.yfiles.graph.IPort
+import com.yworks.yfiles.view.*
+import java.util.*
+import javax.swing.Timer
+
+/**
+ * Creates the style visuals of graph items only once they come near the rendered area, i.e. the viewport plus
+ * [createMargin]. Items that stay farther than [disposeMargin] off-screen for [disposeDelay] milliseconds lose their
+ * visual again, so huge maps neither pay for visuals nobody looks at nor keep them after scrolling by.
+ *
+ * Works by wrapping the descriptors of the graph model manager, like the render monitor does. Since the rendered area
+ * is taken from the render context, exports and printing still get the visuals of everything they render.
+ */
+class LazyVisualSupport(private val graphComponent: GraphComponent) {
+
+    /** margin in view coordinates around the rendered area, within which visuals are created ahead */
+    var createMargin = 200.0
+    /** margin in view coordinates around the viewport, beyond which visuals are disposed */
+    var disposeMargin = 1500.0
+    var disposeDelay = 10000
+        set(value) {
+            field = value
+            sweepTimer.delay = value / 2
+        }
+
+    var isInstalled = false
+        private set
+
+    /** items whose visual creation was skipped */
+    private val deferredItems = Collections.newSetFromMap(WeakHashMap<Any, Boolean>())
+    /** items with a visual, to the last time they were near the viewport */
+    private val lastNearTimes = WeakHashMap<Any, Long>()
+    /** items whose visual is dropped on the next update */
+    private val releasingItems = Collections.newSetFromMap(WeakHashMap<Any, Boolean>())
+    private val originalDescriptors = mutableListOf<() -> Unit>()
+
+    private val sweepTimer = Timer(disposeDelay / 2) { sweep() }
+
+    fun install() {
+        if(isInstalled) return
+        isInstalled = true
+        with(graphComponent.graphModelManager) {
+            val nodes = nodeDescriptor
+            val edges = edgeDescriptor
+            val nodeLabels = nodeLabelDescriptor
+            val edgeLabels = edgeLabelDescriptor
+            val ports = portDescriptor
+            nodeDescriptor = LazyDescriptor(nodes)
+            edgeDescriptor = LazyDescriptor(edges)
+            nodeLabelDescriptor = LazyDescriptor(nodeLabels)
+            edgeLabelDescriptor = LazyDescriptor(edgeLabels)
+            portDescriptor = LazyDescriptor(ports)
+            originalDescriptors += {
+                nodeDescriptor = nodes
+                edgeDescriptor = edges
+                nodeLabelDescriptor = nodeLabels
+                edgeLabelDescriptor = edgeLabels
+                portDescriptor = ports
+            }
+        }
+        sweepTimer.start()
+    }
+
+    fun uninstall() {
+        if(!isInstalled) return
+        isInstalled = false
+        sweepTimer.stop()
+        originalDescriptors.forEach { it() }
+        originalDescriptors.clear()
+        clear()
+        graphComponent.invalidate()
+    }
+
+    /**
+     * forgets all bookkeeping, e.g. after the canvas objects of all items have been removed.
+     */
+    fun clear() {
+        deferredItems.clear()
+        lastNearTimes.clear()
+        releasingItems.clear()
+    }
+
+    /**
+     * marks the visuals of items that have been far off-screen for too long for release. Only items that got a
+     * visual are visited, so this stays cheap on huge maps.
+     */
+    private fun sweep() {
+        if(lastNearTimes.isEmpty() || !graphComponent.isShowing) return
+        val keptArea = graphComponent.viewport.getEnlarged(disposeMargin / graphComponent.zoom)
+        val now = System.currentTimeMillis()
+        var hasReleases = false
+        lastNearTimes.entries.forEach { entry ->
+            val bounds = getBounds(entry.key)
+            if(bounds == null || bounds.intersects(keptArea)) entry.setValue(now)
+            else if(now - entry.value > disposeDelay) {
+                releasingItems += entry.key
+                hasReleases = true
+            }
+        }
+        releasingItems.forEach { lastNearTimes.remove(it) }
+        if(hasReleases) graphComponent.invalidate()
+    }
+
+    private fun isNear(item: Any?, context: IRenderContext):Boolean {
+        val clip = context.clip ?: return true
+        val bounds = getBounds(item) ?: return true
+        return bounds.intersects(clip.getEnlarged(createMargin / context.zoom))
+    }
+
+    /** world bounds of the item without its style, or null if unknown */
+    private fun getBounds(item: Any?):RectD? {
+        return when(item) {
+            is INode -> item.layout.toRectD()
+            is ILabel -> item.layout.bounds
+            is IPort -> RectD(item.location.x, item.location.y, 0.0, 0.0)
+            is IEdge -> MutableRectangle().apply {
+                add(item.sourcePort.location)
+                add(item.targetPort.location)
+                item.bends.forEach { add(it.location) }
+            }.toRectD()
+            else -> null
+        }
+    }
+
+    private inner class LazyDescriptor(private val delegate: ICanvasObjectDescriptor) : ICanvasObjectDescriptor by delegate {
+        override fun getVisualCreator(forUserObject: Any?): IVisualCreator {
+            return LazyVisualCreator(delegate.getVisualCreator(forUserObject), forUserObject)
+        }
+
+        override fun isDirty(context: ICanvasContext, canvasObject: ICanvasObject):Boolean {
+            if(delegate.isDirty(context, canvasObject)) return true
+            val item = canvasObject.userObject
+            return item in deferredItems || (releasingItems.isNotEmpty() && item in releasingItems)
+        }
+
+        override fun getVisibilityTestable(forUserObject: Any?):IVisibilityTestable {
+            val testable = delegate.getVisibilityTestable(forUserObject)
+            // released items must get their update, wherever they are
+            return IVisibilityTestable { context, rect ->
+                testable.isVisible(context, rect) || (releasingItems.isNotEmpty() && forUserObject in releasingItems)
+            }
+        }
+    }
+
+    private inner class LazyVisualCreator(private val delegate: IVisualCreator, private val item: Any?) : IVisualCreator {
+        override fun createVisual(context: IRenderContext): IVisual? {
+            releasingItems.remove(item)
+            if(item == null) return delegate.createVisual(context)
+            if(!isNear(item, context)) {
+                deferredItems += item
+                return null
+            }
+            deferredItems.remove(item)
+            lastNearTimes[item] = System.currentTimeMillis()
+            return delegate.createVisual(context)
+        }
+
+        override fun updateVisual(context: IRenderContext, oldVisual: IVisual?): IVisual? {
+            if(oldVisual == null) return createVisual(context)
+            if(item != null && releasingItems.remove(item)) {
+                if(!isNear(item, context)) {
+                    deferredItems += item
+                    return null
+                }
+                lastNearTimes[item] = System.currentTimeMillis()
+            }
+            return delegate.updateVisual(context, oldVisual)
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.ui
+
+import com.yworks.yfiles.geometry.PointD
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.utils.ICloneable
+import javax.swing.SwingUtilities
+
+/**
+ * Pre-built transfer copies of the nodes of a palette graph. Copies are built once per palette node and kept in
+ * [transferGraph] until [invalidate] is called. One instance can serve the drop input modes of all open documents,
+ * since only one drag is active at a time. Copies changed during a drag are discarded when the drag ends.
+ */
+class PaletteTransferData(val paletteGraph: IGraph) {
+
+    val transferGraph: IGraph = DefaultGraph()
+
+    /** changes whenever the copies are dropped */
+    var version = 0
+        private set
+
+    private val transferNodes = HashMap<INode, INode>()
+    private var isPrebuildPending = false
+
+    /**
+     * drops all transfer copies, e.g. after the palette style changed. Copies are rebuilt on the EDT in a later
+     * event cycle, see [prebuild].
+     */
+    fun invalidate() {
+        transferNodes.clear()
+        transferGraph.clear()
+        version++
+        if(!isPrebuildPending) {
+            isPrebuildPending = true
+            SwingUtilities.invokeLater {
+                isPrebuildPending = false
+                prebuild()
+            }
+        }
+    }
+
+    /**
+     * builds the transfer copies of all palette nodes that have none yet.
+     */
+    fun prebuild() {
+        paletteGraph.nodes.toList().forEach { getTransferNode(it) }
+    }
+
+    /**
+     * drops the copy of the given palette node, e.g. after a drag changed it. It is rebuilt on its next use.
+     */
+    fun discard(paletteNode: INode) {
+        transferNodes.remove(paletteNode)?.let { if(transferGraph.contains(it)) transferGraph.remove(it) }
+    }
+
+    fun getTransferNode(paletteNode: INode):INode? {
+        if(!paletteGraph.contains(paletteNode)) return null
+        return transferNodes.getOrPut(paletteNode) { createTransferNode(paletteNode) }
+    }
+
+    private fun createTransferNode(paletteNode: INode):INode {
+        var transferNode:INode? = null
+        val copyFilter = { item:IModelItem ->
+            item == paletteNode || item is IPort && item.owner == paletteNode || item is ILabel && item.owner == paletteNode
+        }
+        GraphCopier().copy(paletteGraph, copyFilter, transferGraph, PointD.ORIGIN) { _, copiedItem ->
+            if(copiedItem is INode) transferNode = copiedItem
+            if (copiedItem.tag is IGraph) {
+                val innerGraph = copiedItem.tag as IGraph
+                val origInnerGraphTag = innerGraph.tag
+                val newInnerGraph = DefaultGraph().apply {
+                    tag = origInnerGraphTag
+                }
+                GraphCopier().copy(copiedItem.tag as IGraph, { _ -> true }, newInnerGraph, PointD.ORIGIN, { innerOrigItem, innerCopiedItem ->
+                    if(innerOrigItem == origInnerGraphTag) {
+                        newInnerGraph.tag = innerCopiedItem
+                    }
+                    else if (innerCopiedItem.tag is ICloneable) {
+                        innerCopiedItem.tag = (innerCopiedItem.tag as ICloneable).clone()
+                    }
+                })
+                copiedItem.tag = newInnerGraph
+            }
+            else if (copiedItem.tag is ICloneable) {
+                copiedItem.tag = (copiedItem.tag as ICloneable).clone()
+            }
+        }
+        return transferNode!!
+    }
+}
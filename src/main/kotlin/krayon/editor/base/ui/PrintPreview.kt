@@ -15,6 +15,7 @@ import com.yworks.yfiles.view.CanvasComponent
 import com.yworks.yfiles.view.CanvasPrintable
 import com.yworks.yfiles.view.GraphComponent
 import krayon.editor.base.config.PrintConfiguration
+import krayon.editor.base.style.LevelOfDetail
 import krayon.editor.base.util.IconManager
 import yfiles.demo.toolkit.optionhandler.OptionEditor
 import java.awt.BorderLayout
@@ -240,7 +241,7 @@ class PrintPreview(val graphComponent: GraphComponent) {
     private fun print():Boolean {
         if (printerJob.printDialog()) {
             try {
-                printerJob.print()
+                LevelOfDetail.withFullDetail { printerJob.print() }
                 return true
             } catch (e: PrinterAbortException) {
                 // don't show an error because this exception is typically thrown when the user canceled printing
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.ui
+
+import com.yworks.yfiles.geometry.PointD
+import com.yworks.yfiles.geometry.RectD
+import com.yworks.yfiles.geometry.SizeD
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.graph.labelmodels.ILabelModelParameter
+import com.yworks.yfiles.graph.portlocationmodels.IPortLocationModelParameter
+import com.yworks.yfiles.graph.styles.IEdgeStyle
+import com.yworks.yfiles.graph.styles.ILabelStyle
+import com.yworks.yfiles.graph.styles.INodeStyle
+import com.yworks.yfiles.graph.styles.IPortStyle
+import com.yworks.yfiles.utils.ICloneable
+import com.yworks.yfiles.view.input.IInputModeContext
+import krayon.editor.base.util.plus
+import krayon.editor.base.util.times
+import java.util.IdentityHashMap
+import java.util.function.Predicate
+
+/**
+ * Clipboard that records large selections as a [Snapshot] of plain values instead of copying them into the clipboard
+ * graph. Styles and tags are cloned (copy-on-write for SBGN data), styles shared by several items are cloned once.
+ * Pastes create the items right from the snapshot, again cloning each shared style once. The clipboard graph is only
+ * built for other clients that access it.
+ */
+open class SnapshotGraphClipboard : GraphClipboard() {
+
+    /** selections with more nodes are recorded as snapshot */
+    var snapshotThreshold = 500
+
+    private var snapshot: Snapshot? = null
+    private var isClipboardGraphCurrent = true
+    private var snapshotPasteCount = 0
+
+    class LabelRecord(val text:String, val parameter:ILabelModelParameter, val style:ILabelStyle, val preferredSize:SizeD, val tag:Any?)
+    class PortRecord(val parameter:IPortLocationModelParameter, val style:IPortStyle, val tag:Any?, val labels:List<LabelRecord>)
+    class NodeRecord(val layout:RectD, val style:INodeStyle, val tag:Any?, val isGroupNode:Boolean, val parentIndex:Int, val labels:List<LabelRecord>, val ports:List<PortRecord>)
+    class EdgeRecord(val sourceIndex:Int, val sourcePortIndex:Int, val targetIndex:Int, val targetPortIndex:Int, val style:IEdgeStyle, val tag:Any?, val bends:List<PointD>, val labels:List<LabelRecord>)
+
+    /**
+     * Immutable record of a part of a graph. Edges are included if they and both of their end nodes are included.
+     */
+    class Snapshot(val nodes:List<NodeRecord>, val edges:List<EdgeRecord>) {
+
+        val isEmpty get() = nodes.isEmpty()
+
+        /**
+         * creates the recorded items in the given graph, which needs not be displayed. Returns the created nodes.
+         * Without [copyStyles], the items get the default styles of the graph instead of the recorded ones. The result
+         * can then be used off the EDT, since the recorded styles share their renderers with the displayed items.
+         * With [cloneStyles], the items get clones of the recorded styles, one per recorded style, so that the snapshot
+         * can be materialized again. Nodes and bends are moved by [offset], created items are passed to [onCreated].
+         */
+        fun materialize(graph: IGraph, copyStyles:Boolean = true, cloneStyles:Boolean = false, offset:PointD = PointD.ORIGIN,
+                        onCreated:((IModelItem) -> Unit)? = null):List<INode> {
+            val styleClones = IdentityHashMap<Any, Any>()
+            fun <T:ICloneable> style(style:T):T {
+                @Suppress("UNCHECKED_CAST")
+                return if(cloneStyles) styleClones.getOrPut(style) { style.clone() } as T else style
+            }
+            fun addLabel(owner: ILabelOwner, record: LabelRecord) {
+                val labelStyle = when {
+                    copyStyles -> style(record.style)
+                    owner is IEdge -> graph.edgeDefaults.labelDefaults.getStyleInstance(owner)
+                    owner is IPort -> graph.nodeDefaults.portDefaults.labelDefaults.getStyleInstance(owner)
+                    else -> graph.nodeDefaults.labelDefaults.getStyleInstance(owner)
+                }
+                val label = graph.addLabel(owner, record.text, record.parameter, labelStyle, record.preferredSize, cloneTag(record.tag))
+                onCreated?.invoke(label)
+            }
+
+            val createdNodes = nodes.map { record ->
+                val nodeStyle = if(copyStyles) style(record.style) else graph.nodeDefaults.styleInstance
+                val layout = if(offset == PointD.ORIGIN) record.layout else RectD(record.layout.topLeft + offset, record.layout.size)
+                graph.createNode(layout, nodeStyle, cloneTag(record.tag)).also { node ->
+                    onCreated?.invoke(node)
+                    if(record.isGroupNode) graph.setIsGroupNode(node, true)
+                    record.labels.forEach { addLabel(node, it) }
+                    record.ports.forEach { portRecord ->
+                        val portStyle = if(copyStyles) style(portRecord.style) else graph.nodeDefaults.portDefaults.getStyleInstance(node)
+                        val port = graph.addPort(node, portRecord.parameter, portStyle, cloneTag(portRecord.tag))
+                        onCreated?.invoke(port)
+                        portRecord.labels.forEach { addLabel(port, it) }
+                    }
+                }
+            }
+            nodes.forEachIndexed { index, record ->
+                if(record.parentIndex >= 0) graph.setParent(createdNodes[index], createdNodes[record.parentIndex])
+            }
+            edges.forEach { record ->
+                val sourcePort = createdNodes[record.sourceIndex].ports.getItem(record.sourcePortIndex)
+                val targetPort = createdNodes[record.targetIndex].ports.getItem(record.targetPortIndex)
+                val edgeStyle = if(copyStyles) style(record.style) else graph.edgeDefaults.styleInstance
+                val edge = graph.createEdge(sourcePort, targetPort, edgeStyle, cloneTag(record.tag))
+                onCreated?.invoke(edge)
+                record.bends.forEach { onCreated?.invoke(graph.addBend(edge, it + offset)) }
+                record.labels.forEach { addLabel(edge, it) }
+            }
+            return createdNodes
+        }
+
+        companion object {
+            /**
+             * records the nodes, labels, ports and edges matching the predicate. Ports used by recorded edges are
+             * always recorded. Without [cloneStyles] the live style instances are recorded,
+             * so the snapshot must be materialized without styles. [recordTag] returns the tag to record for an item,
+             * by default a clone of its tag.
+             */
+            fun create(graph: IGraph, predicate: Predicate<IModelItem>, cloneStyles:Boolean = true,
+                       recordTag:(IModelItem) -> Any? = { cloneTag(it.tag) }):Snapshot {
+                val styleClones = IdentityHashMap<Any, Any>()
+                fun <T:ICloneable> recordStyle(style:T):T {
+                    @Suppress("UNCHECKED_CAST")
+                    return if(cloneStyles) styleClones.getOrPut(style) { style.clone() } as T else style
+                }
+                fun createLabelRecords(owner: ILabelOwner) = owner.labels.filter { predicate.test(it) }.map { label ->
+                    LabelRecord(label.text, label.layoutParameter, recordStyle(label.style), label.preferredSize, recordTag(label))
+                }
+
+                val nodeIndex = HashMap<INode, Int>()
+                val includedNodes = graph.nodes.filter { predicate.test(it) }
+                includedNodes.forEachIndexed { index, node -> nodeIndex[node] = index }
+                val includedEdges = graph.edges.filter { edge ->
+                    predicate.test(edge) && (edge.sourcePort.owner as? INode)?.let { it in nodeIndex } == true
+                            && (edge.targetPort.owner as? INode)?.let { it in nodeIndex } == true
+                }
+                val usedPorts = HashSet<IPort>()
+                includedEdges.forEach { edge ->
+                    usedPorts.add(edge.sourcePort)
+                    usedPorts.add(edge.targetPort)
+                }
+
+                // index of each recorded port within the ports of its node record
+                val portIndex = HashMap<IPort, Int>()
+                val nodeRecords = includedNodes.map { node ->
+                    val parentIndex = graph.getParent(node)?.let { nodeIndex[it] } ?: -1
+                    val ports = node.ports.filter { it in usedPorts || predicate.test(it) }
+                    ports.forEachIndexed { index, port -> portIndex[port] = index }
+                    NodeRecord(node.layout.toRectD(), recordStyle(node.style), recordTag(node), graph.isGroupNode(node), parentIndex,
+                            createLabelRecords(node),
+                            ports.map { port -> PortRecord(port.locationParameter, recordStyle(port.style), recordTag(port), createLabelRecords(port)) })
+                }
+                val edgeRecords = includedEdges.map { edge ->
+                    EdgeRecord(nodeIndex[edge.sourcePort.owner as INode]!!, portIndex[edge.sourcePort]!!, nodeIndex[edge.targetPort.owner as INode]!!, portIndex[edge.targetPort]!!,
+                            recordStyle(edge.style), recordTag(edge), edge.bends.map { it.location.toPointD() }, createLabelRecords(edge))
+                }
+                return Snapshot(nodeRecords, edgeRecords)
+            }
+
+            private fun cloneTag(tag: Any?) = if(tag is ICloneable) tag.clone() else tag
+        }
+    }
+
+    /**
+     * whether the snapshot records an item that the copy predicate rejects, because its owner or its end nodes are
+     * recorded. Subclasses that do not copy all item types independently should match [independentCopyItems].
+     */
+    protected open fun isCopiedWithOwner(item: IModelItem) = false
+
+    override fun copy(graph: IGraph, predicate: Predicate<IModelItem>?) {
+        snapshot = null
+        isClipboardGraphCurrent = true
+        if(predicate != null && graph.nodes.count { predicate.test(it) } > snapshotThreshold) {
+            super.getClipboardGraph().clear()
+            snapshot = Snapshot.create(graph, Predicate { predicate.test(it) || isCopiedWithOwner(it) })
+            isClipboardGraphCurrent = false
+            snapshotPasteCount = 0
+        }
+        else {
+            super.copy(graph, predicate)
+        }
+    }
+
+    override fun isEmpty() = snapshot?.isEmpty ?: super.isEmpty()
+
+    /**
+     * pastes a pending snapshot right into the target graph, each paste moved by one more [pasteDelta]. The snapshot
+     * holds exactly the copied items, so the filter is not applied, and pasted items go to the root like with
+     * [ParentNodeDetectionModes.ROOT].
+     */
+    override fun paste(context: IInputModeContext?, targetGraph: IGraph, filter: Predicate<IModelItem>?, elementPasted: IElementCopiedCallback?, targetFilter: Predicate<INode>?) {
+        val pending = snapshot ?: return super.paste(context, targetGraph, filter, elementPasted, targetFilter)
+        val offset = pasteDelta * (++snapshotPasteCount).toDouble()
+        targetGraph.beginEdit("Paste", "Paste").use {
+            pending.materialize(targetGraph, cloneStyles = true, offset = offset) { item -> elementPasted?.copied(item, item) }
+        }
+    }
+
+    /**
+     * the clipboard graph, built from a pending snapshot for clients that read it directly.
+     */
+    override fun getClipboardGraph():IGraph {
+        val graph = super.getClipboardGraph()
+        if(!isClipboardGraphCurrent) {
+            isClipboardGraphCurrent = true
+            graph.clear()
+            snapshot?.materialize(graph)
+        }
+        return graph
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.ui
+
+import krayon.editor.base.util.BoundedUndoEngine
+import javax.swing.BorderFactory
+import javax.swing.JLabel
+
+/**
+ * shows number of undo steps and their estimated memory use.
+ */
+class UndoHistoryLabel : JLabel() {
+
+    private var engine: BoundedUndoEngine? = null
+    private val historyListener = { engine: BoundedUndoEngine -> update(engine) }
+
+    init {
+        border = BorderFactory.createEmptyBorder(0, 5, 0, 5)
+    }
+
+    fun attach(newEngine: BoundedUndoEngine?) {
+        engine?.historyListeners?.remove(historyListener)
+        engine = newEngine
+        newEngine?.historyListeners?.add(historyListener)
+        if(newEngine != null) update(newEngine) else text = ""
+    }
+
+    private fun update(engine: BoundedUndoEngine) {
+        text = "${engine.stepCount} steps, ${"%.1f".format(engine.estimatedBytes / 1048576.0)} MB"
+        toolTipText = "Undo history: limited to ${engine.maxDepth} steps and ${engine.maxBytes shr 20} MB"
+    }
+}
@@ -63,6 +63,8 @@ object ApplicationSettings {
     val LOOK_AND_FEEL = PropertyKey("LOOK_AND_FEEL", true)
     val DEFAULT_SBGN_STYLE = PropertyKey("DEFAULT_SBGN_STYLE", true)
     val DEFAULT_HIGHLIGHT_COLOR = PropertyKey("DEFAULT_HIGHLIGHT_COLOR")
+    val UNDO_MAX_DEPTH = PropertyKey("UNDO_MAX_DEPTH", true)
+    val UNDO_MAX_MEGABYTES = PropertyKey("UNDO_MAX_MEGABYTES", true)
 
     fun addPropertyChangeListener(listener:PropertyChangeListener) = pcs.addPropertyChangeListener(listener)
     @Suppress("unused")
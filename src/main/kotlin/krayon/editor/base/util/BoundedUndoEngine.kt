@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.util
+
+import com.yworks.yfiles.graph.DefaultGraph
+import com.yworks.yfiles.graph.ICompoundEdit
+import com.yworks.yfiles.graph.IUndoUnit
+import com.yworks.yfiles.graph.UndoEngine
+import java.util.*
+
+/**
+ * Undo engine with a limit on the number of undo steps and on the estimated memory held by them. Once the estimate
+ * exceeds [maxBytes], the oldest steps are dropped, but the most recent step is always kept.
+ *
+ * Memory use is estimated. Units implementing [ISizedUndoUnit] report their own size, memento supports report the
+ * size of the states they create via [allocate], all other units count as [defaultUnitBytes]. Memento states are
+ * created within compound edits, so they are accounted to the engine that began the current compound edit.
+ */
+class BoundedUndoEngine : UndoEngine() {
+
+    interface ISizedUndoUnit {
+        val estimatedBytes:Long
+    }
+
+    var maxDepth = 200
+        set(value) {
+            field = Math.max(1, value)
+            size = field
+            compact()
+        }
+
+    var maxBytes = 64L shl 20
+        set(value) {
+            field = value
+            compact()
+        }
+
+    var defaultUnitBytes = 256L
+
+    /** estimated memory held by all undo and redo steps */
+    var estimatedBytes = 0L
+        private set
+
+    val stepCount get() = steps.size
+
+    val historyListeners = mutableListOf<(BoundedUndoEngine) -> Unit>()
+    /** called after each undo and redo, e.g. to resync state that memento restores change without graph events */
+    val undoRedoListeners = mutableListOf<(BoundedUndoEngine) -> Unit>()
+
+    /** estimated bytes per step, oldest first. The last steps beyond [undoableSteps] are redo steps. */
+    private val steps = ArrayDeque<Long>()
+    private var undoableSteps = 0
+    private var pendingBytes = 0L
+    /** memento state allocated for the next unit of this engine */
+    private var allocatedBytes = 0L
+    private var unrecordedDepth = 0
+
+    init {
+        size = maxDepth
+    }
+
+    override fun beginCompoundEdit(undoName: String?, redoName: String?): ICompoundEdit {
+        val outerEngine = editingEngine
+        editingEngine = this
+        val edit = try {
+            super.beginCompoundEdit(undoName, redoName)
+        }
+        catch(e: RuntimeException) {
+            editingEngine = outerEngine
+            throw e
+        }
+        // the engine stays the target of allocations until the edit ends, then the enclosing one takes over again
+        return object:ICompoundEdit by edit {
+            override fun commit() = endEdit(outerEngine) { edit.commit() }
+            override fun cancel() = endEdit(outerEngine) { edit.cancel() }
+            override fun close() = endEdit(outerEngine) { edit.close() }
+        }
+    }
+
+    private inline fun endEdit(outerEngine: BoundedUndoEngine?, end: () -> Unit) {
+        try {
+            end()
+        }
+        finally {
+            editingEngine = outerEngine
+        }
+    }
+
+    /**
+     * runs the given action without recording its changes, e.g. for derived changes that an undo unit reverts itself.
+     */
+    fun runUnrecorded(action: () -> Unit) {
+        unrecordedDepth++
+        try {
+            action()
+        }
+        finally {
+            unrecordedDepth--
+        }
+    }
+
+    override fun addUnit(unit: IUndoUnit) {
+        if(unrecordedDepth > 0) {
+            unit.dispose()
+            return
+        }
+        val oldToken = token
+        super.addUnit(unit)
+        pendingBytes += allocatedBytes + estimateBytes(unit)
+        allocatedBytes = 0
+        // the token stays the same while the unit goes into a pending compound edit
+        if(oldToken != token && unit is TrailingUndoUnit && unit.precedingUnit != null && undoableSteps > 0 && undoableSteps == steps.size) {
+            // the unit took the place of the last step
+            steps.addLast(steps.removeLast() + pendingBytes)
+            estimatedBytes += pendingBytes
+            pendingBytes = 0
+            compact()
+            fireHistoryChanged()
+        }
+        else if(oldToken != token) {
+            while(steps.size > undoableSteps) estimatedBytes -= steps.removeLast()
+            steps.addLast(pendingBytes)
+            estimatedBytes += pendingBytes
+            pendingBytes = 0
+            undoableSteps = steps.size
+            compact()
+            fireHistoryChanged()
+        }
+    }
+
+    override fun undo() {
+        val couldUndo = canUndo()
+        super.undo()
+        if(couldUndo && undoableSteps > 0) {
+            undoableSteps--
+            fireHistoryChanged()
+        }
+        if(couldUndo) fireUndoRedo()
+    }
+
+    override fun redo() {
+        val couldRedo = canRedo()
+        super.redo()
+        if(couldRedo && undoableSteps < steps.size) {
+            undoableSteps++
+            fireHistoryChanged()
+        }
+        if(couldRedo) fireUndoRedo()
+    }
+
+    override fun clear() {
+        super.clear()
+        steps.clear()
+        undoableSteps = 0
+        pendingBytes = 0
+        allocatedBytes = 0
+        estimatedBytes = 0
+        fireHistoryChanged()
+    }
+
+    private fun estimateBytes(unit: IUndoUnit) = (unit as? ISizedUndoUnit)?.estimatedBytes ?: defaultUnitBytes
+
+    private fun compact() {
+        var dropCount = Math.max(0, steps.size - maxDepth)
+        var remainingBytes = estimatedBytes
+        steps.asSequence().take(dropCount).forEach { remainingBytes -= it }
+        val iterator = steps.iterator()
+        repeat(dropCount) { iterator.next() }
+        while(remainingBytes > maxBytes && steps.size - dropCount > 1 && iterator.hasNext()) {
+            remainingBytes -= iterator.next()
+            dropCount++
+        }
+        if(dropCount == 0) return
+        repeat(dropCount) { steps.removeFirst() }
+        estimatedBytes = remainingBytes
+        undoableSteps = Math.max(0, undoableSteps - dropCount)
+        // shrinking the engine drops its oldest units
+        size = Math.max(1, steps.size)
+        size = maxDepth
+    }
+
+    private fun fireHistoryChanged() {
+        historyListeners.toList().forEach { it(this) }
+    }
+
+    private fun fireUndoRedo() {
+        undoRedoListeners.toList().forEach { it(this) }
+    }
+
+    companion object {
+        /** engine of the innermost open compound edit, set only while that edit is open */
+        private var editingEngine:BoundedUndoEngine? = null
+
+        /**
+         * accounts memory of undo state that is created for the next unit of the engine that began the current
+         * compound edit, e.g. by a memento support.
+         */
+        fun allocate(bytes:Long) {
+            editingEngine?.let { it.allocatedBytes += bytes }
+        }
+
+        fun createGraph() = object:DefaultGraph() {
+            override fun createUndoEngine() = BoundedUndoEngine()
+        }
+    }
+}
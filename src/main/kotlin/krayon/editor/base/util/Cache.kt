@@ -9,6 +9,7 @@
 
 package krayon.editor.base.util
 
+import krayon.util.RenderMetrics
 import java.util.*
 
 interface Cache<K,V> {
@@ -16,10 +17,12 @@ interface Cache<K,V> {
     operator fun get(key:K):V?
     operator fun set(key:K, value:V)
 
-    private class WeakCache<K,V> : Cache<K,V> {
+    private class WeakCache<K,V>(val name:String?) : Cache<K,V> {
         val map = WeakHashMap<K,V>()
         override fun get(key: K): V? {
-            return map[key]
+            val value = map[key]
+            if(name != null) RenderMetrics.countCacheAccess(name, value != null)
+            return value
         }
 
         override fun set(key: K, value: V) {
@@ -39,7 +42,10 @@ interface Cache<K,V> {
     }
 
     companion object {
-        fun <K,V> createWeakCache():Cache<K,V> = WeakCache()
+        /**
+         * a named cache reports hits and misses to [RenderMetrics]
+         */
+        fun <K,V> createWeakCache(name:String? = null):Cache<K,V> = WeakCache(name)
         @Suppress("unused")
         fun <K,V> createNoCache():Cache<K,V> = NoCache()
     }
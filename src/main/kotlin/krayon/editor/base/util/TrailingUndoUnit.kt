@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.base.util
+
+import com.yworks.yfiles.graph.AbstractUndoUnit
+import com.yworks.yfiles.graph.IUndoUnit
+
+/**
+ * Derived changes that are applied after the edit that caused them, e.g. from an invokeLater. The unit replaces the
+ * preceding unit and wraps it, so that edit and derived changes are undone and redone as one step.
+ */
+abstract class TrailingUndoUnit(name:String) : AbstractUndoUnit(name) {
+
+    /** the unit of the causing edit, undone after and redone before the derived changes */
+    var precedingUnit:IUndoUnit? = null
+        private set
+
+    protected abstract fun undoDerived()
+    protected abstract fun redoDerived()
+
+    override fun undo() {
+        undoDerived()
+        precedingUnit?.undo()
+    }
+
+    override fun redo() {
+        precedingUnit?.redo()
+        redoDerived()
+    }
+
+    override fun tryReplaceUnit(unit: IUndoUnit): Boolean {
+        if(precedingUnit != null) return false
+        precedingUnit = unit
+        return true
+    }
+
+    override fun getUndoName():String = precedingUnit?.undoName ?: super.getUndoName()
+
+    override fun getRedoName():String = precedingUnit?.redoName ?: super.getRedoName()
+
+    override fun dispose() {
+        precedingUnit?.dispose()
+        super.dispose()
+    }
+}
@@ -113,12 +113,35 @@ fun IGraph.getBounds(isIncluded: NodePredicate, includeBends:Boolean = true, inc
     return bounds.toRectD()
 }
 
+/**
+ * Bounds of the given nodes. Unlike the predicate variant, only the given nodes and their outgoing edges are visited.
+ */
+fun IGraph.getBounds(nodes: Collection<INode>, includeBends:Boolean = true, includeLabels:Boolean = true): RectD {
+    val bounds = MutableRectangle()
+    val isIncluded = nodes as? Set<INode> ?: nodes.toHashSet()
+    nodes.forEach {
+        bounds.add(it.layout)
+        if(includeLabels) it.labels.forEach { label ->
+            bounds.add(label.bounds)
+        }
+        if(includeBends) outEdgesAt(it).forEach { edge ->
+            if(edge.bends.any() && isIncluded.contains(edge.targetNode)) {
+                edge.bends.forEach { bend ->
+                    bounds.add(bend.location)
+                }
+            }
+        }
+    }
+    return bounds.toRectD()
+}
+
 fun IGraph.beginEdit(name:String = "") = this.beginEdit(name, name)!!
 fun <T> IGraph.beginEdit(item:T) = this.beginEdit("","", listOf(item))!!
 fun <T> IGraph.beginEdit(name:String, item:T) = this.beginEdit(name,name, listOf(item))!!
 fun <T> IGraph.beginEdit(items: Iterable<T>) = beginEdit("","", items)!!
 fun <T> IGraph.beginEdit(name:String, items: Iterable<T>) = beginEdit(name,name, items)!!
-fun <T> IGraph.addValueUndoEdit(name:String, startValue:T, endValue:T, actor: (T) -> Unit) = undoEngine.addUnit(ValueUndoUnit(name, startValue, endValue, actor))
+fun <T> IGraph.addValueUndoEdit(name:String, startValue:T, endValue:T, actor: (T) -> Unit) = undoEngine.addUnit(ValueUndoUnit(name, startValue, endValue, actor = actor))
+fun <T> IGraph.addValueUndoEdit(name:String, startValue:T, endValue:T, mergeKey:Any, actor: (T) -> Unit) = undoEngine.addUnit(ValueUndoUnit(name, startValue, endValue, mergeKey, actor))
 
 fun MutableRectangle.setBounds(x:Double, y:Double, width:Double, height:Double) {
     this.width = width
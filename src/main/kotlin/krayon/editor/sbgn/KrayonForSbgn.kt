@@ -10,8 +10,10 @@
 package krayon.editor.sbgn
 
 import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.view.input.ICommand
 import com.yworks.yfiles.view.input.PopulateItemPopupMenuEventArgs
 import krayon.editor.base.Application
+import krayon.editor.base.ApplicationEvent
 import krayon.editor.base.command.*
 import krayon.editor.base.command.PrintPreview
 import krayon.editor.base.style.GraphStyle
@@ -22,6 +24,7 @@ import krayon.editor.base.util.ApplicationSettings
 import krayon.editor.base.util.IconManager
 import krayon.editor.base.util.geim
 import krayon.editor.sbgn.command.*
+import krayon.editor.sbgn.io.AutosaveJournal
 import krayon.editor.sbgn.io.SbgnReader
 import krayon.editor.sbgn.model.SbgnType
 import krayon.editor.sbgn.model.graphStyle
@@ -33,6 +36,8 @@ import krayon.util.OperatingSystemChecker
 import java.awt.*
 import java.awt.event.ComponentAdapter
 import java.awt.event.ComponentEvent
+import java.awt.event.WindowAdapter
+import java.awt.event.WindowEvent
 import java.beans.PropertyChangeListener
 import java.io.File
 import java.io.InputStreamReader
@@ -42,10 +47,12 @@ object KrayonForSbgn {
 
     private const val appName = "krayon4sbgn"
     private const val appTitle = "Krayon for SBGN"
+    private const val untitledName = "Untitled"
     private const val systemStylePath = "/resources/styles/read-only"
     private val appHome = getAppHome()
     val userStylePath = "$appHome/styles"
     private val settingsPath = "$appHome/application-settings.xml"
+    private val autosavePath = "$appHome/autosave"
     private const val systemBricksPath = "/resources/bricks/pd"
     private const val stringMapPath = "/resources/actions/en/strings.json"
     private const val keyMapPath = "/resources/actions/keys.json"
@@ -53,13 +60,22 @@ object KrayonForSbgn {
 
     private lateinit var palette: ConfiguredSbgnPaletteComponent
     private lateinit var bricksPalette: SbgnPaletteComponent
-    private lateinit var editorContainer: JPanel
+    private lateinit var documentTabs: JTabbedPane
+    private lateinit var paletteTransferData: PaletteTransferData
+    private lateinit var undoHistoryLabel: UndoHistoryLabel
     private lateinit var propertyTable: PropertyTable
     private lateinit var paletteContainer: JScrollPane
     private lateinit var propertyTableContainer:JScrollPane
     private lateinit var tableAndBrickPane:JSplitPane
+    private lateinit var editorSplit:JSplitPane
+    private lateinit var issuePanel:SbgnIssuePanel
+    private lateinit var overviewPanel:SbgnOverviewPanel
+    private lateinit var searchBar:SbgnSearchBar
+    private var issuePanelPreferredHeight:Int = 180
     private var tableAndBrickPaneDividerSize:Int = 0
     private var propertyTablePreferredHeight:Int = 200
+    private val autosaveJournals = HashMap<SbgnGraphComponent, AutosaveJournal>()
+    private var isAutosaveStarted = false
 
     val graphComponent get() = Application.focusedGraphComponent as SbgnGraphComponent
 
@@ -97,6 +113,7 @@ object KrayonForSbgn {
                     }
                 }
             })
+            startAutosave(this)
         }
 
         SwingUtilities.invokeLater {
@@ -104,12 +121,73 @@ object KrayonForSbgn {
         }
     }
 
+    /**
+     * offers to recover the diagrams of a session that did not end properly, then journals all open diagrams. Each
+     * diagram is journaled in its own directory below [autosavePath].
+     */
+    private fun startAutosave(frame: JFrame) {
+        // directories still locked by another running instance are skipped
+        val leftoverJournals = (File(autosavePath).listFiles { file -> file.isDirectory } ?: emptyArray())
+                .sortedBy { it.name }.map { AutosaveJournal(it) }.filter { it.open() }
+        val recoverableJournals = leftoverJournals.filter { it.recoverableCheckpoint != null }
+        // without a checkpoint there is nothing to recover
+        val declinedJournals = ArrayList(leftoverJournals - recoverableJournals)
+        if(recoverableJournals.any()) {
+            val answer = JOptionPane.showConfirmDialog(frame, "Unsaved changes of ${recoverableJournals.size} diagram(s) were autosaved. Recover them?",
+                    appTitle, JOptionPane.YES_NO_OPTION)
+            if(answer == JOptionPane.YES_OPTION) {
+                recoverableJournals.forEachIndexed { index, journal ->
+                    val recoveredGraphComponent = if(index == 0) graphComponent else addNewGraphComponent()
+                    try {
+                        journal.recover(recoveredGraphComponent, journal.recoverableCheckpoint!!)
+                        recoveredGraphComponent.markModified()
+                        Application.fireApplicationEvent(ApplicationEvent(this, "DIAGRAM.LOADED"))
+                        ICommand.FIT_GRAPH_BOUNDS.execute(null, recoveredGraphComponent)
+                        journal.start(recoveredGraphComponent)
+                        autosaveJournals[recoveredGraphComponent] = journal
+                    } catch (ex: Exception) {
+                        ProblemReporter.reportThrowable(ex, "Problem recovering the autosaved diagram", recoveredGraphComponent)
+                        // the files stay for the next start
+                        journal.close()
+                    }
+                }
+            }
+            else declinedJournals += recoverableJournals
+        }
+        declinedJournals.forEach { it.discard() }
+
+        isAutosaveStarted = true
+        Application.graphComponents.filterIsInstance<SbgnGraphComponent>().filter { it !in autosaveJournals }.forEach { startAutosave(it) }
+        Application.applicationListeners += { event -> if(event.type == "DIAGRAM.LOADED") autosaveJournals[graphComponent]?.checkpoint() }
+        frame.addWindowListener(object:WindowAdapter() {
+            override fun windowClosing(e: WindowEvent) {
+                autosaveJournals.values.forEach { it.close() }
+                autosaveJournals.clear()
+            }
+        })
+    }
+
+    private fun startAutosave(graphComponent: SbgnGraphComponent) {
+        // kept journals of closed diagrams stay for recovery at the next start
+        val journal = generateSequence(0) { it + 1 }.take(100)
+                .map { File(autosavePath, "document-$it") }
+                .filter { !AutosaveJournal.hasFiles(it) }
+                .map { AutosaveJournal(it) }
+                .firstOrNull { it.open() } ?: return
+        journal.start(graphComponent)
+        if(journal.isStarted) autosaveJournals[graphComponent] = journal
+        else journal.close()
+    }
+
     private fun initializeActions() {
         CommandManager += ActivateSbgnStrictMode
         CommandManager += AddStateVariable
         CommandManager += AddUnitOfInformation
         CommandManager += AutoAssignCloneMarkers
+        CommandManager += CloseSbgn
+        CommandManager += CompareSbgn
         CommandManager += ConvertToComplex
+        CommandManager += CopySbgnMl
         CommandManager += CreateNode
         CommandManager += CyclePermittedNodes
         CommandManager += Delete
@@ -118,11 +196,14 @@ object KrayonForSbgn {
         CommandManager += DrawingOrderCommands.NodesToFront
         CommandManager += DumpTypeInfo
         CommandManager += EditLabel
+        CommandManager += Find
         CommandManager += GraphicsExportPreview
         CommandManager += InteractiveDuplicate
         CommandManager += InteractivePaste
+        CommandManager += MergeSbgn
         CommandManager += MirrorHorizontally
         CommandManager += MirrorVertically
+        CommandManager += NewSbgn
         CommandManager += OpenSbgn
         CommandManager += PrintPreview
         CommandManager += RotateClockwise
@@ -135,8 +216,13 @@ object KrayonForSbgn {
         CommandManager += SplitNode
         CommandManager += ToggleComplexLock
         CommandManager += ToggleEventMonitor
+        CommandManager += ToggleRenderMonitor
+        CommandManager += DumpRenderMetrics
         CommandManager += ToggleCloneMarker
         CommandManager += ToggleFullScreenMode
+        CommandManager += ToggleIssuePanel
+        CommandManager += ToggleLiveCloneMarkers
+        CommandManager += ToggleOverview
         CommandManager += SetLookAndFeel
         CommandManager += ToggleMultimer
         CommandManager += YFilesCommands.Copy
@@ -178,17 +264,71 @@ object KrayonForSbgn {
 
     }
 
-    private fun addNewGraphComponent() {
+    /**
+     * opens a new empty diagram in its own tab and makes it the focused one.
+     */
+    fun addNewGraphComponent():SbgnGraphComponent {
         val newGraphComponent = SbgnGraphComponent()
         configureGraphComponent(newGraphComponent)
-        editorContainer.add(newGraphComponent)
-        Application.focusedGraphComponent = newGraphComponent
+        styleManager.styles.find{ ApplicationSettings.DEFAULT_SBGN_STYLE.value == it.name }?.let {
+            newGraphComponent.applyStyle(it)
+        }
+        newGraphComponent.markSaved()
+        Application.graphComponents += newGraphComponent
+        documentTabs.addTab(untitledName, newGraphComponent)
+        documentTabs.selectedComponent = newGraphComponent
+        activateDocument(newGraphComponent)
+        if(isAutosaveStarted) startAutosave(newGraphComponent)
+        return newGraphComponent
+    }
+
+    /**
+     * closes the tab of the given diagram and releases its resources. The autosave journal of a modified diagram is
+     * kept for recovery at the next start, otherwise it is discarded. The last tab is replaced by an empty one.
+     */
+    fun closeGraphComponent(graphComponent: SbgnGraphComponent) {
+        if(documentTabs.indexOfComponent(graphComponent) < 0) return
+        if(documentTabs.tabCount == 1) addNewGraphComponent()
+        autosaveJournals.remove(graphComponent)?.close(isKept = graphComponent.isModified)
+        ToggleRenderMonitor.release(graphComponent)
+        Application.graphComponents -= graphComponent
+        documentTabs.remove(graphComponent)
+        graphComponent.dispose()
+        updateDocumentTitles()
+    }
+
+    private fun activateDocument(graphComponent: SbgnGraphComponent) {
+        val previous = Application.focusedGraphComponent as? SbgnGraphComponent
+        if(previous == graphComponent && !graphComponent.isVisualsReleased) return
+        // inactive tabs drop their canvas objects, only the shown diagram keeps its visuals
+        if(previous != null && previous != graphComponent) previous.releaseVisuals()
+        graphComponent.restoreVisuals()
+        Application.focusedGraphComponent = graphComponent
+        if(::undoHistoryLabel.isInitialized) undoHistoryLabel.attach(graphComponent.undoHistory)
+        if(::issuePanel.isInitialized && issuePanel.isVisible) issuePanel.attach(graphComponent)
+        if(::overviewPanel.isInitialized && overviewPanel.isVisible) overviewPanel.attach(graphComponent)
+        if(::searchBar.isInitialized && searchBar.isVisible) searchBar.attach(graphComponent)
+        updateDocumentTitles()
+        CommandManager.invalidateEnablement()
+        graphComponent.requestFocusInWindow()
+    }
+
+    private fun updateDocumentTitles() {
+        for(index in 0 until documentTabs.tabCount) {
+            val tabGraphComponent = documentTabs.getComponentAt(index)
+            documentTabs.setTitleAt(index, getDocumentFile(tabGraphComponent)?.name ?: untitledName)
+        }
+        (SwingUtilities.getWindowAncestor(documentTabs) as? JFrame)?.let { frame ->
+            val name = getDocumentFile(Application.focusedGraphComponent)?.let { " [${it.name}]" } ?: ""
+            frame.title = "${ApplicationSettings.APPLICATION_TITLE.value}$name"
+        }
     }
 
+    private fun getDocumentFile(component: Component?) = component?.let { ApplicationSettings.DIAGRAM_FILE.scoped(it).value as? File }
+
     private fun configureGraphComponent(graphComponent: SbgnGraphComponent) {
         val geim = graphComponent.createEditorMode()
-        geim.nodeDropInputMode = GraphPaletteDropInputMode(palette.modelGraph)
-        geim.nodeDropInputMode = SbgnPaletteDropInputMode(palette.modelGraph)
+        geim.nodeDropInputMode = SbgnPaletteDropInputMode(paletteTransferData)
         geim.popupMenuItems = GraphItemTypes.NODE
         geim.addPopulateItemPopupMenuListener(::onPopulateItemPopupMenu)
         graphComponent.inputMode = geim
@@ -238,8 +378,23 @@ object KrayonForSbgn {
         val contentPane = rootPane.contentPane
         palette = createPaletteComponent()
 
-        editorContainer = JPanel(BorderLayout())
+        // the transfer copies of the palette nodes are shared by all open diagrams
+        paletteTransferData = PaletteTransferData(palette.modelGraph)
+        palette.paletteChangedListeners += paletteTransferData::invalidate
+        paletteTransferData.invalidate()
+
+        documentTabs = JTabbedPane().apply {
+            tabLayoutPolicy = JTabbedPane.SCROLL_TAB_LAYOUT
+            addChangeListener { (selectedComponent as? SbgnGraphComponent)?.let { activateDocument(it) } }
+        }
         addNewGraphComponent()
+        documentTabs.componentPopupMenu = JPopupMenu().apply {
+            add(NewSbgn.action)
+            add(CloseSbgn.action)
+            addSeparator()
+            add(CompareSbgn.action)
+            add(MergeSbgn.action)
+        }
 
         val sidePaneWidth = 360
         paletteContainer = JScrollPane(palette)
@@ -320,7 +475,27 @@ object KrayonForSbgn {
         val sidePane = JSplitPane(JSplitPane.VERTICAL_SPLIT, styleAndPalettePane, tableAndBrickPane)
         sidePane.dividerLocation = paletteContainer.preferredSize.height
 
-        val mainSplit = JSplitPane(JSplitPane.HORIZONTAL_SPLIT, editorContainer, sidePane)
+        issuePanel = SbgnIssuePanel().apply { isVisible = false }
+        searchBar = SbgnSearchBar().apply {
+            isVisible = false
+            closeListeners += ::hideSearchBar
+        }
+        val editorPane = JPanel(BorderLayout())
+        editorPane.add(searchBar, BorderLayout.NORTH)
+        editorPane.add(documentTabs, BorderLayout.CENTER)
+        editorSplit = JSplitPane(JSplitPane.VERTICAL_SPLIT, editorPane, issuePanel)
+        editorSplit.resizeWeight = 1.0
+
+        overviewPanel = SbgnOverviewPanel().apply {
+            preferredSize = Dimension(sidePaneWidth, 220)
+            border = BorderFactory.createMatteBorder(1, 0, 0, 0, Color.LIGHT_GRAY)
+            isVisible = false
+        }
+        val sideContainer = JPanel(BorderLayout())
+        sideContainer.add(sidePane, BorderLayout.CENTER)
+        sideContainer.add(overviewPanel, BorderLayout.SOUTH)
+
+        val mainSplit = JSplitPane(JSplitPane.HORIZONTAL_SPLIT, editorSplit, sideContainer)
         mainSplit.resizeWeight = 1.0
 
         contentPane.add(mainSplit, BorderLayout.CENTER)
@@ -334,6 +509,52 @@ object KrayonForSbgn {
         updatePaletteStyle(bricksPalette, styleManager.currentStyle!!)
     }
 
+    /**
+     * shows or hides the issue panel. Validation only runs while the panel is shown.
+     */
+    fun toggleIssuePanel():Boolean {
+        if(issuePanel.isVisible) {
+            issuePanelPreferredHeight = issuePanel.height
+            issuePanel.isVisible = false
+            issuePanel.attach(null)
+        }
+        else {
+            issuePanel.isVisible = true
+            issuePanel.attach(graphComponent)
+            editorSplit.dividerLocation = Math.max(0, editorSplit.height - editorSplit.dividerSize - issuePanelPreferredHeight)
+        }
+        return issuePanel.isVisible
+    }
+
+    /**
+     * shows the search bar for the focused diagram. Matches are only highlighted while the bar is shown.
+     */
+    fun showSearchBar() {
+        if(!searchBar.isVisible) {
+            searchBar.isVisible = true
+            searchBar.attach(graphComponent)
+            searchBar.parent.revalidate()
+        }
+        searchBar.focusQuery()
+    }
+
+    private fun hideSearchBar() {
+        searchBar.isVisible = false
+        searchBar.attach(null)
+        searchBar.parent.revalidate()
+        graphComponent.requestFocusInWindow()
+    }
+
+    /**
+     * shows or hides the overview. The overview only tracks the diagram while shown.
+     */
+    fun toggleOverview():Boolean {
+        overviewPanel.isVisible = !overviewPanel.isVisible
+        overviewPanel.attach(if(overviewPanel.isVisible) graphComponent else null)
+        overviewPanel.parent.revalidate()
+        return overviewPanel.isVisible
+    }
+
     private fun updatePaletteStyle(palette:GraphPaletteComponent, style:GraphStyle<SbgnType>) {
         for (index in 0 until palette.itemCount) {
             palette.getPaletteModelItem(index)?.let {
@@ -367,8 +588,7 @@ object KrayonForSbgn {
         frame.defaultCloseOperation = WindowConstants.EXIT_ON_CLOSE
         ApplicationSettings.addPropertyChangeListener(PropertyChangeListener {
             if(ApplicationSettings.DIAGRAM_FILE.name == it.propertyName) {
-                val name = if(it.newValue is File) " [${(it.newValue as File).name}]" else ""
-                frame.title = "${ApplicationSettings.APPLICATION_TITLE.value}$name"
+                updateDocumentTitles()
             }
         })
         return frame
@@ -393,6 +613,8 @@ object KrayonForSbgn {
             addSeparator()
             add(YFilesCommands.Undo.action)
             add(YFilesCommands.Redo.action)
+            undoHistoryLabel = UndoHistoryLabel().apply { attach(graphComponent.undoHistory) }
+            add(undoHistoryLabel)
             addSeparator()
             add(UiFactory.createStateButton(ActivateSbgnStrictMode.action.apply {
                 isSelected = true
@@ -451,8 +673,10 @@ object KrayonForSbgn {
         }
 
         menu.add(AutoAssignCloneMarkers.action)
+        menu.add(JCheckBoxMenuItem(ToggleLiveCloneMarkers.action))
         menu.add(YFilesCommands.Cut.action)
         menu.add(YFilesCommands.Copy.action)
+        menu.add(CopySbgnMl.action)
         menu.add(InteractivePaste.getAction(graphComponent,false))
         menu.add(InteractiveDuplicate.getAction(graphComponent,false))
 
@@ -488,6 +712,7 @@ object KrayonForSbgn {
     }
 
     @JvmStatic fun main(args: Array<String>) {
+        if(SbgnCommandLine.isCommandLine(args)) System.exit(SbgnCommandLine.execute(args))
         EventQueue.invokeLater {
             ProblemReporter.installForUncaughtSwingExceptions()
             KrayonForSbgn.start()
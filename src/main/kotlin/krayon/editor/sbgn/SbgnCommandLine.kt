@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn
+
+import com.beust.klaxon.JsonArray
+import com.beust.klaxon.JsonObject
+import com.yworks.yfiles.graph.DefaultGraph
+import krayon.editor.base.style.GraphStyle
+import krayon.editor.sbgn.io.SbgnReader
+import krayon.editor.sbgn.io.SbgnStyleIO
+import krayon.editor.sbgn.io.SbgnWriter
+import krayon.editor.sbgn.model.SbgnType
+import krayon.editor.sbgn.model.SbgnValidator
+import krayon.editor.sbgn.style.SbgnBuilder
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.InputStreamReader
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.Executors
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Headless batch mode for CI pipelines. Validates SBGN files and optionally rewrites them, printing one JSON line per
+ * file. Directories are searched recursively for *.sbgn files. Files are processed in parallel, and no more than two
+ * files per thread are queued at any time. Exit code is 0 if all files are valid, 1 if any file has validation
+ * errors, and 2 for usage errors or files that could not be read or written.
+ */
+object SbgnCommandLine {
+
+    private const val systemStylePath = "/resources/styles/read-only"
+
+    private const val EXIT_OK = 0
+    private const val EXIT_INVALID = 1
+    private const val EXIT_FAILED = 2
+
+    private val usage = """
+        |usage: KrayonForSbgn validate [options] file|directory...
+        |       KrayonForSbgn convert --output directory [options] file|directory...
+        |options:
+        |  --style name    apply the named bundled style before writing
+        |  --plain         write without style information
+        |  --threads n     number of files processed in parallel
+        """.trimMargin()
+
+    enum class Mode { VALIDATE, CONVERT }
+
+    private class Options(val mode: Mode, val inputs: List<File>, val styleName: String?, val outputDir: File?, val includeStyle: Boolean, val threads: Int)
+
+    private class FileResult(val exitCode: Int, val json: JsonObject)
+
+    fun isCommandLine(args: Array<String>) = Mode.values().any { it.name.equals(args.firstOrNull(), ignoreCase = true) }
+
+    @JvmStatic fun main(args: Array<String>) {
+        System.exit(execute(args))
+    }
+
+    fun execute(args: Array<String>):Int {
+        System.setProperty("java.awt.headless", "true")
+        val options = try {
+            parseOptions(args)
+        } catch (ex: IllegalArgumentException) {
+            System.err.println(ex.message)
+            System.err.println(usage)
+            return EXIT_FAILED
+        }
+
+        initStyles()
+        val style = options.styleName?.let { name ->
+            SbgnBuilder.styleManager.styles.find { it.name == name } ?: run {
+                System.err.println("unknown style '$name'. available styles: ${SbgnBuilder.styleManager.styles.joinToString { it.name }}")
+                return EXIT_FAILED
+            }
+        }
+
+        val exitCode = AtomicInteger(EXIT_OK)
+        val permits = Semaphore(2 * options.threads)
+        val executor = Executors.newFixedThreadPool(options.threads) { Thread(it, "sbgn-batch").apply { isDaemon = true } }
+        try {
+            options.inputs.forEach { input ->
+                if(!input.exists()) {
+                    System.err.println("not found: $input")
+                    exitCode.accumulateAndGet(EXIT_FAILED) { a, b -> Math.max(a, b) }
+                    return@forEach
+                }
+                Files.walk(input.toPath()).use { paths ->
+                    paths.filter { Files.isRegularFile(it) && (input.isFile || it.fileName.toString().endsWith(".sbgn", ignoreCase = true)) }.forEach { path ->
+                        permits.acquire()
+                        executor.execute {
+                            try {
+                                val relativePath = if(input.isFile) path.fileName else input.toPath().relativize(path)
+                                val result = processFile(path, relativePath, options, style)
+                                exitCode.accumulateAndGet(result.exitCode) { a, b -> Math.max(a, b) }
+                                synchronized(this) { println(result.json.toJsonString()) }
+                            }
+                            finally {
+                                permits.release()
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            executor.shutdown()
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS)
+        }
+        System.out.flush()
+        return exitCode.get()
+    }
+
+    private fun parseOptions(args: Array<String>):Options {
+        val mode = Mode.values().firstOrNull { it.name.equals(args.firstOrNull(), ignoreCase = true) } ?: throw IllegalArgumentException("missing mode")
+        val inputs = mutableListOf<File>()
+        var styleName:String? = null
+        var outputDir:File? = null
+        var includeStyle = true
+        var threads = Runtime.getRuntime().availableProcessors()
+        var index = 1
+        fun nextValue(option: String) = args.getOrNull(++index) ?: throw IllegalArgumentException("missing value for $option")
+        while(index < args.size) {
+            val arg = args[index]
+            when(arg) {
+                "--style" -> styleName = nextValue(arg)
+                "--output" -> outputDir = File(nextValue(arg))
+                "--plain" -> includeStyle = false
+                "--threads" -> threads = nextValue(arg).toIntOrNull()?.takeIf { it > 0 } ?: throw IllegalArgumentException("invalid thread count")
+                else -> if(arg.startsWith("--")) throw IllegalArgumentException("unknown option $arg") else inputs += File(arg)
+            }
+            index++
+        }
+        if(inputs.isEmpty()) throw IllegalArgumentException("no input files given")
+        if(mode == Mode.CONVERT && outputDir == null) throw IllegalArgumentException("convert requires --output")
+        return Options(mode, inputs, styleName, outputDir, includeStyle, threads)
+    }
+
+    /**
+     * Registers the bundled styles. Without a palette, the first bundled style serves as default style.
+     */
+    private fun initStyles() {
+        SbgnBuilder.styleManager.apply {
+            if(styles.isNotEmpty()) return
+            InputStreamReader(javaClass.getResourceAsStream("$systemStylePath/styles.list")).readLines().filter { it.isNotBlank() }.forEachIndexed { index, name ->
+                javaClass.getResourceAsStream("$systemStylePath/$name.css").use { stream ->
+                    if(index == 0) {
+                        val style = GraphStyle(name, true, SbgnStyleIO().readCss(InputStreamReader(stream)))
+                        normalizeStyle(style)
+                        addStyle(style)
+                    }
+                    else addStyleFromStream(stream, name, readOnly = true)
+                }
+            }
+            currentStyle = styles.first()
+        }
+    }
+
+    private fun processFile(path: Path, relativePath: Path, options: Options, style: GraphStyle<SbgnType>?):FileResult {
+        val result = LinkedHashMap<String, Any?>()
+        val timings = LinkedHashMap<String, Any?>()
+        result["file"] = path.toString()
+        var exitCode = EXIT_OK
+        try {
+            val graph = DefaultGraph()
+            timings["read"] = measureMillis { FileInputStream(path.toFile()).use { SbgnReader().read(it, graph, null) } }
+            result["nodes"] = graph.nodes.size()
+            result["edges"] = graph.edges.size()
+
+            var issues = emptyList<SbgnValidator.Issue>()
+            timings["validate"] = measureMillis { issues = SbgnValidator.check(graph).sortedWith(compareBy({ it.severity }, { it.message })) }
+            val errorCount = issues.count { it.severity == SbgnValidator.Severity.ERROR }
+            result["errors"] = errorCount
+            result["warnings"] = issues.size - errorCount
+            result["issues"] = JsonArray(issues.map { issue ->
+                JsonObject(linkedMapOf<String, Any?>("severity" to issue.severity.name.toLowerCase(), "rule" to issue.rule.name, "message" to issue.message))
+            })
+            if(errorCount > 0) exitCode = EXIT_INVALID
+
+            if(options.mode == Mode.CONVERT) {
+                val outputFile = File(options.outputDir, relativePath.toString())
+                timings["write"] = measureMillis {
+                    style?.let { SbgnBuilder.styleManager.applyStyle(it, graph) }
+                    outputFile.parentFile?.mkdirs()
+                    FileOutputStream(outputFile).use { SbgnWriter(options.includeStyle).write(it, graph, null) }
+                }
+                result["output"] = outputFile.path
+            }
+        }
+        catch (ex: Exception) {
+            exitCode = EXIT_FAILED
+            result["failure"] = ex.message ?: ex.javaClass.simpleName
+        }
+        result["status"] = when(exitCode) {
+            EXIT_OK -> "valid"
+            EXIT_INVALID -> "invalid"
+            else -> "failed"
+        }
+        result["timings"] = JsonObject(timings)
+        return FileResult(exitCode, JsonObject(result))
+    }
+
+    private inline fun measureMillis(block: () -> Unit):Long {
+        val start = System.nanoTime()
+        block()
+        return (System.nanoTime() - start) / 1000000
+    }
+}
@@ -9,24 +9,22 @@
 
 package krayon.editor.sbgn.command
 
-import com.yworks.yfiles.graph.INode
 import krayon.editor.base.util.beginEdit
 import krayon.editor.sbgn.model.SbgnType
-import krayon.editor.sbgn.model.getNameLabel
 import krayon.editor.sbgn.model.isClone
 import krayon.editor.sbgn.model.type
 
 object AutoAssignCloneMarkers : SbgnCommand("AUTO-ASSIGN_CLONE_MARKERS") {
     override fun canExecute(param: Any?) = true
     override fun execute(param: Any?) {
+        val index = sbgnGraphComponent.cloneMarkerIndex
         graph.beginEdit(id, graph.nodes.map { it.tag }).use {
             graph.apply {
                 val cloneSet = nodes.filter { it.isClone }.toHashSet()
-                nodes.forEach { it.isClone = false }
-                nodes.filter { it.type.canCarryCloneMarker() && getParent(it)?.type != SbgnType.COMPLEX }.
-                        groupBy { node -> Triple(getParent(node), node.type, createNodeSignature(node)) }.
-                        filter { g -> g.value.size > 1 }.
-                        map { it -> it.value }.flatten().forEach { it.isClone = true }
+                nodes.forEach { node ->
+                    val isClone = index.hasClones(node)
+                    if(node.isClone != isClone) node.isClone = isClone
+                }
                 cloneSet.forEach { node ->
                     if(!node.isClone) { // remove label if clone marker was removed
                         node.labels.filter { it.type == SbgnType.CLONE_LABEL }.forEach { graph.remove(it) }
@@ -35,13 +33,6 @@ object AutoAssignCloneMarkers : SbgnCommand("AUTO-ASSIGN_CLONE_MARKERS") {
                 invalidateDisplays()
             }
         }
+        sbgnGraphComponent.validator.validate()
     }
-
-    private fun createNodeSignature(node: INode):String {
-        return  node.getNameLabel()?.text + '|' +
-                node.labels.filter { label ->
-                    (label.type == SbgnType.STATE_VARIABLE || (label.type == SbgnType.UNIT_OF_INFORMATION && label.text != "N:2")) && !label.text.isEmpty()
-                }.map{ it.text }.sorted().joinToString("|") +
-                if(node.type == SbgnType.COMPLEX) graph.getChildren(node).map { createNodeSignature(it) }.sorted() else ""
-    }
-}
\ No newline at end of file
+}
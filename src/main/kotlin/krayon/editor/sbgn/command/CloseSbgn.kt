@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.command
+
+import krayon.editor.sbgn.KrayonForSbgn
+import javax.swing.JOptionPane
+
+object CloseSbgn : SbgnCommand("CLOSE_SBGN") {
+    override fun execute(param: Any?) {
+        val graphComponent = sbgnGraphComponent
+        if(sbgnGraphComponent.isModified) {
+            val answer = JOptionPane.showConfirmDialog(graphComponent, "Close this diagram? Unsaved changes stay recoverable until the next start.",
+                    name ?: id, JOptionPane.OK_CANCEL_OPTION)
+            if(answer != JOptionPane.OK_OPTION) return
+        }
+        KrayonForSbgn.closeGraphComponent(graphComponent)
+    }
+    override fun canExecute(param: Any?) = true
+}
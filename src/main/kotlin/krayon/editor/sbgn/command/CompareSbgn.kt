@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.command
+
+import com.yworks.yfiles.graph.DefaultGraph
+import com.yworks.yfiles.graph.IEdge
+import com.yworks.yfiles.graph.IGraph
+import com.yworks.yfiles.graph.IModelItem
+import com.yworks.yfiles.graph.INode
+import krayon.editor.base.Application
+import krayon.editor.base.style.HighlightNodesManager
+import krayon.editor.base.ui.ExtensionFileFilter
+import krayon.editor.base.ui.ProblemReporter
+import krayon.editor.base.ui.showOpenDialogFX
+import krayon.editor.base.util.ApplicationSettings
+import krayon.editor.base.util.BoundedUndoEngine
+import krayon.editor.sbgn.io.SbgnReader
+import krayon.editor.sbgn.model.SbgnDiff
+import krayon.editor.sbgn.model.SbgnDiff.ChangeType
+import krayon.editor.sbgn.ui.SbgnGraphComponent
+import java.awt.Component
+import java.io.File
+import java.io.FileInputStream
+import javax.swing.JFileChooser
+import javax.swing.JOptionPane
+import javax.swing.SwingUtilities
+
+/**
+ * Compares the diagram with an earlier version from file. Added, moved, restyled and modified nodes are highlighted,
+ * changed arcs get the default highlight. Removed items are only counted. The highlights are removed by the next edit
+ * of the diagram, since they no longer describe it.
+ */
+object CompareSbgn : SbgnCommand("COMPARE_SBGN") {
+
+    private const val HIGHLIGHT_GROUP = "compare"
+
+    private var highlightedComponent: SbgnGraphComponent? = null
+    private val highlightedEdges = mutableListOf<IEdge>()
+    private val historyListener = { _: BoundedUndoEngine -> clearHighlights() }
+
+    override fun execute(param: Any?) {
+        val file = param as? File ?: chooseSbgnFile(graphComponent, "Compare with Earlier Version") ?: return
+        val graphComponent = sbgnGraphComponent
+        readVersions(graphComponent, listOf(file)) { versions ->
+            val (oldGraph, oldIds) = versions[0]
+            compare(graphComponent, file, oldGraph, oldIds)
+        }
+    }
+
+    override fun canExecute(param: Any?) = true
+
+    private fun compare(graphComponent: SbgnGraphComponent, file: File, oldGraph: IGraph, oldIds: Map<IModelItem, String>) {
+        val diff = SbgnDiff(oldGraph, graphComponent.graph, oldIds)
+
+        clearHighlights()
+        val highlightManager = graphComponent.lookup(HighlightNodesManager::class.java)
+        diff.changes.forEach { change ->
+            val item = change.newItem
+            when(item) {
+                is INode -> highlightManager?.addHighlight(item, change.types.joinToString(", ") { it.name.toLowerCase() }, HIGHLIGHT_GROUP)
+                is IEdge -> {
+                    graphComponent.highlightIndicatorManager.addHighlight(item)
+                    highlightedEdges += item
+                }
+            }
+        }
+        highlightedComponent = graphComponent
+        graphComponent.undoHistory?.historyListeners?.add(historyListener)
+
+        val summary = ChangeType.values().joinToString("\n") { type -> "${diff.count(type)} ${type.name.toLowerCase()}" }
+        JOptionPane.showMessageDialog(graphComponent, "Changes since ${file.name}:\n$summary", name ?: id, JOptionPane.INFORMATION_MESSAGE)
+    }
+
+    private fun clearHighlights() {
+        highlightedComponent?.let { component ->
+            component.lookup(HighlightNodesManager::class.java)?.clearHighlights(HIGHLIGHT_GROUP)
+            highlightedEdges.forEach { component.highlightIndicatorManager.removeHighlight(it) }
+            component.undoHistory?.historyListeners?.remove(historyListener)
+        }
+        highlightedEdges.clear()
+        highlightedComponent = null
+    }
+}
+
+private val versionFileChooser:JFileChooser by lazy {
+    JFileChooser().apply {
+        isAcceptAllFileFilterUsed = false
+        addChoosableFileFilter(ExtensionFileFilter("SBGN format (*.sbgn, *.xml)", "sbgn", "xml"))
+        dialogType = JFileChooser.OPEN_DIALOG
+    }
+}
+
+internal fun chooseSbgnFile(parent: Component, title: String):File? {
+    versionFileChooser.dialogTitle = title
+    (ApplicationSettings.LAST_FILE_LOCATION.value as? String)?.let { versionFileChooser.currentDirectory = File(it) }
+    return if(versionFileChooser.showOpenDialogFX(parent) == JFileChooser.APPROVE_OPTION) versionFileChooser.selectedFile else null
+}
+
+/**
+ * reads a version of a diagram that is not displayed. Returns the graph and the glyph and arc ids of its items.
+ */
+internal fun readVersion(file: File):Pair<IGraph, Map<IModelItem, String>> {
+    val graph = DefaultGraph()
+    val reader = SbgnReader()
+    FileInputStream(file).use { reader.read(it, graph, null) }
+    val ids = HashMap<IModelItem, String>()
+    reader.itemsById.forEach { id, item -> ids[item] = id }
+    return Pair(graph, ids)
+}
+
+/**
+ * reads versions of a diagram on a worker thread, see [readVersion], and hands them to [onRead] on the EDT. Nothing
+ * is handed over if the diagram has been closed meanwhile. Read problems are reported.
+ */
+internal fun readVersions(graphComponent: SbgnGraphComponent, files: List<File>, onRead: (List<Pair<IGraph, Map<IModelItem, String>>>) -> Unit) {
+    Thread({
+        try {
+            val versions = files.map { readVersion(it) }
+            SwingUtilities.invokeLater {
+                if(graphComponent in Application.graphComponents) onRead(versions)
+            }
+        } catch (ex: Exception) {
+            SwingUtilities.invokeLater {
+                ProblemReporter.reportThrowable(ex, "Problem reading ${files.joinToString { it.name }}", graphComponent)
+            }
+        }
+    }, "sbgn-version-reader").apply { isDaemon = true }.start()
+}
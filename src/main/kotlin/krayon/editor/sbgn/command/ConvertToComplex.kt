@@ -30,6 +30,8 @@ object ConvertToComplex : SbgnCommand("CONVERT_TO_COMPLEX") {
     }
 
     override fun canExecute(param: Any?): Boolean {
-        return selectedNodes.any() && selectedNodes.all { it.type.canBeContainedInComplex() && graph.contains(it) && graph.degree(it) == 0 }
+        return with(selectionSummary) {
+            nodeCount > 0 && isolatedNodeCount == nodeCount && allNodeTypes<SbgnType> { it.canBeContainedInComplex() }
+        }
     }
 }
\ No newline at end of file
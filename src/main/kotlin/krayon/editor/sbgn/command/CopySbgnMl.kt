@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.command
+
+import com.yworks.yfiles.geometry.PointD
+import com.yworks.yfiles.graph.DefaultGraph
+import com.yworks.yfiles.graph.IEdge
+import com.yworks.yfiles.graph.IModelItem
+import com.yworks.yfiles.graph.INode
+import krayon.editor.base.command.CommandManager.EnablementInput
+import krayon.editor.base.style.GraphStyle
+import krayon.editor.base.ui.ProblemReporter
+import krayon.editor.base.ui.SnapshotGraphClipboard
+import krayon.editor.sbgn.io.SbgnWriter
+import krayon.editor.sbgn.model.SbgnData
+import krayon.editor.sbgn.model.SbgnType
+import java.awt.Toolkit
+import java.awt.datatransfer.StringSelection
+import java.io.ByteArrayOutputStream
+import java.util.IdentityHashMap
+import java.util.function.Predicate
+import javax.swing.SwingUtilities
+
+/**
+ * puts the selected nodes and the arcs between them as SBGN-ML document on the system clipboard. The selection, the
+ * arc geometry and copies of the graph styles are recorded on the EDT, writing happens in the background without
+ * touching shared styles.
+ */
+object CopySbgnMl : SbgnCommand("COPY_SBGN_ML") {
+
+    override fun canExecute(param: Any?) = selectionSummary.nodeCount > 0
+    override val enablementInputs get() = EnablementInput.SELECTION_ONLY
+
+    override fun execute(param: Any?) {
+        val graphComponent = sbgnGraphComponent
+        val selection = graphComponent.selection
+        val nodePredicate = graphComponent.withComplexContents(Predicate<IModelItem> { selection.isSelected(it) })
+        // labels, ports and arcs follow their nodes
+        val predicate = Predicate<IModelItem> { it !is INode || nodePredicate.test(it) }
+        // the writer reads the graph style through the tags, so each tag gets a copy that later edits do not reach
+        val styleCopies = IdentityHashMap<GraphStyle<SbgnType>, GraphStyle<SbgnType>>()
+        val snapshot = SnapshotGraphClipboard.Snapshot.create(graph, predicate, cloneStyles = false) { item ->
+            val tag = item.tag
+            if(tag is SbgnData) (tag.clone() as SbgnData).apply { style = tag.style?.let { style -> styleCopies.getOrPut(style) { style.copy() } } }
+            else tag
+        }
+        // styles are not thread-safe, so arc geometry is taken here, in the order of the snapshot edges
+        val arcEnds = graph.edges.filter { nodePredicate.test(it.sourceNode) && nodePredicate.test(it.targetNode) }.map { SbgnWriter.getArcEnds(it) }
+        Thread({
+            try {
+                val fragmentGraph = DefaultGraph()
+                snapshot.materialize(fragmentGraph, copyStyles = false)
+                val fragmentArcEnds = HashMap<IEdge, Pair<PointD, PointD>?>()
+                fragmentGraph.edges.forEachIndexed { index, edge -> fragmentArcEnds[edge] = arcEnds[index] }
+                val output = ByteArrayOutputStream()
+                SbgnWriter().apply { this.arcEnds = { fragmentArcEnds[it] } }.write(output, fragmentGraph, null)
+                val text = output.toString("UTF-8")
+                SwingUtilities.invokeLater {
+                    Toolkit.getDefaultToolkit().systemClipboard.setContents(StringSelection(text), null)
+                }
+            } catch (ex: Exception) {
+                SwingUtilities.invokeLater { ProblemReporter.reportThrowable(ex, "Problem copying selection as SBGN-ML", graphComponent) }
+            }
+        }, "sbgn-clipboard-export").apply { isDaemon = true }.start()
+    }
+}
@@ -10,16 +10,51 @@
 package krayon.editor.sbgn.command
 
 import com.yworks.yfiles.graph.INode
+import krayon.editor.base.command.CommandManager
+import krayon.editor.base.command.CommandManager.EnablementInput
 import krayon.editor.base.util.beginEdit
 import krayon.editor.sbgn.model.type
 import krayon.editor.sbgn.style.SbgnBuilder
+import krayon.editor.sbgn.ui.SbgnGraphComponent
+import java.awt.event.FocusAdapter
+import java.awt.event.FocusEvent
 
 object CyclePermittedNodes : SbgnCommand("CYCLE_PERMITTED_NODES") {
 
     private var lastCycleNode: INode? = null
+    /** component of the open constraint interaction, if any */
+    private var cyclingComponent: SbgnGraphComponent? = null
+
+    private val focusListener = object: FocusAdapter() {
+        override fun focusLost(e: FocusEvent) = endCycling()
+    }
+
+    init {
+        //consecutive cycles on the same node form one constraint interaction. any other command or focus loss ends it.
+        CommandManager.commandListeners += object:CommandManager.CommandListener {
+            override fun onExecute(event: CommandManager.ExecutionEvent) {
+                if(event.command !== this@CyclePermittedNodes) endCycling()
+            }
+        }
+    }
+
+    private fun endCycling() {
+        cyclingComponent?.let {
+            cyclingComponent = null
+            it.removeFocusListener(focusListener)
+            it.constraintManager.endInteraction()
+        }
+    }
 
     override fun execute(param:Any?) {
         val node = getUniqueNode(param)!!
+        if(node != lastCycleNode || cyclingComponent !== sbgnGraphComponent) endCycling()
+        if(cyclingComponent == null) {
+            cyclingComponent = sbgnGraphComponent.apply {
+                constraintManager.beginInteraction(graph)
+                addFocusListener(focusListener)
+            }
+        }
         graph.beginEdit(id,listOf(node, node.tag)).use {
             val allowedTypes = sbgnGraphComponent.constraintManager.getNodeConversionTypes(graph,node)
             if(node != lastCycleNode) {
@@ -42,4 +77,5 @@ object CyclePermittedNodes : SbgnCommand("CYCLE_PERMITTED_NODES") {
 
     //requires single node
     override fun canExecute(param: Any?) = getUniqueNode(param) != null
+    override val enablementInputs get() = EnablementInput.SELECTION_ONLY
 }
\ No newline at end of file
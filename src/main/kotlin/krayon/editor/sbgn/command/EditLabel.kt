@@ -9,6 +9,7 @@
 
 package krayon.editor.sbgn.command
 
+import krayon.editor.base.command.CommandManager.EnablementInput
 import krayon.editor.base.util.geim
 import krayon.editor.sbgn.model.SbgnType
 import krayon.editor.sbgn.model.type
@@ -45,4 +46,6 @@ object EditLabel : SbgnCommand("EDIT_LABEL") {
                 ?: getUniqueEdge(param)
                 ) != null
     }
+
+    override val enablementInputs get() = EnablementInput.SELECTION_ONLY
 }
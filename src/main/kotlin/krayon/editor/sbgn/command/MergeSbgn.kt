@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.command
+
+import com.yworks.yfiles.graph.IEdge
+import com.yworks.yfiles.graph.IGraph
+import com.yworks.yfiles.graph.ILabel
+import com.yworks.yfiles.graph.IModelItem
+import com.yworks.yfiles.graph.INode
+import com.yworks.yfiles.graph.IPort
+import krayon.editor.base.style.HighlightNodesManager
+import krayon.editor.base.util.beginEdit
+import krayon.editor.sbgn.model.SbgnMerge
+import krayon.editor.sbgn.ui.SbgnGraphComponent
+import java.io.File
+import javax.swing.JOptionPane
+
+/**
+ * Merges the changes of another version of the diagram into the diagram, given the version both derive from. The merge
+ * is one undoable edit. Conflicting nodes are highlighted until the next merge and all conflicting items are selected.
+ * The versions are read on a worker thread.
+ */
+object MergeSbgn : SbgnCommand("MERGE_SBGN") {
+
+    /** conflicts listed in the summary */
+    private const val maxListedConflicts = 15
+    private const val HIGHLIGHT_GROUP = "merge"
+
+    override fun execute(param: Any?) {
+        val baseFile = chooseSbgnFile(graphComponent, "Choose Common Ancestor Version") ?: return
+        val theirFile = chooseSbgnFile(graphComponent, "Choose Version to Merge") ?: return
+        val graphComponent = sbgnGraphComponent
+        readVersions(graphComponent, listOf(baseFile, theirFile)) { versions ->
+            val (baseGraph, baseIds) = versions[0]
+            val (theirGraph, theirIds) = versions[1]
+            merge(graphComponent, theirFile, baseGraph, baseIds, theirGraph, theirIds)
+        }
+    }
+
+    override fun canExecute(param: Any?) = true
+
+    private fun merge(graphComponent: SbgnGraphComponent, theirFile: File, baseGraph: IGraph, baseIds: Map<IModelItem, String>,
+                      theirGraph: IGraph, theirIds: Map<IModelItem, String>) {
+        val graph = graphComponent.graph
+        val merge = SbgnMerge(baseGraph, graph, theirGraph, baseIds, emptyMap(), theirIds)
+        // memento support records the SBGN data of changed items
+        val conflicts = graph.beginEdit("Merge", graph.nodes.toList() + graph.edges.toList()).use { _ -> merge.merge() }
+
+        val highlightManager = graphComponent.lookup(HighlightNodesManager::class.java)
+        highlightManager?.clearHighlights(HIGHLIGHT_GROUP)
+        graphComponent.selection.clear()
+        conflicts.forEach { conflict ->
+            val item = conflict.item ?: return@forEach
+            if(!graph.contains(item)) return@forEach
+            when(item) {
+                is INode -> {
+                    highlightManager?.addHighlight(item, "conflict", HIGHLIGHT_GROUP)
+                    graphComponent.selection.setSelected(item, true)
+                }
+                is IEdge, is ILabel, is IPort -> graphComponent.selection.setSelected(item, true)
+            }
+        }
+
+        val message = if(conflicts.isEmpty()) "Merged ${theirFile.name} without conflicts."
+        else {
+            val listed = conflicts.take(maxListedConflicts).joinToString("\n") { "- ${it.message}" }
+            val more = if(conflicts.size > maxListedConflicts) "\n... and ${conflicts.size - maxListedConflicts} more" else ""
+            "Merged ${theirFile.name} with ${conflicts.size} conflicts. Our version was kept for:\n$listed$more"
+        }
+        JOptionPane.showMessageDialog(graphComponent, message, name ?: id,
+                if(conflicts.isEmpty()) JOptionPane.INFORMATION_MESSAGE else JOptionPane.WARNING_MESSAGE)
+    }
+}
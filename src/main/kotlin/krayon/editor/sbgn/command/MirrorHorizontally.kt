@@ -9,14 +9,16 @@
 
 package krayon.editor.sbgn.command
 
+import krayon.editor.base.command.CommandManager.EnablementInput
 import krayon.editor.base.util.beginEdit
 import krayon.editor.sbgn.layout.MirrorTransformation
 
 object MirrorHorizontally: SbgnCommand("MIRROR_HORIZONTALLY") {
     override fun canExecute(param: Any?) = selectedNodes.any()
+    override val enablementInputs get() = EnablementInput.SELECTION_ONLY
     override fun execute(param: Any?) {
         getNodes(param).let { nodes ->
-            graph.beginEdit(id, nodes).use {
+            graph.beginEdit(id, nodes + nodes.map { it.tag }).use {
                 MirrorTransformation.mirror(graph, nodes, MirrorTransformation.MirrorAxis.HORIZONTAL)
             }
         }
@@ -9,10 +9,11 @@
 
 package krayon.editor.sbgn.command
 
+import krayon.editor.sbgn.KrayonForSbgn
+
 object NewSbgn : SbgnCommand("NEW_SBGN") {
     override fun execute(param: Any?) {
-        TODO("MULTIDOC NOT IMPLEMENTED YET")
-        //KrayonForSbgn.addNewGraphComponent()
+        KrayonForSbgn.addNewGraphComponent()
     }
     override fun canExecute(param: Any?) = true
-}
\ No newline at end of file
+}
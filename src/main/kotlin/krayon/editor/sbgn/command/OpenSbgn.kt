@@ -49,6 +49,7 @@ val OpenSbgn = object:SbgnCommand("OPEN_SBGN") {
 
         SbgnReader().read(FileInputStream(file), graph, sbgnGraphComponent)
         ApplicationSettings.DIAGRAM_FILE.scoped(graphComponent).value = file
+        sbgnGraphComponent.markSaved()
 
         Application.fireApplicationEvent(ApplicationEvent(this,"DIAGRAM.LOADED"))
 
@@ -9,11 +9,13 @@
 
 package krayon.editor.sbgn.command
 
+import krayon.editor.base.command.CommandManager.EnablementInput
 import krayon.editor.base.util.beginEdit
 import krayon.editor.sbgn.layout.RotateTransformation
 
 object RotateCounterClockwise: SbgnCommand("ROTATE_COUNTER_CLOCKWISE") {
     override fun canExecute(param: Any?) = selectedNodes.any()
+    override val enablementInputs get() = EnablementInput.SELECTION_ONLY
     override fun execute(param: Any?) {
         getNodes(param).let { nodes ->
             graph.beginEdit(id, nodes + nodes.map { it.tag }).use {
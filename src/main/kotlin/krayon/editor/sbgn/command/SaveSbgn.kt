@@ -44,6 +44,7 @@ class SaveSbgnCommand(id:String, private val includeStyle: Boolean = true) : Sbg
 
         ApplicationSettings.LAST_FILE_LOCATION.value = fileChooser.selectedFile.parent
         SbgnWriter(includeStyle).write(FileOutputStream(fileName), graph, sbgnGraphComponent)
+        sbgnGraphComponent.markSaved()
     }
 
     override fun canExecute(param: Any?) = true
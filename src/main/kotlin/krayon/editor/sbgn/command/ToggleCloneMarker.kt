@@ -9,6 +9,7 @@
 
 package krayon.editor.sbgn.command
 
+import krayon.editor.base.command.CommandManager.EnablementInput
 import krayon.editor.base.util.addValueUndoEdit
 import krayon.editor.base.util.beginEdit
 import krayon.editor.sbgn.model.SbgnType
@@ -18,10 +19,12 @@ import krayon.editor.sbgn.model.type
 object ToggleCloneMarker : SbgnCommand("TOGGLE_CLONE_MARKER") {
     override fun execute(param: Any?) {
         graph.beginEdit(id).use {
+            val validator = sbgnGraphComponent.validator
             getNodes(param).let { nodes ->
                 nodes.forEach { node ->
-                    graph.addValueUndoEdit(id, node.isClone, !node.isClone, { node.isClone = it})
+                    graph.addValueUndoEdit(id, node.isClone, !node.isClone, { node.isClone = it; validator.invalidate(node) })
                     node.isClone = !node.isClone
+                    validator.invalidate(node)
                     if(!node.isClone) {
                         node.labels.filter{ it.type == SbgnType.CLONE_LABEL }.forEach {
                             graph.remove(it)
@@ -32,5 +35,6 @@ object ToggleCloneMarker : SbgnCommand("TOGGLE_CLONE_MARKER") {
         }
         graph.invalidateDisplays()
     }
-    override fun canExecute(param: Any?) =  selectedNodes.any { it.type.canCarryCloneMarker() }
+    override fun canExecute(param: Any?) = selectionSummary.anyNodeType<SbgnType> { it.canCarryCloneMarker() }
+    override val enablementInputs get() = EnablementInput.SELECTED_DATA
 }
\ No newline at end of file
@@ -9,15 +9,19 @@
 
 package krayon.editor.sbgn.command
 
+import com.yworks.yfiles.graph.INode
+import krayon.editor.base.command.CommandManager.EnablementInput
 import krayon.editor.base.ui.MultiplexingNodeHoverInputMode
 import krayon.editor.base.util.addValueUndoEdit
 import krayon.editor.base.util.beginEdit
 import krayon.editor.base.util.geim
+import krayon.editor.sbgn.model.SbgnType
 import krayon.editor.sbgn.model.isLocked
 import krayon.editor.sbgn.model.type
 
 object ToggleComplexLock : SbgnCommand("TOGGLE_COMPLEX_LOCK") {
-    override fun canExecute(param: Any?) = getNodes(param).any { it.type.isComplex() }
+    override fun canExecute(param: Any?) = if(param is INode) param.type.isComplex() else selectionSummary.anyNodeType<SbgnType> { it.isComplex() }
+    override val enablementInputs get() = EnablementInput.SELECTED_DATA
     override fun execute(param: Any?) {
         graph.beginEdit(id).use { _ ->
             getNodes(param).forEach { node ->
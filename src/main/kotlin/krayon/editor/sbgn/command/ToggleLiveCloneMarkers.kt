@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.command
+
+object ToggleLiveCloneMarkers : SbgnCommand("TOGGLE_LIVE_CLONE_MARKERS") {
+    override fun canExecute(param: Any?) = true
+
+    override fun execute(param: Any?) {
+        sbgnGraphComponent.cloneMarkerIndex.apply {
+            val isLive = param as? Boolean ?: !isLiveMode
+            if(isLive && !isLiveMode) AutoAssignCloneMarkers.execute(null) // initial assignment is undoable
+            isLiveMode = isLive
+            updateActionSelectionState(isLiveMode)
+        }
+    }
+}
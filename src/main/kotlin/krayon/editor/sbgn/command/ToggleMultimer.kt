@@ -9,6 +9,7 @@
 
 package krayon.editor.sbgn.command
 
+import krayon.editor.base.command.CommandManager.EnablementInput
 import krayon.editor.base.util.addValueUndoEdit
 import krayon.editor.base.util.beginEdit
 import krayon.editor.sbgn.model.SbgnType
@@ -49,7 +50,8 @@ object ToggleMultimer : SbgnCommand("TOGGLE_MULTIMER") {
         }
         graph.invalidateDisplays()
     }
-    override fun canExecute(param: Any?) =  selectedNodes.any {
-        it.type.isMultimer() || it.type.canBeMultimer()
+    override fun canExecute(param: Any?) = selectionSummary.anyNodeType<SbgnType> {
+        it.isMultimer() || it.canBeMultimer()
     }
+    override val enablementInputs get() = EnablementInput.SELECTED_DATA
 }
\ No newline at end of file
@@ -0,0 +1,603 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.io
+
+import com.beust.klaxon.JsonArray
+import com.beust.klaxon.JsonObject
+import com.beust.klaxon.JsonReader
+import com.yworks.yfiles.geometry.PointD
+import com.yworks.yfiles.geometry.RectD
+import com.yworks.yfiles.geometry.SizeD
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.graph.portlocationmodels.IPortLocationModelParameter
+import com.yworks.yfiles.graph.styles.IEdgeStyle
+import com.yworks.yfiles.graph.styles.INodeStyle
+import com.yworks.yfiles.utils.ICloneable
+import com.yworks.yfiles.utils.IEventListener
+import krayon.editor.base.model.ItemDataChanges
+import krayon.editor.base.ui.ProblemReporter
+import krayon.editor.base.ui.SnapshotGraphClipboard
+import krayon.editor.sbgn.model.*
+import krayon.editor.sbgn.style.SbgnBuilder
+import krayon.editor.sbgn.ui.SbgnGraphComponent
+import java.io.*
+import java.nio.channels.FileChannel
+import java.nio.channels.FileLock
+import java.nio.channels.OverlappingFileLockException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.IdentityHashMap
+import java.util.function.Predicate
+import javax.swing.SwingUtilities
+import javax.swing.Timer
+
+/**
+ * Crash recovery for the diagram of a graph component. Graph events and [ItemDataChanges] mark nodes and edges dirty, and
+ * their current state is appended as JSON line to a journal file shortly after. Every [checkpointRecordCount] records
+ * or [checkpointInterval] ms, and whenever a diagram is loaded, a checkpoint writes the whole diagram as SBGN-ML and
+ * starts a new journal. All file access happens on a background thread. A failed write is reported once and the
+ * checkpoint is retried after [retryDelay] ms. [close] removes the files unless the journal is kept, so files found at
+ * startup are left over from a crash or a kept journal. They can be replayed with [recover] or removed with [discard].
+ * A journal only starts in a directory without such files, or after it recovered them.
+ *
+ * Records refer to items by journal ids, which are also the glyph and arc ids in the checkpoint. Ports and label
+ * properties are not journaled; they are restored the way [SbgnReader] restores them.
+ */
+class AutosaveJournal(val directory: File) {
+
+    /** delay in ms between a change and the write of its record */
+    var flushDelay = 1000
+        set(value) {
+            field = value
+            flushTimer.initialDelay = value
+        }
+    var checkpointRecordCount = 5000
+    var checkpointInterval = 5 * 60 * 1000L
+    var retryDelay = 30000
+        set(value) {
+            field = value
+            retryTimer.initialDelay = value
+        }
+
+    var graphComponent: SbgnGraphComponent? = null
+        private set
+    private val graph get() = graphComponent!!.graph
+
+    private val ids = HashMap<IModelItem, String>()
+    private var nextNodeIndex = 0
+    private var nextEdgeIndex = 0
+    private val dirtyItems = LinkedHashSet<IModelItem>()
+    private val removedIds = LinkedHashSet<String>()
+    /** node or edge of the SBGN data of journaled nodes, edges and their labels */
+    private val dataOwners = IdentityHashMap<Any, IModelItem>()
+    /** tag clones of the last checkpoint, reused while the tag is unchanged */
+    private var recordedTags = HashMap<IModelItem, SbgnData>()
+    /** arc ends of the last checkpoint, dropped when the edge gets dirty */
+    private var arcEnds = HashMap<IEdge, Pair<PointD, PointD>?>()
+    private var generation = 0
+    private var recordCount = 0
+    private var lastCheckpoint = 0L
+    private var isFailureReported = false
+    var isStarted = false
+        private set
+    private var isRecovered = false
+
+    private var lock: FileLock? = null
+    private val executor = Executors.newSingleThreadExecutor { Thread(it, "sbgn-autosave").apply { isDaemon = true } }
+    /** only accessed on the executor */
+    private var journalWriter: Writer? = null
+    private val flushTimer = Timer(flushDelay) { flush() }.apply { isRepeats = false }
+    private val retryTimer = Timer(retryDelay) { checkpoint() }.apply { isRepeats = false }
+
+    private val nodeCreatedListener = IEventListener<ItemEventArgs<INode>> { _, args -> markDirty(args.item) }
+    private val nodeRemovedListener = IEventListener<NodeEventArgs> { _, args -> markRemoved(args.item) }
+    private val nodeLayoutChangedListener = INodeLayoutChangedHandler { _, node, _ ->
+        markDirty(node)
+        graph.edgesAt(node).forEach { markDirty(it) }
+    }
+    private val parentChangedListener = IEventListener<NodeEventArgs> { _, args -> markDirty(args.item) }
+    private val isGroupNodeChangedListener = IEventListener<NodeEventArgs> { _, args -> markDirty(args.item) }
+    private val nodeStyleChangedListener = IEventListener<ItemChangedEventArgs<INode, INodeStyle>> { _, args ->
+        markDirty(args.item)
+        graph.edgesAt(args.item).forEach { markDirty(it) }
+    }
+    private val edgeCreatedListener = IEventListener<ItemEventArgs<IEdge>> { _, args -> markDirty(args.item) }
+    private val edgeRemovedListener = IEventListener<EdgeEventArgs> { _, args -> markRemoved(args.item) }
+    private val edgePortsChangedListener = IEventListener<EdgeEventArgs> { _, args -> markDirty(args.item) }
+    private val edgeStyleChangedListener = IEventListener<ItemChangedEventArgs<IEdge, IEdgeStyle>> { _, args -> markDirty(args.item) }
+    private val portLocationChangedListener = IEventListener<ItemChangedEventArgs<IPort, IPortLocationModelParameter>> { _, args ->
+        graph.edgesAt(args.item).forEach { markDirty(it) }
+    }
+    private val bendAddedListener = IEventListener<ItemEventArgs<IBend>> { _, args -> markDirty(args.item.owner) }
+    private val bendRemovedListener = IEventListener<BendEventArgs> { _, args -> markDirty(args.owner) }
+    private val bendLocationChangedListener = IBendLocationChangedHandler { _, bend, _ -> markDirty(bend.owner) }
+    private val labelAddedListener = IEventListener<ItemEventArgs<ILabel>> { _, args -> markDirty(args.item.owner) }
+    private val labelRemovedListener = IEventListener<LabelEventArgs> { _, args -> markDirty(args.owner) }
+    private val labelTextChangedListener = IEventListener<ItemChangedEventArgs<ILabel, String>> { _, args -> markDirty(args.item.owner) }
+    private val itemDataListener:(Any) -> Unit = { source ->
+        markDirty(when(source) {
+            is ILabel -> source.owner
+            is IModelItem -> source
+            else -> dataOwners[source]
+        })
+    }
+
+    /**
+     * takes the lock on the journal directory. Returns false if another instance is using it.
+     */
+    fun open():Boolean {
+        if(lock != null) return true
+        val channel = try {
+            directory.mkdirs()
+            FileChannel.open(File(directory, LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+        } catch (ex: IOException) {
+            return false
+        }
+        lock = try {
+            channel.tryLock()
+        } catch (ex: IOException) {
+            null
+        } catch (ex: OverlappingFileLockException) {
+            null
+        }
+        if(lock == null) channel.close()
+        return lock != null
+    }
+
+    /** the checkpoint left over from a previous session, if any */
+    val recoverableCheckpoint:File? get() = directory.listFiles { file -> CHECKPOINT_PATTERN.matches(file.name) }
+            ?.maxBy { generationOf(it) }
+
+    /**
+     * replaces the diagram by the given checkpoint and replays its journal. Does not record an undo step.
+     */
+    fun recover(graphComponent: SbgnGraphComponent, checkpoint: File) {
+        this.graphComponent = graphComponent
+        graph.clear()
+        val reader = SbgnReader()
+        FileInputStream(checkpoint).use { reader.read(it, graph, graphComponent) }
+        val items = HashMap(reader.itemsById)
+        val journal = File(directory, "journal-${generationOf(checkpoint)}.jsonl")
+        if(journal.exists()) {
+            journal.forEachLine(Charsets.UTF_8) { line ->
+                // the last line may be torn by the crash
+                val record = try { JsonReader(StringReader(line)).use { it.nextObject() } } catch (ex: Exception) { null }
+                if(record != null) replay(record, items)
+            }
+        }
+        graphComponent.undoHistory?.clear()
+        isRecovered = true
+    }
+
+    /**
+     * starts journaling the diagram of the given component. Does nothing if the directory holds files that were not
+     * recovered. Recovered files are replaced by the first checkpoint once it is written.
+     */
+    fun start(graphComponent: SbgnGraphComponent) {
+        if(isStarted || lock == null) return
+        val generations = directory.listFiles { file -> file.name != LOCK_FILE }?.map { generationOf(it) } ?: emptyList()
+        if(generations.any() && !isRecovered) return
+        generation = generations.max() ?: 0
+        this.graphComponent = graphComponent
+        isStarted = true
+        graph.addNodeCreatedListener(nodeCreatedListener)
+        graph.addNodeRemovedListener(nodeRemovedListener)
+        graph.addNodeLayoutChangedListener(nodeLayoutChangedListener)
+        graph.addParentChangedListener(parentChangedListener)
+        graph.addIsGroupNodeChangedListener(isGroupNodeChangedListener)
+        graph.addNodeStyleChangedListener(nodeStyleChangedListener)
+        graph.addEdgeCreatedListener(edgeCreatedListener)
+        graph.addEdgeRemovedListener(edgeRemovedListener)
+        graph.addEdgePortsChangedListener(edgePortsChangedListener)
+        graph.addEdgeStyleChangedListener(edgeStyleChangedListener)
+        graph.addPortLocationParameterChangedListener(portLocationChangedListener)
+        graph.addBendAddedListener(bendAddedListener)
+        graph.addBendRemovedListener(bendRemovedListener)
+        graph.addBendLocationChangedListener(bendLocationChangedListener)
+        graph.addLabelAddedListener(labelAddedListener)
+        graph.addLabelRemovedListener(labelRemovedListener)
+        graph.addLabelTextChangedListener(labelTextChangedListener)
+        ItemDataChanges.addListener(itemDataListener)
+        checkpoint()
+    }
+
+    /**
+     * stops journaling and removes the journal directory. A kept journal is flushed instead and can be recovered at
+     * the next start. The files of a journal that did not start are left alone. Waits briefly for pending writes.
+     */
+    fun close(isKept: Boolean = false) {
+        val isDeleted = isStarted && !isKept
+        if(isStarted) {
+            if(isKept) flush()
+            isStarted = false
+            flushTimer.stop()
+            retryTimer.stop()
+            graph.removeNodeCreatedListener(nodeCreatedListener)
+            graph.removeNodeRemovedListener(nodeRemovedListener)
+            graph.removeNodeLayoutChangedListener(nodeLayoutChangedListener)
+            graph.removeParentChangedListener(parentChangedListener)
+            graph.removeIsGroupNodeChangedListener(isGroupNodeChangedListener)
+            graph.removeNodeStyleChangedListener(nodeStyleChangedListener)
+            graph.removeEdgeCreatedListener(edgeCreatedListener)
+            graph.removeEdgeRemovedListener(edgeRemovedListener)
+            graph.removeEdgePortsChangedListener(edgePortsChangedListener)
+            graph.removeEdgeStyleChangedListener(edgeStyleChangedListener)
+            graph.removePortLocationParameterChangedListener(portLocationChangedListener)
+            graph.removeBendAddedListener(bendAddedListener)
+            graph.removeBendRemovedListener(bendRemovedListener)
+            graph.removeBendLocationChangedListener(bendLocationChangedListener)
+            graph.removeLabelAddedListener(labelAddedListener)
+            graph.removeLabelRemovedListener(labelRemovedListener)
+            graph.removeLabelTextChangedListener(labelTextChangedListener)
+            ItemDataChanges.removeListener(itemDataListener)
+            dataOwners.clear()
+            recordedTags.clear()
+            arcEnds.clear()
+        }
+        release(isDeleted)
+    }
+
+    /**
+     * removes the files of a journal that did not start, e.g. because their recovery was declined, and releases the
+     * directory.
+     */
+    fun discard() {
+        if(!isStarted) release(isDeleted = true)
+    }
+
+    private fun release(isDeleted: Boolean) {
+        executor.execute {
+            closeJournalWriter()
+            if(isDeleted) deleteFiles { true }
+            lock?.let {
+                it.release()
+                it.channel().close()
+                if(isDeleted) {
+                    File(directory, LOCK_FILE).delete()
+                    directory.delete()
+                }
+            }
+        }
+        executor.shutdown()
+        executor.awaitTermination(2, TimeUnit.SECONDS)
+    }
+
+    /**
+     * writes the whole diagram in the background and starts a new journal. Pending records are dropped, since the
+     * checkpoint contains them. Unchanged tags and arc ends are taken over from the last checkpoint.
+     */
+    fun checkpoint() {
+        if(!isStarted) return
+        flushTimer.stop()
+        retryTimer.stop()
+        dirtyItems.clear()
+        removedIds.clear()
+        ids.clear()
+        dataOwners.clear()
+        nextNodeIndex = 0
+        nextEdgeIndex = 0
+
+        // same order as in the snapshot
+        val nodeIds = graph.nodes.map { node -> nextId(node).also { ids[node] = it; addDataOwner(node) } }
+        val edges = graph.edges.filter { it.sourcePort.owner is INode && it.targetPort.owner is INode }
+        val edgeIds = edges.map { edge -> nextId(edge).also { ids[edge] = it; addDataOwner(edge) } }
+        // arc ends depend on the styles, which stay on the EDT
+        val previousArcEnds = arcEnds
+        arcEnds = HashMap()
+        val edgeArcEnds = edges.map { edge ->
+            (if(edge in previousArcEnds) previousArcEnds[edge] else SbgnWriter.getArcEnds(edge)).also { arcEnds[edge] = it }
+        }
+        val previousTags = recordedTags
+        recordedTags = HashMap()
+        val snapshot = SnapshotGraphClipboard.Snapshot.create(graph, Predicate { true }, cloneStyles = false) { recordTag(it, previousTags) }
+        val checkpointGeneration = ++generation
+        recordCount = 0
+        lastCheckpoint = System.currentTimeMillis()
+
+        executor.execute {
+            closeJournalWriter()
+            try {
+                val checkpointGraph = DefaultGraph()
+                val itemIds = HashMap<IModelItem, String>()
+                val checkpointArcEnds = HashMap<IEdge, Pair<PointD, PointD>?>()
+                snapshot.materialize(checkpointGraph, copyStyles = false).forEachIndexed { index, node -> itemIds[node] = nodeIds[index] }
+                checkpointGraph.edges.forEachIndexed { index, edge ->
+                    itemIds[edge] = edgeIds[index]
+                    checkpointArcEnds[edge] = edgeArcEnds[index]
+                }
+
+                val tmpFile = File(directory, "checkpoint-$checkpointGeneration.tmp")
+                FileOutputStream(tmpFile).use { stream ->
+                    SbgnWriter().apply {
+                        this.itemIds = { itemIds[it] }
+                        this.arcEnds = { checkpointArcEnds[it] }
+                    }.write(stream, checkpointGraph, null)
+                }
+                Files.move(tmpFile.toPath(), File(directory, "checkpoint-$checkpointGeneration.sbgn").toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+                journalWriter = BufferedWriter(OutputStreamWriter(FileOutputStream(File(directory, "journal-$checkpointGeneration.jsonl"), true), Charsets.UTF_8))
+                deleteFiles { generationOf(it) < checkpointGeneration }
+                SwingUtilities.invokeLater { isFailureReported = false }
+            } catch (ex: Exception) {
+                // records of this generation are dropped until the retry succeeds
+                onWriteFailed(ex, "Autosave could not write a checkpoint. Retrying in ${retryDelay / 1000} seconds.")
+            }
+        }
+    }
+
+    /**
+     * reports the first failure of a row and schedules a new checkpoint, since the journal is incomplete. Called on
+     * the executor.
+     */
+    private fun onWriteFailed(ex: Exception, message: String) {
+        SwingUtilities.invokeLater {
+            if(!isStarted) return@invokeLater
+            if(!isFailureReported) {
+                isFailureReported = true
+                ProblemReporter.reportThrowable(ex, message, graphComponent)
+            }
+            retryTimer.restart()
+        }
+    }
+
+    private fun recordTag(item: IModelItem, previousTags: Map<IModelItem, SbgnData>):Any? {
+        val tag = item.tag as? SbgnData ?: return (item.tag as? ICloneable)?.clone() ?: item.tag
+        val previousTag = previousTags[item]
+        val recordedTag = if(previousTag != null && previousTag == tag && previousTag.style === tag.style) previousTag else tag.clone() as SbgnData
+        recordedTags[item] = recordedTag
+        return recordedTag
+    }
+
+    private fun addDataOwner(item: ILabelOwner) {
+        item.tag?.let { dataOwners[it] = item }
+        item.labels.forEach { label -> label.tag?.let { dataOwners[it] = item } }
+    }
+
+    private fun markDirty(item: IModelItem?) {
+        if(item == null || item !is INode && item !is IEdge) return
+        if(item is IEdge) arcEnds.remove(item)
+        dirtyItems += item
+        scheduleFlush()
+    }
+
+    private fun markRemoved(item: IModelItem) {
+        dirtyItems -= item
+        item.tag?.let { dataOwners -= it }
+        if(item is IEdge) arcEnds.remove(item)
+        ids.remove(item)?.let { removedIds += it }
+        scheduleFlush()
+    }
+
+    private fun scheduleFlush() {
+        if(isStarted && !flushTimer.isRunning) flushTimer.start()
+    }
+
+    private fun flush() {
+        if(!isStarted) return
+        if(dirtyItems.isEmpty() && removedIds.isEmpty()) return
+
+        val records = ArrayList<String>(removedIds.size + dirtyItems.size)
+        removedIds.forEach { records += JsonObject(linkedMapOf<String, Any?>("op" to "remove", "id" to it)).toJsonString() }
+        // parents before children, nodes before edges
+        dirtyItems.filterIsInstance<INode>().filter { graph.contains(it) }.sortedBy { depthOf(it) }.forEach { records += createNodeRecord(it).toJsonString() }
+        dirtyItems.filterIsInstance<IEdge>().filter { graph.contains(it) }.forEach { edge ->
+            createEdgeRecord(edge)?.let { records += it.toJsonString() }
+        }
+        removedIds.clear()
+        dirtyItems.clear()
+
+        executor.execute {
+            journalWriter?.let { writer ->
+                try {
+                    records.forEach {
+                        writer.write(it)
+                        writer.write("\n")
+                    }
+                    writer.flush()
+                } catch (ex: IOException) {
+                    closeJournalWriter()
+                    onWriteFailed(ex, "Autosave could not write its journal. Retrying in ${retryDelay / 1000} seconds.")
+                }
+            }
+        }
+
+        recordCount += records.size
+        if(recordCount >= checkpointRecordCount || System.currentTimeMillis() - lastCheckpoint >= checkpointInterval) checkpoint()
+    }
+
+    private fun nextId(item: IModelItem) = if(item is INode) "n${nextNodeIndex++}" else "e${nextEdgeIndex++}"
+
+    private fun idOf(item: IModelItem) = ids.getOrPut(item) { nextId(item) }
+
+    private fun depthOf(node: INode):Int {
+        var depth = 0
+        var parent = graph.getParent(node)
+        while(parent != null) {
+            depth++
+            parent = graph.getParent(parent)
+        }
+        return depth
+    }
+
+    private fun createNodeRecord(node: INode):JsonObject {
+        addDataOwner(node)
+        val layout = node.layout
+        return JsonObject(linkedMapOf<String, Any?>(
+                "op" to "node",
+                "id" to idOf(node),
+                "type" to node.type.name,
+                "parent" to graph.getParent(node)?.let { idOf(it) },
+                "x" to layout.x, "y" to layout.y, "w" to layout.width, "h" to layout.height,
+                "group" to graph.isGroupNode(node),
+                "style" to node.graphStyle?.name,
+                "props" to createPropertyRecord(node),
+                "labels" to createLabelRecords(node)))
+    }
+
+    private fun createEdgeRecord(edge: IEdge):JsonObject? {
+        val source = edge.sourcePort.owner as? INode ?: return null
+        val target = edge.targetPort.owner as? INode ?: return null
+        addDataOwner(edge)
+        val sourceLocation = edge.sourcePort.location
+        val targetLocation = edge.targetPort.location
+        return JsonObject(linkedMapOf<String, Any?>(
+                "op" to "edge",
+                "id" to idOf(edge),
+                "type" to edge.type.name,
+                "source" to idOf(source), "sx" to sourceLocation.x, "sy" to sourceLocation.y,
+                "target" to idOf(target), "tx" to targetLocation.x, "ty" to targetLocation.y,
+                "bends" to JsonArray(edge.bends.map { JsonObject(linkedMapOf<String, Any?>("x" to it.location.x, "y" to it.location.y)) }),
+                "style" to edge.graphStyle?.name,
+                "props" to createPropertyRecord(edge),
+                "labels" to createLabelRecords(edge)))
+    }
+
+    private fun createPropertyRecord(item: IModelItem):JsonObject {
+        val props = linkedMapOf<String, Any?>()
+        (item.tag as? SbgnData)?.property?.forEach { key, value ->
+            props[key.name] = when(value) {
+                is PointD -> JsonObject(linkedMapOf<String, Any?>("x" to value.x, "y" to value.y))
+                is SizeD -> JsonObject(linkedMapOf<String, Any?>("width" to value.width, "height" to value.height))
+                is Boolean, is String, is Number, null -> value
+                else -> value.toString()
+            }
+        }
+        return JsonObject(props)
+    }
+
+    private fun createLabelRecords(owner: ILabelOwner) = JsonArray(owner.labels.map { label ->
+        val bounds = label.layout.bounds
+        JsonObject(linkedMapOf<String, Any?>("type" to label.type.name, "text" to label.text,
+                "x" to bounds.x, "y" to bounds.y, "w" to bounds.width, "h" to bounds.height))
+    })
+
+    private fun replay(record: JsonObject, items: MutableMap<String, IModelItem>) {
+        val id = record.string("id") ?: return
+        when(record.string("op")) {
+            "remove" -> items.remove(id)?.let { if(graph.contains(it)) graph.remove(it) }
+            "node" -> replayNode(id, record, items)
+            "edge" -> replayEdge(id, record, items)
+        }
+    }
+
+    private fun replayNode(id: String, record: JsonObject, items: MutableMap<String, IModelItem>) {
+        val type = getType(record) ?: return
+        val layout = RectD(record.number("x"), record.number("y"), record.number("w"), record.number("h"))
+        val existingNode = (items[id] as? INode)?.takeIf { graph.contains(it) }
+        val node = existingNode ?: graph.createNode(layout).also { items[id] = it }
+        val isTypeChanged = existingNode == null || node.type != type
+        node.type = type
+        applyProperties(node, record)
+
+        val parent = record.string("parent")?.let { items[it] as? INode }
+        if(graph.getParent(node) != parent) graph.setParent(node, parent)
+        graph.setIsGroupNode(node, record.boolean("group") == true)
+        if(isTypeChanged) {
+            SbgnBuilder.configure(graph, node, layout)
+            if(node.ports.none()) SbgnBuilder.addPorts(graph, node)
+        }
+        else graph.setNodeLayout(node, layout)
+        replayLabels(node, record)
+        SbgnBuilder.applyStyle(graph, node)
+    }
+
+    private fun replayEdge(id: String, record: JsonObject, items: MutableMap<String, IModelItem>) {
+        val type = getType(record) ?: return
+        val source = record.string("source")?.let { items[it] as? INode } ?: return
+        val target = record.string("target")?.let { items[it] as? INode } ?: return
+        val sourceLocation = PointD(record.number("sx"), record.number("sy"))
+        val targetLocation = PointD(record.number("tx"), record.number("ty"))
+
+        val existingEdge = (items[id] as? IEdge)?.takeIf { graph.contains(it) }
+        val edge = existingEdge ?: graph.createEdge(getPort(source, sourceLocation), getPort(target, targetLocation)).also { items[id] = it }
+        if(existingEdge != null && (edge.sourcePort.owner != source || edge.targetPort.owner != target ||
+                        edge.sourcePort.location.distanceTo(sourceLocation) > PORT_TOLERANCE || edge.targetPort.location.distanceTo(targetLocation) > PORT_TOLERANCE)) {
+            graph.setEdgePorts(edge, getPort(source, sourceLocation), getPort(target, targetLocation))
+        }
+        val isTypeChanged = existingEdge == null || edge.type != type
+        edge.type = type
+        applyProperties(edge, record)
+
+        val bends = record.array<JsonObject>("bends")?.map { PointD(it.number("x"), it.number("y")) } ?: emptyList()
+        if(edge.bends.map { it.location.toPointD() } != bends) {
+            edge.bends.toList().forEach { graph.remove(it) }
+            bends.forEach { graph.addBend(edge, it) }
+        }
+        if(isTypeChanged) SbgnBuilder.configure(graph, edge)
+        replayLabels(edge, record)
+        SbgnBuilder.applyStyle(graph, edge)
+    }
+
+    private fun getPort(node: INode, location: PointD):IPort {
+        return node.ports.firstOrNull { it.location.distanceTo(location) <= PORT_TOLERANCE } ?: graph.addPort(node).also {
+            graph.setPortLocation(it, location)
+        }
+    }
+
+    private fun getType(record: JsonObject) = record.string("type")?.let { name -> SbgnType.values().firstOrNull { it.name == name } }
+
+    private fun applyProperties(item: IModelItem, record: JsonObject) {
+        val props = record.obj("props")
+        SbgnPropertyKey.values().forEach { key ->
+            val value = props?.get(key.name)
+            val decoded = when {
+                value !is JsonObject -> value
+                value.containsKey("width") -> SizeD(value.number("width"), value.number("height"))
+                else -> PointD(value.number("x"), value.number("y"))
+            }
+            if(item.getSbgnProperty(key) != decoded) item.setSbgnProperty(key, decoded)
+        }
+        val styleName = record.string("style")
+        item.graphStyle = SbgnBuilder.styleManager.styles.firstOrNull { it.name == styleName }
+    }
+
+    private fun replayLabels(owner: ILabelOwner, record: JsonObject) {
+        val labelRecords = record.array<JsonObject>("labels") ?: return
+        val isUnchanged = owner.labels.size() == labelRecords.size && owner.labels.zip(labelRecords).all { (label, labelRecord) ->
+            label.type.name == labelRecord.string("type") && label.text == labelRecord.string("text")
+        }
+        if(isUnchanged) return
+        owner.labels.toList().forEach { graph.remove(it) }
+        labelRecords.forEach { labelRecord ->
+            val label = graph.addLabel(owner, labelRecord.string("text") ?: "")
+            label.type = getType(labelRecord) ?: SbgnType.NAME_LABEL
+            SbgnBuilder.configure(graph, label, RectD(labelRecord.number("x"), labelRecord.number("y"), labelRecord.number("w"), labelRecord.number("h")))
+        }
+    }
+
+    private fun JsonObject.number(key: String) = (get(key) as? Number)?.toDouble() ?: 0.0
+
+    private fun closeJournalWriter() {
+        try {
+            journalWriter?.close()
+        } catch (ex: IOException) {
+        }
+        journalWriter = null
+    }
+
+    private fun deleteFiles(filter: (File) -> Boolean) {
+        directory.listFiles { file -> file.name != LOCK_FILE && filter(file) }?.forEach { it.delete() }
+    }
+
+    companion object {
+        private const val LOCK_FILE = "autosave.lock"
+        private const val PORT_TOLERANCE = 0.5
+        private val CHECKPOINT_PATTERN = Regex("checkpoint-(\\d+)\\.sbgn")
+        private val GENERATION_PATTERN = Regex("[a-z]+-(\\d+)\\.[a-z]+")
+
+        /** whether the directory holds checkpoint or journal files, i.e. must not be reused by a new journal */
+        fun hasFiles(directory: File) = directory.listFiles { file -> file.name != LOCK_FILE }?.any() ?: false
+
+        private fun generationOf(file: File) = GENERATION_PATTERN.matchEntire(file.name)?.groupValues?.get(1)?.toIntOrNull() ?: -1
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.io
+
+import javax.xml.bind.JAXBContext
+
+/**
+ * JAXB context of the SBGN-ML bindings. It is expensive to create and thread-safe, so all readers and writers share
+ * one instance. Marshallers and unmarshallers are not thread-safe and get created per use.
+ */
+object SbgnBindings {
+    val context: JAXBContext by lazy { JAXBContext.newInstance("org.sbgn.bindings") }
+}
@@ -30,13 +30,16 @@ import org.sbgn.bindings.*
 import org.sbgn.bindings.Map
 import java.io.InputStream
 import java.io.StringReader
-import javax.xml.bind.JAXBContext
 
 class SbgnReader {
 
     private val krayonNS = "http://krayon.sbgn.ns/v1"
     private val idStyleMap = mutableMapOf<String,GraphStyle<SbgnType>>()
 
+    /** glyph and arc ids of the items created by the last read */
+    var itemsById:kotlin.collections.Map<String, IModelItem> = emptyMap()
+        private set
+
     private fun Bbox.toRectD() = RectD(x.toDouble(), y.toDouble(), w.toDouble(), h.toDouble())
     private fun Point.toPointD() = PointD(x.toDouble(), y.toDouble())
     private fun Port.toPointD() = PointD(x.toDouble(), y.toDouble())
@@ -55,7 +58,7 @@ class SbgnReader {
 
     fun read(input: InputStream, graph: IGraph, graphComponent:SbgnGraphComponent?) {
 
-        val context = JAXBContext.newInstance("org.sbgn.bindings")
+        val context = SbgnBindings.context
         val unmarshaller = context.createUnmarshaller()
 
         //skip this. extensions crash the parser if namespace tweaker is installed. why?
@@ -91,6 +94,7 @@ class SbgnReader {
         processGlyphs(graph, idMap, map.glyph, null)
 
         processArcs(graph, idMap, map)
+        itemsById = idMap
 
         configurePorts(graph)
         if(graphComponent != null) establishDrawingOrder(graphComponent)
@@ -107,7 +111,8 @@ class SbgnReader {
                     val templateMap = SbgnStyleIO().readCss(reader)
                     val graphStyle = GraphStyle(name, false, templateMap).apply { isFileLocal = true }
                     SbgnBuilder.styleManager.normalizeStyle(graphStyle)
-                    idStyleMap[id] = graphStyle
+                    idStyleMap[id] = SbgnBuilder.styleManager.findEquivalentStyle(graphStyle) ?:
+                            idStyleMap.values.firstOrNull { it.hasSameContent(graphStyle) } ?: graphStyle
                 }
             }
         }
@@ -233,6 +238,8 @@ class SbgnReader {
                 continue
             }
 
+            arc.id?.let { idMap[it] = edge }
+
             if (IOTypeMapper.getSbgnType(arc) == SbgnType.NO_TYPE) {
                 println("can't handle arc type " + arc.clazz)
             } else {
@@ -13,6 +13,7 @@ import com.sun.xml.internal.bind.marshaller.CharacterEscapeHandler
 import com.yworks.yfiles.geometry.PointD
 import com.yworks.yfiles.geometry.RectD
 import com.yworks.yfiles.geometry.SizeD
+import com.yworks.yfiles.graph.IEdge
 import com.yworks.yfiles.graph.IGraph
 import com.yworks.yfiles.graph.IModelItem
 import com.yworks.yfiles.graph.INode
@@ -30,7 +31,6 @@ import org.w3c.dom.Node
 import java.io.OutputStream
 import java.io.StringWriter
 import java.io.Writer
-import javax.xml.bind.JAXBContext
 import javax.xml.parsers.DocumentBuilderFactory
 import javax.xml.transform.OutputKeys
 import javax.xml.transform.TransformerFactory
@@ -64,6 +64,15 @@ class SbgnWriter(val includeStyle:Boolean = true) {
 
     private fun nextId() = "id${++curId}"
 
+    /** optional fixed ids for nodes and arcs, e.g. to refer to them from an autosave journal */
+    var itemIds: ((IModelItem) -> String?)? = null
+
+    /**
+     * optional start and end points of arcs, e.g. taken on the EDT by [getArcEnds] for a copy without styles. Arcs
+     * without given points use the path geometry of their style.
+     */
+    var arcEnds: ((IEdge) -> Pair<PointD, PointD>?)? = null
+
     private fun createMapExtensionNode(graph: IGraph, graphComponent:SbgnGraphComponent?):Node? {
         val graphStyles = (graph.nodes+graph.edges).mapNotNull { it.graphStyle }.toMutableSet()
         graphComponent?.graphStyle?.let { graphStyles += it }
@@ -117,7 +126,7 @@ class SbgnWriter(val includeStyle:Boolean = true) {
         writeNodes(graph, map.glyph, nodes, null, graphComponent)
         writeEdges(graph, map)
 
-        val context = JAXBContext.newInstance("org.sbgn.bindings")
+        val context = SbgnBindings.context
         val marshaller = context.createMarshaller()
 
         marshaller.setProperty(CharacterEscapeHandler::class.java.name, CustomCharacterEscapeHandler())
@@ -162,7 +171,7 @@ class SbgnWriter(val includeStyle:Boolean = true) {
         nodes.forEach { node ->
             parentGlyph.add(Glyph().apply {
                 val glyph = this
-                id = nextId()
+                id = itemIds?.invoke(node) ?: nextId()
                 if(includeStyle) extension = createMapExtension(node)
 
                 clazz = IOTypeMapper.getGlyphClazz(node)
@@ -297,20 +306,14 @@ class SbgnWriter(val includeStyle:Boolean = true) {
     private fun writeEdges(graph:IGraph, map:Map) {
         graph.edges.forEach { edge ->
             map.arc.add(Arc().apply {
-                id = nextId()
+                id = itemIds?.invoke(edge) ?: nextId()
                 if(includeStyle) extension = createMapExtension(edge)
                 clazz = IOTypeMapper.getGlyphClazz(edge)
-                val pathGeom = edge.style.renderer.getPathGeometry(edge, edge.style)
-                if(pathGeom.path.count > 0) {
-                    val cursor = pathGeom.path.createCursor()
-                    cursor.moveNext()
-                    val startPoint = cursor.currentEndPoint
+                (arcEnds?.invoke(edge) ?: getArcEnds(edge))?.let { (startPoint, endPoint) ->
                     start = Arc.Start().apply {
                         x = startPoint.x.toFloat()
                         y = startPoint.y.toFloat()
                     }
-                    cursor.toLast()
-                    val endPoint = cursor.currentEndPoint
                     end = Arc.End().apply {
                         x = endPoint.x.toFloat()
                         y = endPoint.y.toFloat()
@@ -341,6 +344,22 @@ class SbgnWriter(val includeStyle:Boolean = true) {
         }
     }
 
+    companion object {
+        /**
+         * start and end point of the path of the edge as drawn by its style, i.e. cropped at the node outlines. Styles
+         * are shared with the displayed graph, so this is to be called on the EDT.
+         */
+        fun getArcEnds(edge: IEdge):Pair<PointD, PointD>? {
+            val path = edge.style.renderer.getPathGeometry(edge, edge.style).path
+            if(path.count == 0) return null
+            val cursor = path.createCursor()
+            cursor.moveNext()
+            val startPoint = cursor.currentEndPoint
+            cursor.toLast()
+            return Pair(startPoint, cursor.currentEndPoint)
+        }
+    }
+
     class CustomCharacterEscapeHandler : CharacterEscapeHandler {
         override fun escape(ch: CharArray, _start: Int, length: Int, isAttVal: Boolean, out: Writer) {
             var start = _start
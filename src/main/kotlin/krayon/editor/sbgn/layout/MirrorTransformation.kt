@@ -29,84 +29,77 @@ object MirrorTransformation {
         VERTICAL
     }
 
-    private fun calcMirrorAxesByMagic(graph:IGraph, isMirrorNode: NodePredicate): PointD {
-        val connectingEdges = graph.edges.filter {
-            (isMirrorNode(it.sourceNode) && !isMirrorNode(it.targetNode) || !isMirrorNode(it.sourceNode) && isMirrorNode(it.targetNode)) &&
-                    graph.getParent(it.sourceNode) == graph.getParent(it.targetNode)
+    private fun calcMirrorAxesByMagic(graph:IGraph, index: TransformationIndex, mirrorPoolNodes: Set<INode>): PointD {
+        val connectingEdges = index.getConnectingEdges(mirrorPoolNodes).filter {
+            graph.getParent(it.sourceNode) == graph.getParent(it.targetNode)
         }
 
         return if(connectingEdges.size == 1) { //exactly one connecting edge. honor it
             val edge = connectingEdges.first()
-            if(isMirrorNode(edge.sourceNode)) edge.sourcePort.location
+            if(mirrorPoolNodes.contains(edge.sourceNode)) edge.sourcePort.location
             else edge.targetPort.location
         }
         else {
-            calcMirrorAxesFromBounds(graph, isMirrorNode)
+            calcMirrorAxesFromBounds(graph, mirrorPoolNodes)
         }
     }
 
-    private fun calcMirrorAxesFromBounds(graph:IGraph, isMirrorNode: NodePredicate): PointD {
-        val mirroredDecendents = mutableSetOf<INode>()
-        graph.nodes.forEach { node ->
-            if(isMirrorNode(node) && graph.isGroupNode(node)) {
-                graph.groupingSupport.getDescendants(node).forEach{ mirroredDecendents.add(it) }
+    private fun calcMirrorAxesFromBounds(graph:IGraph, mirrorPoolNodes: Set<INode>): PointD {
+        val boundsNodes = mirrorPoolNodes.toHashSet()
+        mirrorPoolNodes.forEach { node ->
+            if(graph.isGroupNode(node)) {
+                graph.groupingSupport.getDescendants(node).forEach{ boundsNodes.add(it) }
             }
         }
-        val bounds = graph.getBounds( { isMirrorNode(it) || mirroredDecendents.contains(it) })
-        return bounds.center
+        return graph.getBounds(boundsNodes).center
     }
 
-    private fun mirror(graph: IGraph, root: INode?, axis:MirrorAxis, mirrorAxis:Double, isMirrorNode: NodePredicate, isFixedNode: NodePredicate) {
-        graph.getChildren(root).forEach { node ->
-            if(isMirrorNode(node)) {
-                val delta = if(axis == MirrorAxis.HORIZONTAL) {
-                    val newX = 2.0*mirrorAxis - node.center.x
-                    PointD(newX - node.center.x, 0.0)
-                }
-                else {
-                    val newY = 2.0*mirrorAxis - node.center.y
-                    PointD(0.0, newY - node.center.y)
-                }
+    private fun mirror(graph: IGraph, nodes: Iterable<INode>, axis:MirrorAxis, mirrorAxis:Double, isMirrorNode: NodePredicate, isFixedNode: NodePredicate) {
+        nodes.forEach { node ->
+            val delta = if(axis == MirrorAxis.HORIZONTAL) {
+                val newX = 2.0*mirrorAxis - node.center.x
+                PointD(newX - node.center.x, 0.0)
+            }
+            else {
+                val newY = 2.0*mirrorAxis - node.center.y
+                PointD(0.0, newY - node.center.y)
+            }
 
-                if(node.type == SbgnType.TAG) {
-                    node.getNameLabel()?.let {
-                        mirrorNodeLabel(graph,it,axis)
-                    }
+            if(node.type == SbgnType.TAG) {
+                node.getNameLabel()?.let {
+                    mirrorNodeLabel(graph,it,axis)
                 }
+            }
 
-                graph.setNodeLayout(node, node.layout.translate(delta))
+            graph.setNodeLayout(node, node.layout.translate(delta))
 
 
-                mirrorOrientation(node, axis)
-                node.ports.forEach { port ->
-                    val newPortLocation = if(axis == MirrorAxis.HORIZONTAL)
-                        PointD(node.layout.maxX - (port.location.x - node.layout.x), port.location.y)
-                    else
-                        PointD(port.location.x, node.layout.maxY - (port.location.y - node.layout.y))
-                    graph.setPortLocationParameter(port, port.locationParameter.model.createParameter(node, newPortLocation))
-                }
-                if(graph.isGroupNode(node)) {
-                    if(isFixedNode(node)) {
-                        graph.groupingSupport.getDescendants(node).forEach { fixedChild ->
-                            graph.setNodeLayout(fixedChild, fixedChild.layout.translate(delta))
-                        }
-                    }
-                    else { //not fixed but a mirror candidate. recurse
-                         mirror(graph, node, axis, mirrorAxis, isMirrorNode, isFixedNode)
+            mirrorOrientation(node, axis)
+            node.ports.forEach { port ->
+                val newPortLocation = if(axis == MirrorAxis.HORIZONTAL)
+                    PointD(node.layout.maxX - (port.location.x - node.layout.x), port.location.y)
+                else
+                    PointD(port.location.x, node.layout.maxY - (port.location.y - node.layout.y))
+                graph.setPortLocationParameter(port, port.locationParameter.model.createParameter(node, newPortLocation))
+            }
+            if(graph.isGroupNode(node)) {
+                if(isFixedNode(node)) {
+                    graph.groupingSupport.getDescendants(node).forEach { fixedChild ->
+                        graph.setNodeLayout(fixedChild, fixedChild.layout.translate(delta))
                     }
                 }
-                graph.outEdgesAt(node).forEach { edge ->
-                    if(isMirrorNode(edge.targetNode) && edge.bends.any()) { //mirror bend points
-                        graph.beginEdit(edge.bends).use {
-                            edge.bends.toList().forEach { bend ->
-                                val newBendLocation = if(axis == MirrorAxis.HORIZONTAL)
-                                    PointD(2.0*mirrorAxis - bend.location.x, bend.location.y)
-                                else
-                                    PointD(bend.location.x, 2.0*mirrorAxis - bend.location.y)
-                                //println("location=${bend.location}  newLocation=$newBendLocation")
-                                graph.setBendLocation(bend, newBendLocation)
-                            }
-                        }
+                else { //not fixed but a mirror candidate. recurse
+                     mirror(graph, graph.getChildren(node).filter(isMirrorNode), axis, mirrorAxis, isMirrorNode, isFixedNode)
+                }
+            }
+            graph.outEdgesAt(node).forEach { edge ->
+                if(isMirrorNode(edge.targetNode) && edge.bends.any()) { //mirror bend points
+                    edge.bends.toList().forEach { bend ->
+                        val newBendLocation = if(axis == MirrorAxis.HORIZONTAL)
+                            PointD(2.0*mirrorAxis - bend.location.x, bend.location.y)
+                        else
+                            PointD(bend.location.x, 2.0*mirrorAxis - bend.location.y)
+                        graph.setBendLocation(bend, newBendLocation)
                     }
                 }
             }
@@ -115,24 +108,11 @@ object MirrorTransformation {
 
     @Suppress("MoveLambdaOutsideParentheses")
     fun mirror(graph: IGraph, mirrorNodes: Iterable<INode>, axis:MirrorAxis) {
-        val isMirrorNode = mirrorNodes.toHashSet().predicate()
-        val mirrorPools = mutableMapOf<INode?, MutableSet<INode>>()
-        graph.nodes.forEach { node ->
-            if(isMirrorNode(node)) {
-                var parent = graph.getParent(node)
-                while(parent != null && isMirrorNode(parent)) {
-                    parent = graph.getParent(parent)
-                }
-                val mirrorPoolNodes = (mirrorPools[parent] ?: hashSetOf()).apply { add(node) }
-                //println("node=$node  mirrorNodes=${mirrorNodes.size}")
-                mirrorPools[parent] = mirrorPoolNodes
-            }
-        }
-        mirrorPools.forEach { group, mirrorPoolNodes ->
-            //println("mirrorPool group=$group  #poolNodes=${poolNodes.size}")
+        val index = TransformationIndex(graph, mirrorNodes)
+        index.pools.forEach { group, mirrorPoolNodes ->
             val isMirrorPoolNode = mirrorPoolNodes.predicate()
-            val mirrorAxis = calcMirrorAxesByMagic(graph, isMirrorPoolNode).let { if(axis == MirrorAxis.HORIZONTAL) it.x else it.y  }
-            mirror(graph, group, axis, mirrorAxis, isMirrorPoolNode, { it.type.isComplex() })
+            val mirrorAxis = calcMirrorAxesByMagic(graph, index, mirrorPoolNodes).let { if(axis == MirrorAxis.HORIZONTAL) it.x else it.y  }
+            mirror(graph, index.getTopLevelNodes(group, mirrorPoolNodes), axis, mirrorAxis, isMirrorPoolNode, { it.type.isComplex() })
         }
     }
 
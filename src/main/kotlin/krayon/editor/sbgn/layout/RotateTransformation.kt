@@ -29,25 +29,14 @@ object RotateTransformation {
     }
 
     fun rotate(graph: IGraph, rotationNodes: Iterable<INode>, direction:RotationDirection, renderContext:IRenderContext) {
-        val isRotationNode = rotationNodes.toHashSet().predicate()
-        val rotationPool = mutableMapOf<INode?, MutableSet<INode>>()
-        graph.nodes.forEach { node ->
-            if(isRotationNode(node)) {
-                var parent = graph.getParent(node)
-                while(parent != null && isRotationNode(parent)) {
-                    parent = graph.getParent(parent)
-                }
-                val rotationPoolNodes = (rotationPool[parent] ?: hashSetOf()).apply { add(node) }
-                rotationPool[parent] = rotationPoolNodes
-            }
-        }
-        rotationPool.forEach { group, rotationPoolNodes ->
+        val index = TransformationIndex(graph, rotationNodes)
+        val rotationPoint = calcRotationPoint(graph, index)
+        index.pools.forEach { group, rotationPoolNodes ->
             val isRotationPoolNode = rotationPoolNodes.predicate()
-            val rotationPoint = calcRotationPoint(graph, isRotationNode)
 
             rotationPoolNodes.forEach { rotateOrientation(it, direction) }
 
-            rotate(graph, group, rotationPoint, direction, isRotationPoolNode,
+            rotate(graph, index.getTopLevelNodes(group, rotationPoolNodes), rotationPoint, direction, isRotationPoolNode,
                     { it.orientation == null && it.type != SbgnType.SUBMAP && it.type != SbgnType.COMPARTMENT }, { it.type.isComplex() },
                     renderContext)
         }
@@ -76,15 +65,19 @@ object RotateTransformation {
         }
     }
 
-    private fun calcRotationPoint(graph: IGraph, isRotationNode: NodePredicate): PointD {
-        val connectionEdges = graph.edges.filter {
-            isRotationNode(it.sourceNode) && !isRotationNode(it.targetNode) ||
-                    !isRotationNode(it.sourceNode) && isRotationNode(it.targetNode) }
-        val pivotNodes = connectionEdges.map {
-            if(isRotationNode(it.sourceNode)) it.targetNode else it.sourceNode
-        }.toSet()
+    private fun calcRotationPoint(graph: IGraph, index: TransformationIndex): PointD {
+        val pivotNodes = index.getConnectingEdges().mapNotNullTo(HashSet()) { edge ->
+            if(index.nodeSet.contains(edge.sourceNode)) edge.targetNode else edge.sourceNode
+        }
         return if(pivotNodes.size == 1) pivotNodes.first().center
-        else graph.getBounds(isRotationNode, includeBends = false, includeLabels = false).center
+        else graph.getBounds(index.nodeSet, includeBends = false, includeLabels = false).center
+    }
+
+    private fun calcRotationDelta(location:PointD, rotationPoint: PointD, direction: RotationDirection):PointD {
+        return if (direction == RotationDirection.CLOCKWISE)
+            (location - rotationPoint).let { PointD(-it.y, it.x) - it }
+        else
+            (location - rotationPoint).let { PointD(it.y, -it.x) - it }
     }
 
     fun rotateNode(graph:IGraph, node:INode, renderContext: IRenderContext) {
@@ -93,10 +86,7 @@ object RotateTransformation {
     }
 
     private fun rotateNode(graph: IGraph, node:INode, rotationPoint:PointD, direction:RotationDirection, hasFixedAspectRatio:NodePredicate, isFixedGroup:NodePredicate, renderContext: IRenderContext?) {
-        val delta = if(direction == RotationDirection.CLOCKWISE)
-            (node.center - rotationPoint).let { PointD(-it.y, it.x) - it }
-        else
-            (node.center - rotationPoint).let { PointD(it.y, -it.x) - it }
+        val delta = calcRotationDelta(node.center, rotationPoint, direction)
 
         if(hasFixedAspectRatio(node)) {
             graph.setNodeLayout(node, node.layout.translate(delta))
@@ -111,11 +101,7 @@ object RotateTransformation {
         }
         else {
             val portLocationMap = node.ports.map { port ->
-                val portDelta = if (direction == RotationDirection.CLOCKWISE)
-                    (port.location - rotationPoint).let { PointD(-it.y, it.x) - it }
-                else
-                    (port.location - rotationPoint).let { PointD(it.y, -it.x) - it }
-                port to portDelta + port.location
+                port to calcRotationDelta(port.location, rotationPoint, direction) + port.location
             }
             val labelRatioPointMap = node.labels.map { label ->
                 val ratioPoint = node.layout.convertToRatioPoint(label.layout.center)
@@ -154,26 +140,18 @@ object RotateTransformation {
                 }
             }
             else {
-                rotate(graph, node, rotationPoint, direction, { true }, hasFixedAspectRatio, isFixedGroup, renderContext)
+                rotate(graph, graph.getChildren(node), rotationPoint, direction, { true }, hasFixedAspectRatio, isFixedGroup, renderContext)
             }
         }
     }
 
-    private fun rotate(graph: IGraph, root:INode?, rotationPoint:PointD, direction:RotationDirection, isRotationNode:NodePredicate, hasFixedAspectRatio:NodePredicate, isFixedGroup:NodePredicate, renderContext:IRenderContext?) {
-        graph.getChildren(root).forEach { node ->
-            if(isRotationNode(node)) {
-                rotateNode(graph, node, rotationPoint, direction, hasFixedAspectRatio, isFixedGroup, renderContext)
-                graph.outEdgesAt(node).forEach { edge ->
-                    if(isRotationNode(edge.targetNode) && edge.bends.any()) {
-                        edge.bends.toList().forEach { bend ->
-                            val bendDelta = if(direction == RotationDirection.CLOCKWISE)
-                                (bend.location - rotationPoint).let { PointD(-it.y, it.x) - it }
-                            else
-                                (bend.location - rotationPoint).let { PointD(it.y, -it.x) - it }
-                            graph.beginEdit(bend).use {
-                                graph.setBendLocation(bend, bend.location + bendDelta)
-                            }
-                        }
+    private fun rotate(graph: IGraph, nodes:Iterable<INode>, rotationPoint:PointD, direction:RotationDirection, isRotationNode:NodePredicate, hasFixedAspectRatio:NodePredicate, isFixedGroup:NodePredicate, renderContext:IRenderContext?) {
+        nodes.forEach { node ->
+            rotateNode(graph, node, rotationPoint, direction, hasFixedAspectRatio, isFixedGroup, renderContext)
+            graph.outEdgesAt(node).forEach { edge ->
+                if(isRotationNode(edge.targetNode) && edge.bends.any()) {
+                    edge.bends.toList().forEach { bend ->
+                        graph.setBendLocation(bend, bend.location + calcRotationDelta(bend.location, rotationPoint, direction))
                     }
                 }
             }
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.layout
+
+import com.yworks.yfiles.graph.IEdge
+import com.yworks.yfiles.graph.IGraph
+import com.yworks.yfiles.graph.INode
+
+/**
+ * Lookups on the nodes of a transformation that are computed once from the nodes and their adjacent edges,
+ * so that a transformation never needs to visit the whole graph.
+ */
+internal class TransformationIndex(val graph: IGraph, nodes: Iterable<INode>) {
+
+    val nodeSet = nodes.toHashSet()
+
+    /**
+     * transformed nodes grouped by their closest ancestor that is not transformed itself (null for the root).
+     */
+    val pools = LinkedHashMap<INode?, MutableSet<INode>>()
+
+    init {
+        nodeSet.forEach { node ->
+            var parent = graph.getParent(node)
+            while(parent != null && nodeSet.contains(parent)) {
+                parent = graph.getParent(parent)
+            }
+            pools.getOrPut(parent) { LinkedHashSet() }.add(node)
+        }
+    }
+
+    /**
+     * pool nodes that are direct children of the pool's group. Nested pool nodes are reached by recursion.
+     */
+    fun getTopLevelNodes(group: INode?, pool: Set<INode>) = pool.filter { graph.getParent(it) == group }
+
+    /**
+     * edges having exactly one end node in the given node set.
+     */
+    fun getConnectingEdges(nodes: Set<INode> = nodeSet):List<IEdge> {
+        val connectingEdges = mutableListOf<IEdge>()
+        nodes.forEach { node ->
+            graph.edgesAt(node).forEach { edge ->
+                if(!nodes.contains(getOppositeNode(edge, node))) connectingEdges.add(edge)
+            }
+        }
+        return connectingEdges
+    }
+
+    fun getOppositeNode(edge: IEdge, node: INode):INode? = if(edge.sourceNode == node) edge.targetNode else edge.sourceNode
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.model
+
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.graph.styles.INodeStyle
+import com.yworks.yfiles.geometry.SizeD
+import com.yworks.yfiles.graph.labelmodels.ILabelModelParameter
+import com.yworks.yfiles.graph.styles.ILabelStyle
+import com.yworks.yfiles.utils.IEventListener
+import krayon.editor.base.model.ItemDataChanges
+import krayon.editor.base.util.BoundedUndoEngine
+import krayon.editor.base.util.TrailingUndoUnit
+import java.util.IdentityHashMap
+import javax.swing.SwingUtilities
+
+/**
+ * Structural identity of an EPN: name, state variables and units of information (except N:2), and for complexes
+ * the signatures of all members. Hash is computed once.
+ */
+class CloneSignature(val name:String?, val auxTexts:List<String>, val members:Map<CloneSignature, Int>) {
+    private val hash = 961 * (name?.hashCode() ?: 0) + 31 * auxTexts.hashCode() + members.hashCode()
+
+    override fun hashCode() = hash
+
+    override fun equals(other: Any?): Boolean {
+        return this === other || other is CloneSignature && hash == other.hash && name == other.name &&
+                auxTexts == other.auxTexts && members == other.members
+    }
+}
+
+/**
+ * Groups clone-capable nodes of a graph by (parent, type, signature). Groups with more than one node need clone markers.
+ * The index listens to graph changes and recomputes signatures only for affected nodes and their ancestors.
+ * Type changes, also those made by undo and redo, do not raise graph events. They are caught via [ItemDataChanges].
+ * In live mode, clone markers of affected nodes are updated right after each change, and clone marker labels of nodes
+ * that lose their marker are removed. The updates join the undo step of the change that caused them.
+ */
+class CloneMarkerIndex(val graph: IGraph) {
+
+    data class CloneGroupKey(val parent:INode?, val type:SbgnType, val signature:CloneSignature)
+
+    private val signatures = HashMap<INode, CloneSignature>()
+    private val groupKeys = HashMap<INode, CloneGroupKey>()
+    private val groups = HashMap<CloneGroupKey, MutableSet<INode>>()
+    private val dirtyNodes = LinkedHashSet<INode>()
+    /** node of the SBGN data of indexed nodes and their labels */
+    private val dataOwners = IdentityHashMap<Any, INode>()
+    private val ownedData = HashMap<INode, List<Any>>()
+    private var isUpdateScheduled = false
+
+    var isLiveMode = false
+        set(value) {
+            field = value
+            if(value) update()
+        }
+
+    private val nodeCreatedListener = IEventListener<ItemEventArgs<INode>> { _, args -> invalidate(args.item) }
+    private val nodeRemovedListener = IEventListener<NodeEventArgs> { _, args ->
+        dirtyNodes += args.item
+        args.parent?.let { invalidate(it) }
+        scheduleUpdate()
+    }
+    private val parentChangedListener = IEventListener<NodeEventArgs> { _, args ->
+        invalidate(args.item)
+        args.parent?.let { invalidate(it) }
+    }
+    private val nodeStyleChangedListener = IEventListener<ItemChangedEventArgs<INode, INodeStyle>> { _, args -> invalidate(args.item) }
+    private val labelAddedListener = IEventListener<ItemEventArgs<ILabel>> { _, args -> (args.item.owner as? INode)?.let { invalidate(it) } }
+    private val labelRemovedListener = IEventListener<LabelEventArgs> { _, args -> (args.owner as? INode)?.let { invalidate(it) } }
+    private val labelTextChangedListener = IEventListener<ItemChangedEventArgs<ILabel, String>> { _, args -> (args.item.owner as? INode)?.let { invalidate(it) } }
+    private val itemDataListener:(Any) -> Unit = { source ->
+        val node = when(source) {
+            is ILabel -> source.owner as? INode
+            is INode -> source
+            else -> dataOwners[source]
+        }
+        if(node != null && graph.contains(node)) invalidate(node)
+    }
+    private val undoEngine = graph.undoEngine as? BoundedUndoEngine
+
+    init {
+        graph.addNodeCreatedListener(nodeCreatedListener)
+        graph.addNodeRemovedListener(nodeRemovedListener)
+        graph.addParentChangedListener(parentChangedListener)
+        graph.addNodeStyleChangedListener(nodeStyleChangedListener)
+        graph.addLabelAddedListener(labelAddedListener)
+        graph.addLabelRemovedListener(labelRemovedListener)
+        graph.addLabelTextChangedListener(labelTextChangedListener)
+        ItemDataChanges.addListener(itemDataListener)
+        graph.nodes.forEach { dirtyNodes += it }
+    }
+
+    /**
+     * Detaches the index from its graph. Needed for indexes that do not live as long as the graph.
+     */
+    fun dispose() {
+        graph.removeNodeCreatedListener(nodeCreatedListener)
+        graph.removeNodeRemovedListener(nodeRemovedListener)
+        graph.removeParentChangedListener(parentChangedListener)
+        graph.removeNodeStyleChangedListener(nodeStyleChangedListener)
+        graph.removeLabelAddedListener(labelAddedListener)
+        graph.removeLabelRemovedListener(labelRemovedListener)
+        graph.removeLabelTextChangedListener(labelTextChangedListener)
+        ItemDataChanges.removeListener(itemDataListener)
+    }
+
+    /**
+     * Returns all nodes that share parent, type and signature with the given node, including the node itself.
+     */
+    fun getCloneGroup(node: INode):Set<INode> {
+        update()
+        return groupKeys[node]?.let { groups[it] } ?: emptySet()
+    }
+
+    fun hasClones(node: INode) = getCloneGroup(node).size > 1
+
+    /**
+     * Returns the key of the clone group of the given node, or null if the node cannot carry a clone marker.
+     */
+    fun getCloneGroupKey(node: INode):CloneGroupKey? {
+        update()
+        return groupKeys[node]
+    }
+
+    fun update() {
+        if(dirtyNodes.isEmpty()) return
+        val nodes = dirtyNodes.toList()
+        dirtyNodes.clear()
+        nodes.forEach { node ->
+            signatures.remove(node)
+            ownedData.remove(node)?.forEach { if(dataOwners[it] === node) dataOwners.remove(it) }
+        }
+
+        val affectedKeys = HashSet<CloneGroupKey>()
+        for (node in nodes) {
+            groupKeys.remove(node)?.let { key ->
+                groups[key]?.let { group ->
+                    group.remove(node)
+                    if(group.isEmpty()) groups.remove(key)
+                }
+                affectedKeys += key
+            }
+            if(graph.contains(node)) registerData(node)
+            if(graph.contains(node) && isCloneCandidate(node)) {
+                val key = CloneGroupKey(graph.getParent(node), node.type, getSignature(node))
+                groupKeys[node] = key
+                groups.getOrPut(key) { LinkedHashSet() }.add(node)
+                affectedKeys += key
+            }
+        }
+        if(isLiveMode) applyCloneMarkers(nodes, affectedKeys)
+    }
+
+    private fun registerData(node: INode) {
+        val data = ArrayList<Any>()
+        node.tag?.let { data += it }
+        node.labels.forEach { label -> label.tag?.let { data += it } }
+        data.forEach { dataOwners[it] = node }
+        ownedData[node] = data
+    }
+
+    private fun applyCloneMarkers(nodes:List<INode>, affectedKeys:Set<CloneGroupKey>) {
+        val changedNodes = ArrayList<INode>()
+        for (node in nodes) {
+            if(graph.contains(node) && !groupKeys.containsKey(node) && node.isClone) changedNodes += node
+        }
+        for (key in affectedKeys) {
+            groups[key]?.let { group ->
+                val isClone = group.size > 1
+                group.forEach { if(it.isClone != isClone) changedNodes += it }
+            }
+        }
+        if(changedNodes.isEmpty()) return
+        val unit = CloneMarkerUndoUnit(changedNodes)
+        unit.redoDerived()
+        // recording would drop the redo steps, markers are part of the steps already in that case
+        if(undoEngine?.canRedo() == false) undoEngine.addUnit(unit)
+    }
+
+    private inner class CloneMarkerUndoUnit(val nodes:List<INode>) : TrailingUndoUnit("Clone Markers") {
+        private val oldValues = nodes.map { it.isClone }
+        /** clone marker labels removed from nodes that lost their marker */
+        private var removedLabels = emptyList<RemovedLabel>()
+
+        override fun undoDerived() {
+            // the unit restores the labels itself, so their removal and re-creation is not recorded
+            runUnrecorded { removedLabels = removedLabels.map { it.restore() } }
+            nodes.forEachIndexed { index, node -> node.isClone = oldValues[index] }
+        }
+
+        public override fun redoDerived() {
+            nodes.forEachIndexed { index, node -> node.isClone = !oldValues[index] }
+            runUnrecorded {
+                removedLabels = nodes.filter { !it.isClone && graph.contains(it) }.flatMap { node ->
+                    node.labels.filter { it.type == SbgnType.CLONE_LABEL }.map { RemovedLabel(it) }
+                }
+                removedLabels.forEach { graph.remove(it.label) }
+            }
+        }
+    }
+
+    private inner class RemovedLabel(val label: ILabel) {
+        private val owner = label.owner
+        private val text = label.text
+        private val layoutParameter: ILabelModelParameter = label.layoutParameter
+        private val style: ILabelStyle = label.style
+        private val preferredSize: SizeD = label.preferredSize
+        private val tag = label.tag
+
+        fun restore() = RemovedLabel(graph.addLabel(owner, text, layoutParameter, style, preferredSize, tag))
+    }
+
+    private fun runUnrecorded(action: () -> Unit) {
+        if(undoEngine != null) undoEngine.runUnrecorded(action) else action()
+    }
+
+    private fun isCloneCandidate(node: INode) = node.type.canCarryCloneMarker() && graph.getParent(node)?.type != SbgnType.COMPLEX
+
+    private fun invalidate(node: INode) {
+        var current:INode? = node
+        while(current != null && dirtyNodes.add(current)) {
+            current = if(graph.contains(current)) graph.getParent(current) else null
+        }
+        scheduleUpdate()
+    }
+
+    private fun scheduleUpdate() {
+        if(isLiveMode && !isUpdateScheduled) {
+            isUpdateScheduled = true
+            SwingUtilities.invokeLater {
+                isUpdateScheduled = false
+                update()
+                graph.invalidateDisplays()
+            }
+        }
+    }
+
+    private fun getSignature(node: INode):CloneSignature {
+        return signatures.getOrPut(node) {
+            val auxTexts = node.labels.filter { label ->
+                (label.type == SbgnType.STATE_VARIABLE || (label.type == SbgnType.UNIT_OF_INFORMATION && label.text != "N:2")) && !label.text.isEmpty()
+            }.map { it.text }.sorted()
+            val members = if(node.type == SbgnType.COMPLEX) {
+                val counts = HashMap<CloneSignature, Int>()
+                graph.getChildren(node).forEach { child ->
+                    val signature = getSignature(child)
+                    counts[signature] = (counts[signature] ?: 0) + 1
+                }
+                counts
+            } else emptyMap<CloneSignature, Int>()
+            CloneSignature(node.getNameLabel()?.text, auxTexts, members)
+        }
+    }
+}
@@ -9,13 +9,12 @@
 
 package krayon.editor.sbgn.model
 
-import com.yworks.yfiles.graph.IEdge
-import com.yworks.yfiles.graph.IGraph
-import com.yworks.yfiles.graph.INode
-import com.yworks.yfiles.graph.IPort
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.utils.IEventListener
 import com.yworks.yfiles.view.input.IInputModeContext
 import krayon.editor.base.model.IEdgeCreationHint
 import krayon.editor.base.model.IModelConstraintManager
+import krayon.editor.base.util.getAncestors
 import krayon.editor.base.util.isAncestor
 import krayon.editor.sbgn.ui.SbgnGraphComponent
 
@@ -33,6 +32,126 @@ object SbgnConstraintManager : IModelConstraintManager<SbgnType> {
     }
 
     var constraintLevel = ConstraintLevel.STRICT
+        set(value) {
+            field = value
+            interactionCache?.clear()
+        }
+
+    private enum class Query { CREATION_HINTS, CONVERSION_HINTS, NODE_CONVERSION_TYPES, VALID_TARGET, VALID_SOURCE }
+    private data class QueryKey(val query: Query, val a:Any?, val b:Any? = null, val c:Any? = null, val d:Any? = null, val e:Any? = null)
+
+    /**
+     * Memoized query results for the graph of the current interaction. Any structural change of that graph
+     * clears the results.
+     */
+    private class InteractionCache(val graph:IGraph) {
+        var depth = 0
+        private val results = HashMap<QueryKey, Any>()
+
+        private val nodeCreatedListener = IEventListener<ItemEventArgs<INode>> { _, _ -> clear() }
+        private val nodeRemovedListener = IEventListener<NodeEventArgs> { _, _ -> clear() }
+        private val edgeCreatedListener = IEventListener<ItemEventArgs<IEdge>> { _, _ -> clear() }
+        private val edgeRemovedListener = IEventListener<EdgeEventArgs> { _, _ -> clear() }
+        private val edgePortsChangedListener = IEventListener<EdgeEventArgs> { _, _ -> clear() }
+        private val portAddedListener = IEventListener<ItemEventArgs<IPort>> { _, _ -> clear() }
+        private val portRemovedListener = IEventListener<PortEventArgs> { _, _ -> clear() }
+        private val parentChangedListener = IEventListener<NodeEventArgs> { _, _ -> clear() }
+
+        fun install() {
+            graph.addNodeCreatedListener(nodeCreatedListener)
+            graph.addNodeRemovedListener(nodeRemovedListener)
+            graph.addEdgeCreatedListener(edgeCreatedListener)
+            graph.addEdgeRemovedListener(edgeRemovedListener)
+            graph.addEdgePortsChangedListener(edgePortsChangedListener)
+            graph.addPortAddedListener(portAddedListener)
+            graph.addPortRemovedListener(portRemovedListener)
+            graph.addParentChangedListener(parentChangedListener)
+        }
+
+        fun uninstall() {
+            graph.removeNodeCreatedListener(nodeCreatedListener)
+            graph.removeNodeRemovedListener(nodeRemovedListener)
+            graph.removeEdgeCreatedListener(edgeCreatedListener)
+            graph.removeEdgeRemovedListener(edgeRemovedListener)
+            graph.removeEdgePortsChangedListener(edgePortsChangedListener)
+            graph.removePortAddedListener(portAddedListener)
+            graph.removePortRemovedListener(portRemovedListener)
+            graph.removeParentChangedListener(parentChangedListener)
+            results.clear()
+        }
+
+        fun clear() = results.clear()
+
+        @Suppress("UNCHECKED_CAST")
+        fun <R:Any> getOrPut(key:QueryKey, compute:() -> R):R = results.getOrPut(key, compute) as R
+    }
+
+    private var interactionCache:InteractionCache? = null
+
+    override fun beginInteraction(graph: IGraph) {
+        val cache = interactionCache
+        if(cache != null && cache.graph !== graph) {
+            cache.uninstall()
+            interactionCache = null
+        }
+        val activeCache = interactionCache ?: InteractionCache(graph).apply { install() }
+        activeCache.depth++
+        interactionCache = activeCache
+    }
+
+    override fun endInteraction() {
+        interactionCache?.let { cache ->
+            if(--cache.depth <= 0) {
+                cache.uninstall()
+                interactionCache = null
+            }
+        }
+    }
+
+    private fun <R:Any> memoize(graph:IGraph, key:QueryKey, compute:() -> R):R {
+        val cache = interactionCache
+        return if(cache != null && cache.graph === graph) cache.getOrPut(key, compute) else compute()
+    }
+
+    /**
+     * Types that node conversions depend on, besides graph structure: own type, ancestor types, and type and
+     * degree of each incident edge, its port and its opposite node.
+     */
+    private fun getDegreeSignature(graph:IGraph, node:INode):List<Any?> {
+        val signature = mutableListOf<Any?>(node.type)
+        graph.getAncestors(node).mapTo(signature) { it.type }
+        for (edge in graph.edgesAt(node)) {
+            val port = if(edge.sourceNode == node) edge.sourcePort else edge.targetPort
+            val opposite = if(edge.sourceNode == node) edge.targetNode else edge.sourceNode
+            signature += edge.type
+            signature += port.type
+            signature += graph.degree(port)
+            signature += opposite.type
+            signature += graph.getParent(opposite)?.type
+        }
+        return signature
+    }
+
+    /**
+     * What the port related queries read about a node besides the queried types: own and ancestor types, the type of
+     * the queried port, and type, direction and port of each incident edge other than [excludedEdge]. Nodes with equal
+     * signatures get equal answers, so memoized results are shared between them and stay valid when types change.
+     */
+    private fun getPortSignature(graph:IGraph, node:INode, port:IPort?, excludedEdge:IEdge? = null):List<Any?> {
+        val signature = mutableListOf<Any?>(node.type)
+        graph.getAncestors(node).mapTo(signature) { it.type }
+        val ports = node.ports.toList()
+        signature += ports.indexOf(port)
+        ports.mapTo(signature) { it.type }
+        for (edge in graph.edgesAt(node)) {
+            if(edge == excludedEdge) continue
+            val isOutgoing = edge.sourceNode == node
+            signature += edge.type
+            signature += isOutgoing
+            signature += ports.indexOf(if(isOutgoing) edge.sourcePort else edge.targetPort)
+        }
+        return signature
+    }
 
     override fun getPreferredTargetType(graph:IGraph, source:INode, sourcePort:IPort?, arcType: SbgnType): SbgnType {
         val sourceType = source.type
@@ -92,10 +211,16 @@ object SbgnConstraintManager : IModelConstraintManager<SbgnType> {
     }
 
     override fun getEdgeCreationHints(graph:IGraph, source:INode, sourcePort: IPort?):List<IEdgeCreationHint<SbgnType>> {
-        return getEdgeConversionHints(graph, source, sourcePort, null)
+        return memoize(graph, QueryKey(Query.CREATION_HINTS, getPortSignature(graph, source, sourcePort))) { getEdgeConversionHints(graph, source, sourcePort, null) }
     }
 
     override fun getEdgeConversionHints(graph:IGraph, edge:IEdge):List<IEdgeCreationHint<SbgnType>> {
+        val key = QueryKey(Query.CONVERSION_HINTS, edge.type, getPortSignature(graph, edge.sourceNode, edge.sourcePort, edge),
+                getPortSignature(graph, edge.targetNode, edge.targetPort, edge))
+        return memoize(graph, key) { computeEdgeConversionHints(graph, edge) }
+    }
+
+    private fun computeEdgeConversionHints(graph:IGraph, edge:IEdge):List<IEdgeCreationHint<SbgnType>> {
         val sourceHints = getEdgeConversionHints(graph, edge.sourceNode, edge.sourcePort, edge)
         if(constraintLevel == ConstraintLevel.NONE) return sourceHints
 
@@ -182,10 +307,11 @@ object SbgnConstraintManager : IModelConstraintManager<SbgnType> {
         }
     }
 
-    override fun isNodeAcceptingLabel(node:INode, labelType: SbgnType): Boolean {
+    override fun isNodeAcceptingLabel(node:INode, labelType: SbgnType) = isNodeTypeAcceptingLabel(node.type, labelType)
+
+    fun isNodeTypeAcceptingLabel(nodeType: SbgnType, labelType: SbgnType): Boolean {
         if(constraintLevel == ConstraintLevel.NONE && labelType != SbgnType.NAME_LABEL) return true
 
-        val nodeType = node.type
         return when(labelType) {
             SbgnType.UNIT_OF_INFORMATION -> (nodeType.isEPN() && nodeType != SbgnType.SOURCE_AND_SINK) || nodeType == SbgnType.COMPARTMENT || nodeType == SbgnType.PHENOTYPE
             SbgnType.STATE_VARIABLE -> (nodeType.isEPN() && nodeType != SbgnType.SOURCE_AND_SINK) || nodeType == SbgnType.PHENOTYPE
@@ -196,6 +322,10 @@ object SbgnConstraintManager : IModelConstraintManager<SbgnType> {
     }
 
     override fun getNodeConversionTypes(graph:IGraph, node:INode):List<SbgnType> {
+        return memoize(graph, QueryKey(Query.NODE_CONVERSION_TYPES, node, getDegreeSignature(graph, node))) { computeNodeConversionTypes(graph, node) }
+    }
+
+    private fun computeNodeConversionTypes(graph:IGraph, node:INode):List<SbgnType> {
         val allowedTypes = SbgnType.values().filter { nodeType -> nodeType.isNode() &&
                 graph.outEdgesAt(node).all { edge -> isValidSource(graph, edge.targetNode, edge.type, node, nodeType, edge.sourcePort) } &&
                 graph.inEdgesAt(node).all { edge -> isValidTarget(graph, edge.sourceNode, edge.type, node, nodeType, edge.targetPort) }
@@ -212,6 +342,14 @@ object SbgnConstraintManager : IModelConstraintManager<SbgnType> {
     }
 
     override fun isValidTarget(graph:IGraph, source: INode, edgeType: SbgnType, target: INode, targetType: SbgnType, targetPort: IPort?): Boolean {
+        // ancestry of source and target is not part of the signature
+        if(constraintLevel == ConstraintLevel.NONE) return computeIsValidTarget(graph, source, edgeType, target, targetType, targetPort)
+        return memoize(graph, QueryKey(Query.VALID_TARGET, edgeType, source.type, targetType, getPortSignature(graph, target, targetPort))) {
+            computeIsValidTarget(graph, source, edgeType, target, targetType, targetPort)
+        }
+    }
+
+    private fun computeIsValidTarget(graph:IGraph, source: INode, edgeType: SbgnType, target: INode, targetType: SbgnType, targetPort: IPort?): Boolean {
         if(constraintLevel == ConstraintLevel.NONE) return !graph.isAncestor(source,target) && !graph.isAncestor(target,source)
         val edgeCheck = when {
             graph.getParent(target)?.type?.isComplex() == true -> false  //complex member cannot be targets
@@ -242,6 +380,12 @@ object SbgnConstraintManager : IModelConstraintManager<SbgnType> {
     }
 
     override fun isValidSource(graph:IGraph, target: INode, edgeType: SbgnType, source:INode, sourceType:SbgnType, sourcePort: IPort?): Boolean {
+        return memoize(graph, QueryKey(Query.VALID_SOURCE, edgeType, target.type, sourceType, getPortSignature(graph, source, sourcePort))) {
+            computeIsValidSource(graph, target, edgeType, source, sourceType, sourcePort)
+        }
+    }
+
+    private fun computeIsValidSource(graph:IGraph, target: INode, edgeType: SbgnType, source:INode, sourceType:SbgnType, sourcePort: IPort?): Boolean {
         if(constraintLevel == ConstraintLevel.NONE) return true
         val edgeCheck = when {
             edgeType == SbgnType.CONSUMPTION -> sourceType.isEPN()
@@ -12,53 +12,162 @@ package krayon.editor.sbgn.model
 import com.yworks.yfiles.graph.*
 import com.yworks.yfiles.utils.ICloneable
 import krayon.editor.base.model.IItemType
+import krayon.editor.base.model.ItemDataChanges
 import krayon.editor.base.style.GraphStyle
-
-class SbgnData(var type: SbgnType = SbgnType.NO_TYPE, var property:HashMap<SbgnPropertyKey, Any?>? = null) : ICloneable, Cloneable, ILookup {
+import krayon.editor.base.util.BoundedUndoEngine
+import java.lang.ref.WeakReference
+import java.util.*
+
+/**
+ * Type, style and properties of an SBGN model item. Properties are kept in a dense array indexed by
+ * [SbgnPropertyKey.ordinal]. The array is never modified once assigned, so clones and memento states share it and a
+ * write replaces it (copy-on-write). Sharing needs no bookkeeping on the source, clones may be taken on any thread.
+ * A null value means the property is not set. Type, style and property changes are counted by [ItemDataChanges].
+ */
+class SbgnData(type: SbgnType = SbgnType.NO_TYPE, property:HashMap<SbgnPropertyKey, Any?>? = null) : ICloneable, Cloneable, ILookup {
+
+    var type: SbgnType = type
+        set(value) {
+            if(field == value) return
+            field = value
+            hash = 0
+            ItemDataChanges.fireChanged(this)
+        }
 
     var style:GraphStyle<SbgnType>? = null
+        set(value) {
+            if(field === value) return
+            field = value
+            ItemDataChanges.fireChanged(this)
+        }
+
+    private var values = EMPTY_VALUES
+    /** cached hash code, 0 if not computed yet */
+    private var hash = 0
+    /** map view of [values], valid while its source is the current values array */
+    private var propertyMap:PropertyMap? = null
+
+    init {
+        property?.forEach { (key, value) -> set(key, value) }
+    }
+
+    /**
+     * all set properties. The map writes through to this data via put, putAll, remove and clear. It is created on
+     * first access and reused until the properties change.
+     */
+    var property:HashMap<SbgnPropertyKey, Any?>?
+        get() = propertyMap?.takeIf { it.source === values } ?: PropertyMap().also { propertyMap = it }
+        set(value) {
+            val newValues = arrayOfNulls<Any?>(KEYS.size)
+            value?.forEach { (key, propertyValue) -> newValues[key.ordinal] = propertyValue }
+            values = newValues
+            hash = 0
+            ItemDataChanges.fireChanged(this)
+        }
+
+    /** number of set properties */
+    val propertyCount get() = values.count { it != null }
+
+    operator fun get(key: SbgnPropertyKey):Any? = values[key.ordinal]
+
+    operator fun set(key: SbgnPropertyKey, value:Any?) {
+        if(values[key.ordinal] == value) return
+        val newValues = values.copyOf()
+        newValues[key.ordinal] = value
+        values = newValues
+        hash = 0
+        ItemDataChanges.fireChanged(this)
+    }
+
+    /**
+     * Makes this data a copy of the given data. Property storage gets shared.
+     */
+    fun assign(other: SbgnData) {
+        type = other.type
+        style = other.style
+        values = other.values
+        hash = other.hash
+        ItemDataChanges.fireChanged(this)
+    }
 
     override fun <T : Any?> lookup(type: Class<T>?): T? {
         @Suppress("UNCHECKED_CAST")
         return when (type) {
-            IMementoSupport::class.java -> SbgnInfoMementoSupport() as T
+            IMementoSupport::class.java -> mementoSupport as T
             else -> null
         }
     }
 
-    override fun clone(): Any {
-        val copy = super.clone() as SbgnData
-        @Suppress("UNCHECKED_CAST")
-        if(property != null) copy.property = property!!.clone() as HashMap<SbgnPropertyKey, Any?>
-        return copy
-    }
+    override fun clone(): Any = (super.clone() as SbgnData).also { it.propertyMap = null }
 
     override fun equals(other: Any?): Boolean {
-        return other is SbgnData && type == other.type && SbgnPropertyKey.values().all { isPropertyEqual(it, other) }
-    }
-
-    private fun isPropertyEqual(key: SbgnPropertyKey, other: SbgnData):Boolean {
-        return (property?.get(key) ?: false) == (other.property?.get(key) ?: false)
+        if(this === other) return true
+        if(other !is SbgnData || type != other.type) return false
+        if(values === other.values) return true
+        if(hash != 0 && other.hash != 0 && hash != other.hash) return false
+        return values.indices.all { (values[it] ?: false) == (other.values[it] ?: false) }
     }
 
     override fun hashCode(): Int {
-        var result = type.hashCode()
-        result = 31 * result + (property?.hashCode() ?: 0)
+        // single field, so a racy read sees either 0 or the complete hash
+        var result = hash
+        if(result == 0) {
+            result = type.hashCode()
+            values.forEach { result = 31 * result + (it ?: false).hashCode() }
+            hash = result
+        }
         return result
     }
+
+    private inner class PropertyMap : HashMap<SbgnPropertyKey, Any?>() {
+        /** values array this map reflects */
+        var source = values
+
+        init {
+            values.forEachIndexed { index, value -> if(value != null) super.put(KEYS[index], value) }
+        }
+
+        override fun put(key: SbgnPropertyKey, value: Any?):Any? {
+            update { set(key, value) }
+            return super.put(key, value)
+        }
+
+        override fun putAll(from: Map<out SbgnPropertyKey, Any?>) {
+            from.forEach { (key, value) -> put(key, value) }
+        }
+
+        override fun remove(key: SbgnPropertyKey):Any? {
+            update { set(key, null) }
+            return super.remove(key)
+        }
+
+        override fun clear() {
+            update { property = null }
+            super.clear()
+        }
+
+        /** applies a write through, the map stays current if it was current before */
+        private fun update(write:() -> Unit) {
+            val isCurrent = source === values
+            write()
+            if(isCurrent) source = values
+        }
+    }
+
+    companion object {
+        private val KEYS = SbgnPropertyKey.values()
+        private val EMPTY_VALUES = arrayOfNulls<Any?>(KEYS.size)
+        private val mementoSupport = SbgnInfoMementoSupport()
+    }
 }
 
 fun IModelItem.getSbgnProperty(key: SbgnPropertyKey):Any? {
-    if(tag !is SbgnData) return null
-    else if((tag as SbgnData).property == null) (tag as SbgnData).property = HashMap()
-    return (tag as SbgnData).property!![key]
+    return (tag as? SbgnData)?.get(key)
 }
 
 fun IModelItem.setSbgnProperty(key: SbgnPropertyKey, value:Any?) {
     if(tag !is SbgnData) tag = SbgnData()
-    val info = tag as SbgnData
-    if(info.property == null) info.property = HashMap()
-    info.property!![key] = value
+    (tag as SbgnData)[key] = value
 }
 
 var IModelItem.graphStyle:GraphStyle<SbgnType>?
@@ -92,25 +201,43 @@ private fun IModelItem._getSbgnType(): SbgnType {
 @Suppress("FunctionName")
 private fun IModelItem._setSbgnType(type: SbgnType) {
     when {
-        type == SbgnType.NO_TYPE -> tag = null
-        tag !is SbgnData -> tag = SbgnData(type)
+        type == SbgnType.NO_TYPE -> {
+            tag = null
+            ItemDataChanges.fireChanged(this)
+        }
+        tag !is SbgnData -> {
+            tag = SbgnData(type)
+            ItemDataChanges.fireChanged(this)
+        }
         else -> (tag as SbgnData).type = type
     }
 }
 
+/**
+ * States are interned, so that equal states of many items or of many undo steps share one instance. Only new states
+ * are accounted as undo memory.
+ */
 class SbgnInfoMementoSupport : IMementoSupport {
+
+    private val states = WeakHashMap<SbgnData, WeakReference<SbgnData>>()
+
     override fun applyState(subject: Any?, state: Any?) {
         if(subject is SbgnData && state is SbgnData) {
-            subject.type = state.type
-            subject.property = state.property
-            subject.style = state.style
+            subject.assign(state)
         }
     }
 
     override fun getState(subject: Any): Any? {
-        return (subject as? SbgnData)?.clone()
+        val data = subject as? SbgnData ?: return null
+        states[data]?.get()?.let { if(it.style === data.style) return it }
+        val state = data.clone() as SbgnData
+        states[state] = WeakReference(state)
+        BoundedUndoEngine.allocate(estimateBytes(state))
+        return state
     }
 
+    private fun estimateBytes(state: SbgnData) = 64L + 24L * state.propertyCount
+
     override fun stateEquals(state1: Any?, state2: Any?): Boolean {
         return if(state1 is SbgnData && state2 is SbgnData) state1 == state2 else false
     }
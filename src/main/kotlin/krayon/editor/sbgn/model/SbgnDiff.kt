@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.model
+
+import com.yworks.yfiles.graph.IEdge
+import com.yworks.yfiles.graph.IGraph
+import com.yworks.yfiles.graph.ILabelOwner
+import com.yworks.yfiles.graph.IModelItem
+import com.yworks.yfiles.graph.INode
+import krayon.editor.base.style.GraphStyle
+
+/**
+ * Structural comparison of two versions of an SBGN map.
+ *
+ * Nodes are matched by glyph id first. The remaining nodes are put into hash buckets by signature, and buckets holding
+ * exactly one node of each version are matched. Signatures are tried from strict to loose: type, name and auxiliary
+ * units together with those of the neighbours, then together with already matched neighbours and parent (revisited
+ * for the neighbours and children of each new match), then on their own. Buckets left with the same number of nodes on both sides are matched
+ * in reading order. Arcs are matched by id, then by type and matched end nodes. No pairs of items are compared, so
+ * matching stays near-linear in the size of the maps.
+ */
+class SbgnDiff(val oldGraph: IGraph, val newGraph: IGraph,
+               oldIds: Map<IModelItem, String> = emptyMap(), newIds: Map<IModelItem, String> = emptyMap()) {
+
+    enum class ChangeType { ADDED, REMOVED, MOVED, RESTYLED, MODIFIED }
+
+    /** change of a node or arc. [oldItem] is null for added items, [newItem] for removed ones. */
+    class Change(val oldItem: IModelItem?, val newItem: IModelItem?, val types: Set<ChangeType>)
+
+    private data class BaseSignature(val type: SbgnType, val name: String?, val auxTexts: List<String>)
+
+    private val oldToNew = HashMap<IModelItem, IModelItem>()
+    private val newToOld = HashMap<IModelItem, IModelItem>()
+    /** number of the matched pair, shared by both items of a pair */
+    private val pairIds = HashMap<IModelItem, Int>()
+    private val baseSignatures = HashMap<INode, BaseSignature>()
+    private val changesByOld = HashMap<IModelItem, Change>()
+    private val changesByNew = HashMap<IModelItem, Change>()
+
+    val changes: List<Change>
+
+    init {
+        oldGraph.nodes.forEach { baseSignatures[it] = createBaseSignature(it) }
+        newGraph.nodes.forEach { baseSignatures[it] = createBaseSignature(it) }
+        matchNodes(oldIds, newIds)
+        matchEdges(oldIds, newIds)
+        changes = collectChanges()
+        changes.forEach { change ->
+            change.oldItem?.let { changesByOld[it] = change }
+            change.newItem?.let { changesByNew[it] = change }
+        }
+    }
+
+    fun getNewItem(oldItem: IModelItem) = oldToNew[oldItem]
+
+    fun getOldItem(newItem: IModelItem) = newToOld[newItem]
+
+    /** change of the given item of either version, or null if it did not change */
+    fun getChange(item: IModelItem) = changesByOld[item] ?: changesByNew[item]
+
+    fun count(type: ChangeType) = changes.count { type in it.types }
+
+    private fun match(oldItem: IModelItem, newItem: IModelItem) {
+        oldToNew[oldItem] = newItem
+        newToOld[newItem] = oldItem
+        val pairId = pairIds.size / 2
+        pairIds[oldItem] = pairId
+        pairIds[newItem] = pairId
+    }
+
+    private fun matchNodes(oldIds: Map<IModelItem, String>, newIds: Map<IModelItem, String>) {
+        val newById = HashMap<String, INode>()
+        newGraph.nodes.forEach { node -> newIds[node]?.let { newById[it] = node } }
+        oldGraph.nodes.forEach { node ->
+            oldIds[node]?.let { newById[it] }?.let { if(it !in newToOld) match(node, it) }
+        }
+        matchUnique { graph, node -> Pair(baseSignatures[node], getNeighbourSignature(graph, node)) }
+        matchAnchored()
+        matchUnique { _, node -> baseSignatures[node] }
+        matchInOrder { _, node -> baseSignatures[node] }
+    }
+
+    /**
+     * matches the unmatched nodes whose signature occurs exactly once in each version. A null signature never matches.
+     */
+    private fun matchUnique(signature: (IGraph, INode) -> Any?) {
+        val oldBuckets = createBuckets(oldGraph, oldToNew, signature)
+        val newBuckets = createBuckets(newGraph, newToOld, signature)
+        oldBuckets.forEach { key, oldNodes ->
+            val newNodes = newBuckets[key]
+            if(oldNodes.size == 1 && newNodes?.size == 1) match(oldNodes[0], newNodes[0])
+        }
+    }
+
+    /**
+     * matches the unmatched nodes whose anchored signature occurs exactly once in each version, until no new matches
+     * turn up. A match only changes the signatures of the unmatched neighbours and children of the pair, so only their
+     * buckets are checked again.
+     */
+    private fun matchAnchored() {
+        val oldBuckets = AnchoredBuckets(oldGraph, oldToNew)
+        val newBuckets = AnchoredBuckets(newGraph, newToOld)
+        val pendingKeys = LinkedHashSet<Any>(oldBuckets.keys)
+        while(pendingKeys.isNotEmpty()) {
+            val key = pendingKeys.first()
+            pendingKeys.remove(key)
+            val oldNode = oldBuckets.getUnique(key) ?: continue
+            val newNode = newBuckets.getUnique(key) ?: continue
+            match(oldNode, newNode)
+            oldBuckets.onMatched(oldNode, pendingKeys)
+            newBuckets.onMatched(newNode, pendingKeys)
+        }
+    }
+
+    /** unmatched nodes of one version by anchored signature, see [matchAnchored] */
+    private inner class AnchoredBuckets(val graph: IGraph, val matched: Map<IModelItem, IModelItem>) {
+        private val buckets = HashMap<Any, MutableSet<INode>>()
+        private val signatures = HashMap<INode, Any>()
+
+        val keys:Set<Any> get() = buckets.keys
+
+        init {
+            graph.nodes.forEach { if(it !in matched) update(it, null) }
+        }
+
+        fun getUnique(key: Any) = buckets[key]?.singleOrNull()
+
+        /** removes the matched node and updates its unmatched neighbours and children. Changed keys are added. */
+        fun onMatched(node: INode, changedKeys: MutableSet<Any>) {
+            remove(node, changedKeys)
+            graph.edgesAt(node).forEach { edge ->
+                val neighbour = (if(edge.sourcePort.owner == node) edge.targetPort.owner else edge.sourcePort.owner) as? INode
+                if(neighbour != null && neighbour !in matched) update(neighbour, changedKeys)
+            }
+            graph.getChildren(node).forEach { if(it !in matched) update(it, changedKeys) }
+        }
+
+        private fun update(node: INode, changedKeys: MutableSet<Any>?) {
+            remove(node, changedKeys)
+            getAnchoredSignature(graph, node)?.let { key ->
+                signatures[node] = key
+                buckets.getOrPut(key) { LinkedHashSet() } += node
+                changedKeys?.add(key)
+            }
+        }
+
+        private fun remove(node: INode, changedKeys: MutableSet<Any>?) {
+            val key = signatures.remove(node) ?: return
+            buckets[key]?.let {
+                it -= node
+                if(it.isEmpty()) buckets.remove(key)
+            }
+            // the bucket may have become unique
+            changedKeys?.add(key)
+        }
+    }
+
+    /**
+     * matches the unmatched nodes of buckets of the same size in both versions, top to bottom and left to right.
+     */
+    private fun matchInOrder(signature: (IGraph, INode) -> Any?) {
+        val oldBuckets = createBuckets(oldGraph, oldToNew, signature)
+        val newBuckets = createBuckets(newGraph, newToOld, signature)
+        val readingOrder = compareBy<INode>({ it.layout.y }, { it.layout.x })
+        oldBuckets.forEach { key, oldNodes ->
+            val newNodes = newBuckets[key]
+            if(newNodes != null && oldNodes.size == newNodes.size) {
+                oldNodes.sortedWith(readingOrder).zip(newNodes.sortedWith(readingOrder)).forEach { (oldNode, newNode) -> match(oldNode, newNode) }
+            }
+        }
+    }
+
+    private fun createBuckets(graph: IGraph, matched: Map<IModelItem, IModelItem>, signature: (IGraph, INode) -> Any?):Map<Any, List<INode>> {
+        val buckets = HashMap<Any, MutableList<INode>>()
+        graph.nodes.forEach { node ->
+            if(node !in matched) signature(graph, node)?.let { buckets.getOrPut(it) { ArrayList() }.add(node) }
+        }
+        return buckets
+    }
+
+    private fun createBaseSignature(node: INode):BaseSignature {
+        val auxTexts = node.labels.filter { it.type.isAuxUnit() }.map { it.text }.sorted()
+        return BaseSignature(node.type, node.getNameLabel()?.text, auxTexts)
+    }
+
+    /** arc types, directions and base signatures of all neighbours */
+    private fun getNeighbourSignature(graph: IGraph, node: INode):List<Int> {
+        return graph.edgesAt(node).map { edge ->
+            val isOutgoing = edge.sourcePort.owner == node
+            val neighbour = (if(isOutgoing) edge.targetPort.owner else edge.sourcePort.owner) as? INode
+            31 * (31 * edge.type.ordinal + if(isOutgoing) 1 else 0) + (neighbour?.let { baseSignatures[it] }?.hashCode() ?: 0)
+        }.sorted()
+    }
+
+    /** base signature with the pairs of matched neighbours and parent, or null if none of them is matched */
+    private fun getAnchoredSignature(graph: IGraph, node: INode):Any? {
+        val parentPair = graph.getParent(node)?.let { pairIds[it] }
+        val neighbourPairs = graph.edgesAt(node).mapNotNull { edge ->
+            val isOutgoing = edge.sourcePort.owner == node
+            val neighbour = if(isOutgoing) edge.targetPort.owner else edge.sourcePort.owner
+            pairIds[neighbour]?.let { 31 * (2 * it + if(isOutgoing) 1 else 0) + edge.type.ordinal }
+        }.sorted()
+        if(parentPair == null && neighbourPairs.isEmpty()) return null
+        return Triple(baseSignatures[node], parentPair, neighbourPairs)
+    }
+
+    private fun matchEdges(oldIds: Map<IModelItem, String>, newIds: Map<IModelItem, String>) {
+        val newById = HashMap<String, IEdge>()
+        newGraph.edges.forEach { edge -> newIds[edge]?.let { newById[it] = edge } }
+        oldGraph.edges.forEach { edge ->
+            oldIds[edge]?.let { newById[it] }?.let { if(it !in newToOld) match(edge, it) }
+        }
+        // parallel arcs of the same type are matched in order
+        val newBuckets = HashMap<Triple<SbgnType, Int, Int>, MutableList<IEdge>>()
+        newGraph.edges.forEach { edge ->
+            if(edge !in newToOld) getEdgeKey(edge)?.let { newBuckets.getOrPut(it) { ArrayList() }.add(edge) }
+        }
+        oldGraph.edges.forEach { edge ->
+            if(edge in oldToNew) return@forEach
+            val candidates = getEdgeKey(edge)?.let { newBuckets[it] }
+            if(candidates != null && candidates.isNotEmpty()) match(edge, candidates.removeAt(0))
+        }
+    }
+
+    private fun getEdgeKey(edge: IEdge):Triple<SbgnType, Int, Int>? {
+        val sourcePair = pairIds[edge.sourcePort.owner] ?: return null
+        val targetPair = pairIds[edge.targetPort.owner] ?: return null
+        return Triple(edge.type, sourcePair, targetPair)
+    }
+
+    private fun collectChanges():List<Change> {
+        val changes = ArrayList<Change>()
+        getItems(oldGraph).forEach { oldItem ->
+            val newItem = oldToNew[oldItem]
+            if(newItem == null) changes += Change(oldItem, null, setOf(ChangeType.REMOVED))
+            else {
+                val types = getChangeTypes(oldItem, newItem)
+                if(types.isNotEmpty()) changes += Change(oldItem, newItem, types)
+            }
+        }
+        getItems(newGraph).forEach { newItem ->
+            if(newItem !in newToOld) changes += Change(null, newItem, setOf(ChangeType.ADDED))
+        }
+        return changes
+    }
+
+    private fun getChangeTypes(oldItem: IModelItem, newItem: IModelItem):Set<ChangeType> {
+        val types = LinkedHashSet<ChangeType>()
+        if(oldItem is INode && newItem is INode) {
+            val oldLayout = oldItem.layout
+            val newLayout = newItem.layout
+            val oldParent = oldGraph.getParent(oldItem)
+            if(!isClose(oldLayout.x, newLayout.x) || !isClose(oldLayout.y, newLayout.y) || !isClose(oldLayout.width, newLayout.width) ||
+                    !isClose(oldLayout.height, newLayout.height) || (oldParent?.let { oldToNew[it] }) != newGraph.getParent(newItem)) {
+                types += ChangeType.MOVED
+            }
+        }
+        else if(oldItem is IEdge && newItem is IEdge) {
+            val oldBends = oldItem.bends
+            val newBends = newItem.bends
+            if(oldBends.size() != newBends.size() || (0 until oldBends.size()).any { index ->
+                        val oldLocation = oldBends.getItem(index).location
+                        val newLocation = newBends.getItem(index).location
+                        !isClose(oldLocation.x, newLocation.x) || !isClose(oldLocation.y, newLocation.y)
+                    }) {
+                types += ChangeType.MOVED
+            }
+        }
+        if(!isSameStyle(oldItem.graphStyle, newItem.graphStyle)) types += ChangeType.RESTYLED
+        val oldLabels = (oldItem as? ILabelOwner)?.labels?.map { it.text }
+        val newLabels = (newItem as? ILabelOwner)?.labels?.map { it.text }
+        if(oldItem.tag != newItem.tag || oldLabels?.sorted() != newLabels?.sorted()) types += ChangeType.MODIFIED
+        return types
+    }
+
+    private fun getItems(graph: IGraph) = graph.nodes.toList<IModelItem>() + graph.edges
+
+    private fun isClose(a: Double, b: Double) = Math.abs(a - b) <= TOLERANCE
+
+    private fun isSameStyle(a: GraphStyle<SbgnType>?, b: GraphStyle<SbgnType>?) = a === b || a != null && b != null && a.hasSameContent(b)
+
+    companion object {
+        /** tolerance for moves and resizes */
+        private const val TOLERANCE = 0.5
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.model
+
+import com.yworks.yfiles.geometry.PointD
+import com.yworks.yfiles.geometry.RectD
+import com.yworks.yfiles.geometry.SizeD
+import com.yworks.yfiles.graph.DefaultGraph
+import com.yworks.yfiles.graph.IEdge
+import com.yworks.yfiles.graph.IGraph
+import com.yworks.yfiles.graph.INode
+import com.yworks.yfiles.graph.IPort
+import krayon.editor.base.util.plus
+import krayon.editor.sbgn.io.SbgnWriter
+import krayon.editor.sbgn.style.SbgnBuilder
+import java.io.File
+import java.io.FileOutputStream
+import java.io.OutputStream
+import java.util.*
+
+/**
+ * Generates process description maps of a given size for scale testing. Maps consist of compartments filled with
+ * reactions: substrates, a process node, products, and modulators that are often (nested) complexes. The same seed
+ * always yields the same map. Every arc is checked against [SbgnConstraintManager] when it gets created.
+ */
+class SbgnMapGenerator(val seed:Long = 0L) {
+
+    /** number of nodes the map should have at least */
+    var glyphCount = 1000
+    var compartmentCount = 4
+    var maxComplexDepth = 2
+    /** probability that an entity pool node repeats an existing node of the same compartment */
+    var cloneRatio = 0.1
+    var stateVariableRatio = 0.3
+    var modulationRatio = 0.4
+
+    private val reactionSize = SizeD(620.0, 420.0)
+    private val entityTypes = listOf(SbgnType.MACROMOLECULE, SbgnType.MACROMOLECULE, SbgnType.SIMPLE_CHEMICAL, SbgnType.NUCLEIC_ACID_FEATURE, SbgnType.UNSPECIFIED_ENTITY)
+    private val processTypes = listOf(SbgnType.PROCESS, SbgnType.PROCESS, SbgnType.PROCESS, SbgnType.OMITTED_PROCESS, SbgnType.UNCERTAIN_PROCESS, SbgnType.ASSOCIATION, SbgnType.DISSOCIATION)
+    private val modulationTypes = listOf(SbgnType.CATALYSIS, SbgnType.STIMULATION, SbgnType.INHIBITION, SbgnType.MODULATION, SbgnType.NECESSARY_STIMULATION)
+
+    private class Entity(val type:SbgnType, val name:String, val stateVariables:List<String>, val members:List<Entity> = emptyList())
+
+    private lateinit var random:Random
+    private val entityPools = HashMap<INode, MutableList<Entity>>()
+    private var entityCount = 0
+
+    fun generate():IGraph = DefaultGraph().also { generate(it) }
+
+    fun generate(graph:IGraph) {
+        random = Random(seed)
+        entityPools.clear()
+        entityCount = 0
+
+        val reactionCount = Math.ceil(glyphCount / 6.0).toInt()
+        val reactionsPerCompartment = Math.ceil(reactionCount.toDouble() / compartmentCount).toInt()
+        val reactionColumns = Math.ceil(Math.sqrt(reactionsPerCompartment.toDouble())).toInt()
+        val compartmentColumns = Math.ceil(Math.sqrt(compartmentCount.toDouble())).toInt()
+        val compartmentWidth = reactionColumns * reactionSize.width + 100.0
+        val compartmentHeight = Math.ceil(reactionsPerCompartment.toDouble() / reactionColumns) * reactionSize.height + 100.0
+
+        val compartments = (0 until compartmentCount).map { index ->
+            val origin = PointD((index % compartmentColumns) * (compartmentWidth + 200.0), (index / compartmentColumns) * (compartmentHeight + 200.0))
+            createNode(graph, SbgnType.COMPARTMENT, "compartment ${index + 1}", origin + PointD(compartmentWidth * 0.5, compartmentHeight * 0.5)).also {
+                graph.setNodeLayout(it, RectD(origin, SizeD(compartmentWidth, compartmentHeight)))
+            }
+        }
+
+        var reaction = 0
+        while(graph.nodes.size() < glyphCount) {
+            val compartment = compartments[reaction % compartmentCount]
+            val cell = reaction / compartmentCount
+            val origin = compartment.layout.toRectD().topLeft + PointD(50.0 + (cell % reactionColumns) * reactionSize.width, 50.0 + (cell / reactionColumns) * reactionSize.height)
+            createReaction(graph, compartment, origin)
+            reaction++
+        }
+        compartments.forEach { graph.adjustGroupNodeLayout(it) }
+
+        val cloneMarkerIndex = CloneMarkerIndex(graph)
+        graph.nodes.forEach { node -> if(cloneMarkerIndex.hasClones(node)) node.isClone = true }
+        cloneMarkerIndex.dispose()
+    }
+
+    fun write(graph: IGraph, output: OutputStream) {
+        SbgnWriter(includeStyle = false).write(output, graph, null)
+    }
+
+    private fun createReaction(graph:IGraph, compartment:INode, origin:PointD) {
+        val processType = processTypes[random.nextInt(processTypes.size)]
+        val process = createNode(graph, processType, null, origin + PointD(280.0, 100.0), compartment)
+        val inPort = process.ports.first()
+        val outPort = process.ports.last()
+
+        val substrates = when(processType) {
+            SbgnType.ASSOCIATION -> listOf(nextEntity(compartment), nextEntity(compartment))
+            SbgnType.DISSOCIATION -> listOf(nextComplex(compartment, 1))
+            else -> if(random.nextInt(8) == 0) listOf(null) else (0..random.nextInt(2)).map { nextEntity(compartment) }
+        }
+        val products = when(processType) {
+            SbgnType.ASSOCIATION -> listOf(Entity(SbgnType.COMPLEX, substrates.joinToString(":") { it!!.name }, emptyList(), substrates.map { it!! }))
+            SbgnType.DISSOCIATION -> substrates.first()!!.members
+            else -> if(random.nextInt(8) == 0) listOf(null) else (0..random.nextInt(2)).map { nextEntity(compartment) }
+        }
+
+        substrates.forEachIndexed { index, entity ->
+            val node = createEntity(graph, entity, compartment, origin + PointD(0.0, index * 130.0))
+            createEdge(graph, SbgnType.CONSUMPTION, getPort(graph, node), inPort)
+        }
+        products.forEachIndexed { index, entity ->
+            val node = createEntity(graph, entity, compartment, origin + PointD(420.0, index * 130.0))
+            createEdge(graph, SbgnType.PRODUCTION, outPort, getPort(graph, node))
+        }
+        if(processType != SbgnType.ASSOCIATION && processType != SbgnType.DISSOCIATION && random.nextDouble() < modulationRatio) {
+            val entity = if(maxComplexDepth > 0 && random.nextBoolean()) nextComplex(compartment, maxComplexDepth) else nextEntity(compartment)
+            val node = createEntity(graph, entity, compartment, origin + PointD(220.0, 200.0))
+            createEdge(graph, modulationTypes[random.nextInt(modulationTypes.size)], getPort(graph, node), graph.addPort(process))
+        }
+    }
+
+    private fun nextEntity(compartment:INode):Entity {
+        val pool = entityPools.getOrPut(compartment) { mutableListOf() }
+        if(pool.isNotEmpty() && random.nextDouble() < cloneRatio) return pool[random.nextInt(pool.size)]
+        val type = entityTypes[random.nextInt(entityTypes.size)]
+        val stateVariables = if(type == SbgnType.MACROMOLECULE && random.nextDouble() < stateVariableRatio) listOf("P@S${random.nextInt(500)}") else emptyList()
+        return Entity(type, "${type.name.first()}${++entityCount}", stateVariables).also { pool += it }
+    }
+
+    private fun nextComplex(compartment:INode, depth:Int):Entity {
+        val members = (0..random.nextInt(2)).map {
+            if(depth > 1 && random.nextInt(3) == 0) nextComplex(compartment, depth - 1) else nextEntity(compartment)
+        } + nextEntity(compartment)
+        return Entity(SbgnType.COMPLEX, members.joinToString(":") { it.name }, emptyList(), members)
+    }
+
+    /**
+     * creates the node of an entity with its top left corner at the given location. Entity null stands for source and sink.
+     */
+    private fun createEntity(graph:IGraph, entity:Entity?, parent:INode, topLeft:PointD):INode {
+        val node = if(entity == null) createNode(graph, SbgnType.SOURCE_AND_SINK, null, topLeft, parent)
+        else createNode(graph, entity.type, entity.name, topLeft, parent)
+        graph.setNodeLayout(node, RectD(topLeft, node.layout.toSizeD()))
+        entity?.stateVariables?.forEach { text ->
+            val label = graph.addLabel(node, text)
+            label.type = SbgnType.STATE_VARIABLE
+            SbgnBuilder.configure(graph, label)
+        }
+        if(entity != null && entity.members.isNotEmpty()) {
+            var x = topLeft.x + 10.0
+            entity.members.forEach { member ->
+                x = createEntity(graph, member, node, PointD(x, topLeft.y + 40.0)).layout.maxX + 10.0
+            }
+            graph.adjustGroupNodeLayout(node)
+        }
+        return node
+    }
+
+    private fun createNode(graph:IGraph, type:SbgnType, name:String?, center:PointD, parent:INode? = null):INode {
+        val node = graph.createNode()
+        node.type = type
+        if(parent != null) graph.setParent(node, parent)
+        graph.setIsGroupNode(node, type.isComplex() || type == SbgnType.COMPARTMENT)
+        SbgnBuilder.configure(graph, node)
+        graph.setNodeLayout(node, RectD.fromCenter(center, node.layout.toSizeD()))
+        if(name != null) {
+            val label = graph.addLabel(node, name)
+            label.type = SbgnType.NAME_LABEL
+            SbgnBuilder.configure(graph, label)
+        }
+        SbgnBuilder.addPorts(graph, node)
+        return node
+    }
+
+    private fun getPort(graph:IGraph, node:INode):IPort = node.ports.firstOrNull() ?: graph.addPort(node)
+
+    private fun createEdge(graph:IGraph, type:SbgnType, sourcePort:IPort, targetPort:IPort):IEdge {
+        val source = sourcePort.owner as INode
+        val target = targetPort.owner as INode
+        check(SbgnConstraintManager.isValidSource(graph, target, type, source, source.type, sourcePort) &&
+                SbgnConstraintManager.isValidTarget(graph, source, type, target, target.type, targetPort)) {
+            "invalid $type arc from ${source.type} to ${target.type}"
+        }
+        val edge = graph.createEdge(sourcePort, targetPort)
+        edge.type = type
+        SbgnBuilder.configure(graph, edge)
+        return edge
+    }
+
+    companion object {
+        /**
+         * usage: SbgnMapGenerator output.sbgn [glyphCount] [seed]
+         */
+        @JvmStatic fun main(args: Array<String>) {
+            if(args.isEmpty()) {
+                System.err.println("usage: SbgnMapGenerator output.sbgn [glyphCount] [seed]")
+                System.exit(1)
+            }
+            System.setProperty("java.awt.headless", "true")
+            val generator = SbgnMapGenerator(args.getOrNull(2)?.toLong() ?: 0L).apply {
+                glyphCount = args.getOrNull(1)?.toInt() ?: glyphCount
+            }
+            val graph = generator.generate()
+            FileOutputStream(File(args[0])).use { generator.write(graph, it) }
+            println("wrote ${graph.nodes.size()} nodes and ${graph.edges.size()} arcs to ${args[0]}")
+        }
+    }
+}
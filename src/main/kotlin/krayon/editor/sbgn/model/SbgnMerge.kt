@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.model
+
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.graph.styles.IEdgeStyle
+import com.yworks.yfiles.graph.styles.ILabelStyle
+import com.yworks.yfiles.graph.styles.INodeStyle
+import com.yworks.yfiles.graph.styles.IPortStyle
+import com.yworks.yfiles.utils.ICloneable
+import krayon.editor.sbgn.model.SbgnDiff.ChangeType
+
+/**
+ * Three-way merge of SBGN maps. The changes from [baseGraph] to [theirGraph] are applied to [ourGraph], usually the
+ * graph shown in the editor, so the merge can be undone as one edit. Items are matched via [SbgnDiff].
+ *
+ * An item changed in the same respect (geometry, style or content) on both sides keeps our version and is reported as
+ * [Conflict], unless both sides made the same change. Items removed on one side and changed on the other are kept and
+ * reported as well.
+ */
+class SbgnMerge(val baseGraph: IGraph, val ourGraph: IGraph, val theirGraph: IGraph,
+                baseIds: Map<IModelItem, String> = emptyMap(), ourIds: Map<IModelItem, String> = emptyMap(),
+                theirIds: Map<IModelItem, String> = emptyMap()) {
+
+    /** conflicting change. [item] is the affected item of our graph, if there is one. */
+    class Conflict(val item: IModelItem?, val message: String)
+
+    private val ourDiff = SbgnDiff(baseGraph, ourGraph, baseIds, ourIds)
+    private val theirDiff = SbgnDiff(baseGraph, theirGraph, baseIds, theirIds)
+    /** recognizes items added on both sides and identical changes */
+    private val crossDiff = SbgnDiff(ourGraph, theirGraph, ourIds, theirIds)
+
+    /** items of their graph to the corresponding items of our graph */
+    private val theirToOur = HashMap<IModelItem, IModelItem>()
+    private val conflicts = ArrayList<Conflict>()
+
+    fun merge():List<Conflict> {
+        conflicts.clear()
+        theirToOur.clear()
+        baseGraph.nodes.forEach { base ->
+            val our = ourDiff.getNewItem(base) ?: return@forEach
+            theirDiff.getNewItem(base)?.let { theirToOur[it] = our }
+        }
+        copyNodes()
+
+        val removedNodes = ArrayList<INode>()
+        val removedEdges = ArrayList<IEdge>()
+        baseGraph.nodes.forEach { base ->
+            val our = ourDiff.getNewItem(base) as? INode ?: return@forEach
+            val their = theirDiff.getNewItem(base) as? INode
+            if(their == null) {
+                if(ourDiff.getChange(base) != null) conflicts += Conflict(our, "removed in the other version, changed here")
+                else removedNodes += our
+            }
+            else mergeChanges(base, our, their)
+        }
+        baseGraph.edges.forEach { base ->
+            val our = ourDiff.getNewItem(base) as? IEdge
+            val their = theirDiff.getNewItem(base) as? IEdge
+            when {
+                our == null && their != null && theirDiff.getChange(base) != null ->
+                    conflicts += Conflict(theirToOur[their.sourcePort.owner], "arc removed here, changed in the other version")
+                our == null -> {}
+                their == null -> {
+                    if(ourDiff.getChange(base) != null) conflicts += Conflict(our, "removed in the other version, changed here")
+                    else removedEdges += our
+                }
+                else -> mergeChanges(base, our, their)
+            }
+        }
+        copyEdges()
+
+        removedEdges.filter { ourGraph.contains(it) }.forEach { ourGraph.remove(it) }
+        // children first, children kept by us move up to the parent
+        removedNodes.sortedByDescending { getDepth(it) }.forEach { node ->
+            if(!ourGraph.contains(node)) return@forEach
+            val parent = ourGraph.getParent(node)
+            ourGraph.getChildren(node).toList().forEach { ourGraph.setParent(it, parent) }
+            ourGraph.remove(node)
+        }
+        return conflicts.toList()
+    }
+
+    /**
+     * copies the nodes added by them, and those removed by us but changed by them.
+     */
+    private fun copyNodes() {
+        val copies = ArrayList<Pair<INode, INode>>()
+        theirGraph.nodes.forEach { their ->
+            val base = theirDiff.getOldItem(their)
+            if(base == null) {
+                val our = crossDiff.getOldItem(their)
+                // added on both sides
+                if(our != null && ourDiff.getOldItem(our) == null) theirToOur[their] = our
+                else copies += Pair(their, copyNode(their))
+            }
+            else if(ourDiff.getNewItem(base) == null && theirDiff.getChange(base) != null) {
+                val copy = copyNode(their)
+                copies += Pair(their, copy)
+                conflicts += Conflict(copy, "removed here, changed in the other version")
+            }
+        }
+        copies.forEach { (their, copy) ->
+            val parent = theirGraph.getParent(their)?.let { theirToOur[it] } as? INode
+            if(parent != null && ourGraph.isGroupNode(parent)) ourGraph.setParent(copy, parent)
+        }
+    }
+
+    private fun copyEdges() {
+        theirGraph.edges.forEach { their ->
+            if(theirDiff.getOldItem(their) != null) return@forEach
+            val our = crossDiff.getOldItem(their)
+            if(our != null && ourDiff.getOldItem(our) == null) return@forEach
+            val sourcePort = getOurPort(their.sourcePort)
+            val targetPort = getOurPort(their.targetPort)
+            if(sourcePort == null || targetPort == null) {
+                conflicts += Conflict(sourcePort?.owner ?: targetPort?.owner, "added arc could not be connected")
+                return@forEach
+            }
+            val copy = ourGraph.createEdge(sourcePort, targetPort, their.style.clone() as IEdgeStyle, cloneTag(their.tag))
+            their.bends.forEach { ourGraph.addBend(copy, it.location.toPointD()) }
+            their.labels.forEach { copyLabel(copy, it) }
+            theirToOur[their] = copy
+        }
+    }
+
+    private fun mergeChanges(base: IModelItem, our: IModelItem, their: IModelItem) {
+        val theirTypes = theirDiff.getChange(base)?.types ?: return
+        val ourTypes = ourDiff.getChange(base)?.types ?: emptySet<ChangeType>()
+        val crossTypes = crossDiff.getChange(our)?.types ?: emptySet<ChangeType>()
+        for(type in theirTypes) {
+            if(type !in ourTypes) applyChange(our, their, type)
+            else if(crossDiff.getNewItem(our) != their || type in crossTypes) {
+                conflicts += Conflict(our, "${type.name.toLowerCase()} in both versions")
+            }
+        }
+    }
+
+    private fun applyChange(our: IModelItem, their: IModelItem, type: ChangeType) {
+        when(type) {
+            ChangeType.MOVED -> when(our) {
+                is INode -> {
+                    ourGraph.setNodeLayout(our, (their as INode).layout.toRectD())
+                    val parent = theirGraph.getParent(their)?.let { theirToOur[it] } as? INode
+                    if(parent == null || ourGraph.isGroupNode(parent)) ourGraph.setParent(our, parent)
+                }
+                is IEdge -> {
+                    ourGraph.clearBends(our)
+                    (their as IEdge).bends.forEach { ourGraph.addBend(our, it.location.toPointD()) }
+                }
+            }
+            ChangeType.RESTYLED -> {
+                setStyle(our, their)
+                (our as? ILabelOwner)?.labels?.zip((their as ILabelOwner).labels)?.forEach { (ourLabel, theirLabel) ->
+                    ourGraph.setStyle(ourLabel, theirLabel.style.clone() as ILabelStyle)
+                }
+                our.graphStyle = their.graphStyle
+            }
+            ChangeType.MODIFIED -> {
+                if(our.type != their.type) setStyle(our, their)
+                val graphStyle = our.graphStyle
+                our.tag = cloneTag(their.tag)
+                our.graphStyle = graphStyle
+                if(our is ILabelOwner) {
+                    our.labels.toList().forEach { ourGraph.remove(it) }
+                    (their as ILabelOwner).labels.forEach { copyLabel(our, it) }
+                }
+            }
+            else -> {}
+        }
+    }
+
+    private fun setStyle(our: IModelItem, their: IModelItem) {
+        when(our) {
+            is INode -> ourGraph.setStyle(our, (their as INode).style.clone() as INodeStyle)
+            is IEdge -> ourGraph.setStyle(our, (their as IEdge).style.clone() as IEdgeStyle)
+        }
+    }
+
+    private fun copyNode(their: INode):INode {
+        val copy = ourGraph.createNode(their.layout.toRectD(), their.style.clone() as INodeStyle, cloneTag(their.tag))
+        if(theirGraph.isGroupNode(their)) ourGraph.setIsGroupNode(copy, true)
+        their.labels.forEach { copyLabel(copy, it) }
+        their.ports.forEach { port ->
+            val portCopy = ourGraph.addPort(copy, port.locationParameter, port.style.clone() as IPortStyle, cloneTag(port.tag))
+            port.labels.forEach { copyLabel(portCopy, it) }
+            theirToOur[port] = portCopy
+        }
+        theirToOur[their] = copy
+        return copy
+    }
+
+    private fun copyLabel(owner: ILabelOwner, label: ILabel) {
+        ourGraph.addLabel(owner, label.text, label.layoutParameter, label.style.clone() as ILabelStyle, label.preferredSize, cloneTag(label.tag))
+    }
+
+    /** our port at the same index of the corresponding owner */
+    private fun getOurPort(theirPort: IPort):IPort? {
+        theirToOur[theirPort]?.let { return it as IPort }
+        val theirOwner = theirPort.owner as? INode ?: return null
+        val ourOwner = theirToOur[theirOwner] as? INode ?: return null
+        val index = theirOwner.ports.indexOf(theirPort)
+        return if(index in 0 until ourOwner.ports.size()) ourOwner.ports.getItem(index) else null
+    }
+
+    private fun getDepth(node: INode):Int {
+        var depth = 0
+        var parent = ourGraph.getParent(node)
+        while(parent != null) {
+            depth++
+            parent = ourGraph.getParent(parent)
+        }
+        return depth
+    }
+
+    private fun cloneTag(tag: Any?) = if(tag is ICloneable) tag.clone() else tag
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.model
+
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.graph.styles.INodeStyle
+import com.yworks.yfiles.utils.IEventListener
+import krayon.editor.base.model.ItemDataChanges
+import java.util.*
+
+/**
+ * Inverted index from the words of node labels (names, state variables, units of information) to nodes, plus an index
+ * of nodes by type. Graph events mark nodes dirty, the index catches up on the next query.
+ *
+ * Query syntax: words are matched as prefixes, a trailing `~` allows one typo. `type:<prefix>` restricts the SBGN type,
+ * `is:clone` restricts to nodes with clone marker. All parts of a query must match.
+ * Type changes do not raise graph events. They are caught via [ItemDataChanges], which reports the SBGN data of a node
+ * or the node whose tag was replaced.
+ */
+class SbgnSearchIndex(val graph: IGraph) {
+
+    private val nodesByWord = TreeMap<String, MutableSet<INode>>()
+    private val nodesByType = EnumMap<SbgnType, MutableSet<INode>>(SbgnType::class.java)
+    private val indexedWords = HashMap<INode, Set<String>>()
+    private val indexedTypes = HashMap<INode, SbgnType>()
+    private val dirtyNodes = LinkedHashSet<INode>()
+    /** node of the SBGN data of each indexed node */
+    private val dataOwners = IdentityHashMap<Any, INode>()
+    private val indexedData = HashMap<INode, Any>()
+
+    private val nodeCreatedListener = IEventListener<ItemEventArgs<INode>> { _, args -> dirtyNodes += args.item }
+    private val nodeRemovedListener = IEventListener<NodeEventArgs> { _, args -> dirtyNodes += args.item }
+    private val nodeStyleChangedListener = IEventListener<ItemChangedEventArgs<INode, INodeStyle>> { _, args -> dirtyNodes += args.item }
+    private val labelAddedListener = IEventListener<ItemEventArgs<ILabel>> { _, args -> (args.item.owner as? INode)?.let { dirtyNodes += it } }
+    private val labelRemovedListener = IEventListener<LabelEventArgs> { _, args -> (args.owner as? INode)?.let { dirtyNodes += it } }
+    private val labelTextChangedListener = IEventListener<ItemChangedEventArgs<ILabel, String>> { _, args -> (args.item.owner as? INode)?.let { dirtyNodes += it } }
+    private val itemDataListener:(Any) -> Unit = { source ->
+        val node = source as? INode ?: dataOwners[source]
+        if(node != null) dirtyNodes += node
+    }
+
+    init {
+        graph.addNodeCreatedListener(nodeCreatedListener)
+        graph.addNodeRemovedListener(nodeRemovedListener)
+        graph.addNodeStyleChangedListener(nodeStyleChangedListener)
+        graph.addLabelAddedListener(labelAddedListener)
+        graph.addLabelRemovedListener(labelRemovedListener)
+        graph.addLabelTextChangedListener(labelTextChangedListener)
+        ItemDataChanges.addListener(itemDataListener)
+        graph.nodes.forEach { dirtyNodes += it }
+    }
+
+    /**
+     * Detaches the index from its graph and from [ItemDataChanges].
+     */
+    fun dispose() {
+        graph.removeNodeCreatedListener(nodeCreatedListener)
+        graph.removeNodeRemovedListener(nodeRemovedListener)
+        graph.removeNodeStyleChangedListener(nodeStyleChangedListener)
+        graph.removeLabelAddedListener(labelAddedListener)
+        graph.removeLabelRemovedListener(labelRemovedListener)
+        graph.removeLabelTextChangedListener(labelTextChangedListener)
+        ItemDataChanges.removeListener(itemDataListener)
+    }
+
+    /**
+     * Returns the nodes matching the given query, top to bottom and left to right. An empty query matches nothing.
+     */
+    fun search(query: String):List<INode> {
+        update()
+        var result:Set<INode>? = null
+        var isCloneRequired = false
+        for(part in query.trim().split(Regex("\\s+")).filter { it.isNotEmpty() }) {
+            val lowerPart = part.toLowerCase()
+            if(lowerPart == "is:clone") {
+                isCloneRequired = true
+                continue
+            }
+            val matches = when {
+                lowerPart.startsWith("type:") -> findByType(lowerPart.substring(5))
+                lowerPart.endsWith("~") -> findAll(tokenize(lowerPart.dropLast(1)), ::findFuzzy)
+                else -> findAll(tokenize(lowerPart), ::findByPrefix)
+            } ?: continue
+            result = intersect(result, matches)
+            if(result.isEmpty()) return emptyList()
+        }
+        if(result == null && isCloneRequired) result = indexedTypes.keys
+        return (result ?: return emptyList()).filter { !isCloneRequired || it.isClone }
+                .sortedWith(compareBy<INode>({ it.layout.y }, { it.layout.x }))
+    }
+
+    fun update() {
+        if(dirtyNodes.isEmpty()) return
+        val nodes = dirtyNodes.toList()
+        dirtyNodes.clear()
+        for(node in nodes) {
+            indexedWords.remove(node)?.forEach { word -> remove(nodesByWord, word, node) }
+            indexedTypes.remove(node)?.let { type -> remove(nodesByType, type, node) }
+            indexedData.remove(node)?.let { data -> if(dataOwners[data] === node) dataOwners.remove(data) }
+            if(!graph.contains(node)) continue
+            val words = node.labels.flatMap { tokenize(it.text.toLowerCase()) }.toSet()
+            words.forEach { word -> nodesByWord.getOrPut(word) { HashSet() }.add(node) }
+            indexedWords[node] = words
+            val type = node.type
+            nodesByType.getOrPut(type) { HashSet() }.add(node)
+            indexedTypes[node] = type
+            (node.tag as? SbgnData)?.let { data ->
+                dataOwners[data] = node
+                indexedData[node] = data
+            }
+        }
+    }
+
+    /** nodes matching all words, or null for no words */
+    private fun findAll(words: List<String>, find: (String) -> Set<INode>) = words.map(find).fold(null as Set<INode>?, ::intersect)
+
+    private fun findByPrefix(prefix: String):Set<INode> {
+        val matches = nodesByWord.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values
+        return if(matches.size == 1) matches.first() else matches.flatMapTo(HashSet()) { it }
+    }
+
+    private fun findFuzzy(word: String):Set<INode> {
+        val matches = HashSet<INode>()
+        nodesByWord.forEach { candidate, nodes ->
+            if(isWithinOneEdit(word, candidate)) matches += nodes
+        }
+        return matches
+    }
+
+    private fun findByType(typePrefix: String):Set<INode> {
+        val normalizedPrefix = typePrefix.replace('-', '_').toUpperCase()
+        val matches = HashSet<INode>()
+        nodesByType.forEach { type, nodes -> if(type.name.startsWith(normalizedPrefix)) matches += nodes }
+        return matches
+    }
+
+    private fun intersect(a: Set<INode>?, b: Set<INode>):Set<INode> {
+        if(a == null) return b
+        val (smaller, larger) = if(a.size <= b.size) Pair(a, b) else Pair(b, a)
+        return smaller.filterTo(HashSet()) { it in larger }
+    }
+
+    private fun <K> remove(map: MutableMap<K, MutableSet<INode>>, key: K, node: INode) {
+        map[key]?.let { nodes ->
+            nodes.remove(node)
+            if(nodes.isEmpty()) map.remove(key)
+        }
+    }
+
+    private fun tokenize(text: String) = text.split(wordSeparator).filter { it.isNotEmpty() }
+
+    /** true if the strings differ by at most one insertion, deletion or substitution */
+    private fun isWithinOneEdit(a: String, b: String):Boolean {
+        if(Math.abs(a.length - b.length) > 1) return false
+        var i = 0
+        var j = 0
+        var edits = 0
+        while(i < a.length && j < b.length) {
+            if(a[i] == b[j]) {
+                i++
+                j++
+                continue
+            }
+            if(++edits > 1) return false
+            when {
+                a.length > b.length -> i++
+                a.length < b.length -> j++
+                else -> { i++; j++ }
+            }
+        }
+        return edits + (a.length - i) + (b.length - j) <= 1
+    }
+
+    companion object {
+        private val wordSeparator = Regex("[^\\p{L}\\p{N}]+")
+    }
+}
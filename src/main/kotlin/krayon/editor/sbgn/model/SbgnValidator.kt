@@ -0,0 +1,550 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.model
+
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.graph.styles.IEdgeStyle
+import com.yworks.yfiles.graph.styles.INodeStyle
+import com.yworks.yfiles.graph.styles.IPortStyle
+import com.yworks.yfiles.utils.IEventListener
+import krayon.editor.base.model.ItemDataChanges
+import java.util.Collections
+import java.util.IdentityHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import javax.swing.SwingUtilities
+
+/**
+ * Checks SBGN PD syntax rules in the background. Graph events mark items dirty. Once per EDT cycle the dirty items are
+ * copied into an immutable [Snapshot], which a worker thread merges into its own mirror of the map. Only changed items
+ * and items whose rules depend on them are checked again. Results are delivered on the EDT.
+ * Changes that raise no graph event, e.g. toggling a clone marker or undoing a type change, are caught by [invalidate]
+ * or by [validate], which runs once per EDT cycle with [ItemDataChanges] and marks the owners of the changed data.
+ */
+class SbgnValidator(val graph: IGraph) {
+
+    enum class Severity { ERROR, WARNING }
+
+    enum class Rule(val severity: Severity) {
+        INVALID_ARC(Severity.ERROR),
+        ARC_CARDINALITY(Severity.ERROR),
+        PROCESS_PORTS(Severity.ERROR),
+        MISSING_ARC(Severity.WARNING),
+        EPN_OUTSIDE_COMPARTMENT(Severity.WARNING),
+        DANGLING_CLONE_MARKER(Severity.WARNING),
+        MISSING_CLONE_MARKER(Severity.WARNING)
+    }
+
+    class Issue(val rule: Rule, val item: IModelItem, val message: String) {
+        val severity get() = rule.severity
+        override fun toString() = message
+    }
+
+    private class NodeInfo(val node: INode, val type: SbgnType, val name: String?, val parent: INode?, val isClone: Boolean,
+                           val cloneKey: CloneMarkerIndex.CloneGroupKey?, val portTypes: Map<IPort, SbgnType>)
+
+    private class EdgeInfo(val edge: IEdge, val type: SbgnType, val source: INode, val sourcePort: IPort, val target: INode, val targetPort: IPort)
+
+    private class Snapshot(val nodes: List<NodeInfo>, val removedNodes: List<INode>, val edges: List<EdgeInfo>, val removedEdges: List<IEdge>, val isFull: Boolean)
+
+    /**
+     * called on the EDT whenever issues have been added or removed, with the items whose issues may have changed, or
+     * null if the issues of all items may have changed
+     */
+    val issueListeners = mutableListOf<(SbgnValidator, Collection<IModelItem>?) -> Unit>()
+
+    var isRunning = false
+        private set
+
+    private val issues = LinkedHashMap<IModelItem, List<Issue>>()
+    private val dirtyNodes = LinkedHashSet<INode>()
+    private val dirtyEdges = LinkedHashSet<IEdge>()
+    private var isFullCheckPending = false
+    private var isFlushScheduled = false
+    private var isValidationScheduled = false
+    /** SBGN data changed since the last [validate] */
+    private val changedData = Collections.newSetFromMap(IdentityHashMap<Any, Boolean>())
+    /** node or edge of the SBGN data of checked nodes, their labels and ports, and of checked edges */
+    private val dataOwners = IdentityHashMap<Any, IModelItem>()
+    private val ownedData = HashMap<IModelItem, List<Any>>()
+    private var cloneMarkerIndex: CloneMarkerIndex? = null
+    private var executor: ExecutorService? = null
+    private var checker = Checker()
+    private var pendingChecks = 0
+    /** results of earlier runs get dropped */
+    private var generation = 0
+
+    private val nodeCreatedListener = IEventListener<ItemEventArgs<INode>> { _, args -> invalidate(args.item) }
+    private val nodeRemovedListener = IEventListener<NodeEventArgs> { _, args ->
+        dirtyNodes += args.item
+        args.parent?.let { invalidate(it) }
+        scheduleFlush()
+    }
+    private val parentChangedListener = IEventListener<NodeEventArgs> { _, args ->
+        invalidate(args.item)
+        args.parent?.let { invalidate(it) }
+    }
+    private val nodeStyleChangedListener = IEventListener<ItemChangedEventArgs<INode, INodeStyle>> { _, args -> invalidate(args.item) }
+    private val labelAddedListener = IEventListener<ItemEventArgs<ILabel>> { _, args -> (args.item.owner as? INode)?.let { invalidate(it) } }
+    private val labelRemovedListener = IEventListener<LabelEventArgs> { _, args -> (args.owner as? INode)?.let { invalidate(it) } }
+    private val labelTextChangedListener = IEventListener<ItemChangedEventArgs<ILabel, String>> { _, args -> (args.item.owner as? INode)?.let { invalidate(it) } }
+    private val portAddedListener = IEventListener<ItemEventArgs<IPort>> { _, args -> (args.item.owner as? INode)?.let { invalidate(it) } }
+    private val portRemovedListener = IEventListener<PortEventArgs> { _, args -> (args.owner as? INode)?.let { invalidate(it) } }
+    private val portStyleChangedListener = IEventListener<ItemChangedEventArgs<IPort, IPortStyle>> { _, args -> (args.item.owner as? INode)?.let { invalidate(it) } }
+    private val edgeCreatedListener = IEventListener<ItemEventArgs<IEdge>> { _, args -> invalidate(args.item) }
+    private val edgeRemovedListener = IEventListener<EdgeEventArgs> { _, args ->
+        dirtyEdges += args.item
+        scheduleFlush()
+    }
+    private val edgePortsChangedListener = IEventListener<EdgeEventArgs> { _, args -> invalidate(args.item) }
+    private val edgeStyleChangedListener = IEventListener<ItemChangedEventArgs<IEdge, IEdgeStyle>> { _, args -> invalidate(args.item) }
+    private val itemDataListener:(Any) -> Unit = { source ->
+        changedData += source
+        if(!isValidationScheduled) {
+            isValidationScheduled = true
+            SwingUtilities.invokeLater {
+                isValidationScheduled = false
+                validate()
+            }
+        }
+    }
+
+    fun start() {
+        if(isRunning) return
+        isRunning = true
+        generation++
+        checker = Checker()
+        cloneMarkerIndex = CloneMarkerIndex(graph)
+        executor = Executors.newSingleThreadExecutor { Thread(it, "sbgn-validator").apply { isDaemon = true } }
+        graph.addNodeCreatedListener(nodeCreatedListener)
+        graph.addNodeRemovedListener(nodeRemovedListener)
+        graph.addParentChangedListener(parentChangedListener)
+        graph.addNodeStyleChangedListener(nodeStyleChangedListener)
+        graph.addLabelAddedListener(labelAddedListener)
+        graph.addLabelRemovedListener(labelRemovedListener)
+        graph.addLabelTextChangedListener(labelTextChangedListener)
+        graph.addPortAddedListener(portAddedListener)
+        graph.addPortRemovedListener(portRemovedListener)
+        graph.addPortStyleChangedListener(portStyleChangedListener)
+        graph.addEdgeCreatedListener(edgeCreatedListener)
+        graph.addEdgeRemovedListener(edgeRemovedListener)
+        graph.addEdgePortsChangedListener(edgePortsChangedListener)
+        graph.addEdgeStyleChangedListener(edgeStyleChangedListener)
+        ItemDataChanges.addListener(itemDataListener)
+        checkAll()
+    }
+
+    fun stop() {
+        if(!isRunning) return
+        isRunning = false
+        generation++
+        graph.removeNodeCreatedListener(nodeCreatedListener)
+        graph.removeNodeRemovedListener(nodeRemovedListener)
+        graph.removeParentChangedListener(parentChangedListener)
+        graph.removeNodeStyleChangedListener(nodeStyleChangedListener)
+        graph.removeLabelAddedListener(labelAddedListener)
+        graph.removeLabelRemovedListener(labelRemovedListener)
+        graph.removeLabelTextChangedListener(labelTextChangedListener)
+        graph.removePortAddedListener(portAddedListener)
+        graph.removePortRemovedListener(portRemovedListener)
+        graph.removePortStyleChangedListener(portStyleChangedListener)
+        graph.removeEdgeCreatedListener(edgeCreatedListener)
+        graph.removeEdgeRemovedListener(edgeRemovedListener)
+        graph.removeEdgePortsChangedListener(edgePortsChangedListener)
+        graph.removeEdgeStyleChangedListener(edgeStyleChangedListener)
+        ItemDataChanges.removeListener(itemDataListener)
+        executor?.shutdownNow()
+        executor = null
+        cloneMarkerIndex?.dispose()
+        cloneMarkerIndex = null
+        dirtyNodes.clear()
+        dirtyEdges.clear()
+        changedData.clear()
+        dataOwners.clear()
+        ownedData.clear()
+        pendingChecks = 0
+        issues.clear()
+        fireIssuesChanged(null)
+    }
+
+    /** true while changes have not been checked yet */
+    val isChecking get() = isFlushScheduled || pendingChecks > 0
+
+    val issueList:List<Issue> get() = issues.values.flatten()
+
+    fun getIssues(item: IModelItem):List<Issue> = issues[item] ?: emptyList()
+
+    /**
+     * Checks the whole map again.
+     */
+    fun checkAll() {
+        if(!isRunning) return
+        isFullCheckPending = true
+        scheduleFlush()
+    }
+
+    /**
+     * Marks the given node and its ancestors for checking. Ancestors are included since the clone group of a complex
+     * depends on its members.
+     */
+    fun invalidate(node: INode) {
+        if(!isRunning) return
+        var current:INode? = node
+        while(current != null && dirtyNodes.add(current)) {
+            current = if(graph.contains(current)) graph.getParent(current) else null
+        }
+        scheduleFlush()
+    }
+
+    fun invalidate(edge: IEdge) {
+        if(!isRunning) return
+        dirtyEdges += edge
+        scheduleFlush()
+    }
+
+    /**
+     * Marks the items whose SBGN data changed without a graph event, e.g. by undo, for checking.
+     */
+    fun validate() {
+        if(!isRunning) return
+        changedData.forEach { source ->
+            val owner = when(source) {
+                is ILabel -> source.owner
+                is IPort -> source.owner
+                is IModelItem -> source
+                else -> dataOwners[source]
+            }
+            when(owner) {
+                is INode -> if(graph.contains(owner)) invalidate(owner)
+                is IEdge -> if(graph.contains(owner)) invalidate(owner)
+            }
+        }
+        changedData.clear()
+    }
+
+    private fun registerData(item: IModelItem, data: List<Any>) {
+        unregisterData(item)
+        if(data.isEmpty()) return
+        data.forEach { dataOwners[it] = item }
+        ownedData[item] = data
+    }
+
+    private fun unregisterData(item: IModelItem) {
+        ownedData.remove(item)?.forEach { if(dataOwners[it] === item) dataOwners.remove(it) }
+    }
+
+    private fun scheduleFlush() {
+        if(isRunning && !isFlushScheduled) {
+            isFlushScheduled = true
+            SwingUtilities.invokeLater { flush() }
+        }
+    }
+
+    private fun flush() {
+        isFlushScheduled = false
+        if(!isRunning) return
+        val isFull = isFullCheckPending
+        if(isFull) {
+            dirtyNodes.clear()
+            dirtyEdges.clear()
+            dataOwners.clear()
+            ownedData.clear()
+            graph.nodes.forEach { dirtyNodes += it }
+            graph.edges.forEach { dirtyEdges += it }
+            isFullCheckPending = false
+        }
+        val nodes = ArrayList<NodeInfo>()
+        val removedNodes = ArrayList<INode>()
+        dirtyNodes.forEach { node ->
+            if(graph.contains(node)) nodes += createNodeInfo(node)
+            else {
+                removedNodes += node
+                unregisterData(node)
+            }
+        }
+        val edges = ArrayList<EdgeInfo>()
+        val removedEdges = ArrayList<IEdge>()
+        dirtyEdges.forEach { edge ->
+            val info = if(graph.contains(edge)) createEdgeInfo(edge) else null
+            if(info != null) {
+                edges += info
+                registerData(edge, listOfNotNull(edge.tag))
+            }
+            else {
+                removedEdges += edge
+                unregisterData(edge)
+            }
+        }
+        dirtyNodes.clear()
+        dirtyEdges.clear()
+
+        val snapshot = Snapshot(nodes, removedNodes, edges, removedEdges, isFull)
+        val worker = checker
+        val runGeneration = generation
+        pendingChecks++
+        executor?.execute {
+            val result = worker.check(snapshot)
+            SwingUtilities.invokeLater { if(runGeneration == generation) applyResult(result, isFull) }
+        }
+    }
+
+    private fun createNodeInfo(node: INode):NodeInfo {
+        val data = ArrayList<Any>()
+        node.tag?.let { data += it }
+        node.labels.forEach { label -> label.tag?.let { data += it } }
+        node.ports.forEach { port -> port.tag?.let { data += it } }
+        registerData(node, data)
+        return createNodeInfo(graph, node, cloneMarkerIndex)
+    }
+
+    private fun applyResult(result:Map<IModelItem, List<Issue>>, isFull: Boolean) {
+        pendingChecks--
+        if(isFull) issues.clear()
+        result.forEach { (item, itemIssues) ->
+            if(itemIssues.isEmpty() || !graph.contains(item)) issues.remove(item) else issues[item] = itemIssues
+        }
+        fireIssuesChanged(if(isFull) null else result.keys)
+    }
+
+    private fun fireIssuesChanged(changedItems: Collection<IModelItem>?) {
+        issueListeners.forEach { it(this, changedItems) }
+    }
+
+    companion object {
+        /**
+         * Checks the whole graph on the calling thread, e.g. for batch processing.
+         */
+        fun check(graph: IGraph):List<Issue> {
+            val index = CloneMarkerIndex(graph)
+            try {
+                val nodes = graph.nodes.map { createNodeInfo(graph, it, index) }
+                val edges = graph.edges.mapNotNull { createEdgeInfo(it) }
+                return Checker().check(Snapshot(nodes, emptyList(), edges, emptyList(), true)).values.flatten()
+            }
+            finally {
+                index.dispose()
+            }
+        }
+
+        private fun createNodeInfo(graph: IGraph, node: INode, index: CloneMarkerIndex?):NodeInfo {
+            val portTypes = HashMap<IPort, SbgnType>()
+            node.ports.forEach { portTypes[it] = it.type }
+            return NodeInfo(node, node.type, node.getNameLabel()?.text, graph.getParent(node), node.isClone,
+                    index?.getCloneGroupKey(node), portTypes)
+        }
+
+        private fun createEdgeInfo(edge: IEdge):EdgeInfo? {
+            val source = edge.sourcePort.owner as? INode ?: return null
+            val target = edge.targetPort.owner as? INode ?: return null
+            return EdgeInfo(edge, edge.type, source, edge.sourcePort, target, edge.targetPort)
+        }
+    }
+
+    /**
+     * Mirror of the map that is only accessed by the worker thread.
+     */
+    private class Checker {
+        private val nodes = HashMap<INode, NodeInfo>()
+        private val edges = HashMap<IEdge, EdgeInfo>()
+        private val edgesAt = HashMap<INode, MutableSet<IEdge>>()
+        private val children = HashMap<INode?, MutableSet<INode>>()
+        private val cloneGroups = HashMap<CloneMarkerIndex.CloneGroupKey, MutableSet<INode>>()
+        private var compartmentCount = 0
+
+        fun check(snapshot: Snapshot):Map<IModelItem, List<Issue>> {
+            if(snapshot.isFull) {
+                nodes.clear()
+                edges.clear()
+                edgesAt.clear()
+                children.clear()
+                cloneGroups.clear()
+                compartmentCount = 0
+            }
+            val affectedNodes = HashSet<INode>()
+            val affectedEdges = HashSet<IEdge>()
+            val hadCompartments = compartmentCount > 0
+
+            snapshot.removedEdges.forEach { removeEdge(it, affectedNodes) }
+            snapshot.removedNodes.forEach { removeNode(it, affectedNodes) }
+            snapshot.nodes.forEach { putNode(it, affectedNodes, affectedEdges) }
+            snapshot.edges.forEach { putEdge(it, affectedNodes) }
+            affectedEdges += snapshot.removedEdges
+            snapshot.edges.mapTo(affectedEdges) { it.edge }
+            if(hadCompartments != compartmentCount > 0) affectedNodes += nodes.keys
+
+            val result = HashMap<IModelItem, List<Issue>>()
+            affectedNodes.forEach { node -> result[node] = nodes[node]?.let { checkNode(it) } ?: emptyList() }
+            affectedEdges.forEach { edge -> result[edge] = edges[edge]?.let { checkEdge(it) } ?: emptyList() }
+            return result
+        }
+
+        private fun putNode(info: NodeInfo, affectedNodes: MutableSet<INode>, affectedEdges: MutableSet<IEdge>) {
+            val node = info.node
+            val old = nodes.put(node, info)
+            if(old != null) detachNode(old, affectedNodes)
+            children.getOrPut(info.parent) { HashSet() }.add(node)
+            info.cloneKey?.let { key ->
+                cloneGroups.getOrPut(key) { HashSet() }.let { group ->
+                    group += node
+                    affectedNodes += group
+                }
+            }
+            if(info.type == SbgnType.COMPARTMENT) compartmentCount++
+            affectedNodes += node
+            edgesAt[node]?.forEach { edge ->
+                affectedEdges += edge
+                edges[edge]?.let { affectedNodes += it.source; affectedNodes += it.target }
+            }
+            if(old == null || old.parent != info.parent || old.type != info.type) collectDescendants(node, affectedNodes)
+        }
+
+        private fun removeNode(node: INode, affectedNodes: MutableSet<INode>) {
+            nodes.remove(node)?.let { detachNode(it, affectedNodes) }
+            children.remove(node)
+            edgesAt.remove(node)
+            affectedNodes += node
+        }
+
+        private fun detachNode(info: NodeInfo, affectedNodes: MutableSet<INode>) {
+            children[info.parent]?.remove(info.node)
+            info.cloneKey?.let { key ->
+                cloneGroups[key]?.let { group ->
+                    group -= info.node
+                    affectedNodes += group
+                    if(group.isEmpty()) cloneGroups.remove(key)
+                }
+            }
+            if(info.type == SbgnType.COMPARTMENT) compartmentCount--
+        }
+
+        private fun collectDescendants(node: INode, result: MutableSet<INode>) {
+            children[node]?.forEach { child ->
+                if(result.add(child)) collectDescendants(child, result)
+            }
+        }
+
+        private fun putEdge(info: EdgeInfo, affectedNodes: MutableSet<INode>) {
+            edges.put(info.edge, info)?.let { detachEdge(it, affectedNodes) }
+            edgesAt.getOrPut(info.source) { HashSet() }.add(info.edge)
+            edgesAt.getOrPut(info.target) { HashSet() }.add(info.edge)
+            affectedNodes += info.source
+            affectedNodes += info.target
+        }
+
+        private fun removeEdge(edge: IEdge, affectedNodes: MutableSet<INode>) {
+            edges.remove(edge)?.let { detachEdge(it, affectedNodes) }
+        }
+
+        private fun detachEdge(info: EdgeInfo, affectedNodes: MutableSet<INode>) {
+            edgesAt[info.source]?.remove(info.edge)
+            edgesAt[info.target]?.remove(info.edge)
+            affectedNodes += info.source
+            affectedNodes += info.target
+        }
+
+        private fun checkEdge(info: EdgeInfo):List<Issue> {
+            val source = nodes[info.source] ?: return emptyList()
+            val target = nodes[info.target] ?: return emptyList()
+            val sourceType = source.type
+            val targetType = target.type
+            val sourcePortType = source.portTypes[info.sourcePort]
+            val targetPortType = target.portTypes[info.targetPort]
+            val isPermitted = when {
+                info.type == SbgnType.CONSUMPTION -> sourceType.isEPN() && targetType.isPN() && targetPortType == SbgnType.INPUT_AND_OUTPUT
+                info.type == SbgnType.PRODUCTION -> sourceType.isPN() && sourcePortType == SbgnType.INPUT_AND_OUTPUT && targetType.isEPN()
+                info.type.isRegulation() -> ((sourceType.isEPN() && sourceType != SbgnType.SOURCE_AND_SINK) || sourceType.isLogic()) &&
+                        (targetType.isPN() && targetType != SbgnType.ASSOCIATION && targetType != SbgnType.DISSOCIATION && targetPortType != SbgnType.INPUT_AND_OUTPUT || targetType == SbgnType.PHENOTYPE)
+                info.type == SbgnType.LOGIC_ARC -> (sourceType.isEPN() || sourceType.isLogic()) && targetType.isLogic()
+                info.type == SbgnType.EQUIVALENCE_ARC -> sourceType.isReference() && (targetType.isEPN() || targetType == SbgnType.COMPARTMENT) ||
+                        (sourceType.isEPN() || sourceType == SbgnType.COMPARTMENT) && targetType.isReference()
+                else -> false
+            }
+            val issues = mutableListOf<Issue>()
+            if(!isPermitted) {
+                issues += Issue(Rule.INVALID_ARC, info.edge, "${info.type.displayName} arc from ${describe(source)} to ${describe(target)} is not permitted")
+            }
+            if(target.parent?.let { nodes[it] }?.type?.isComplex() == true) {
+                issues += Issue(Rule.INVALID_ARC, info.edge, "${info.type.displayName} arc ends at complex member ${describe(target)}")
+            }
+            if(info.type != SbgnType.MODULATION && source.parent?.let { nodes[it] }?.type?.isComplex() == true) {
+                issues += Issue(Rule.INVALID_ARC, info.edge, "${info.type.displayName} arc starts at complex member ${describe(source)}")
+            }
+            return issues
+        }
+
+        private fun checkNode(info: NodeInfo):List<Issue> {
+            val node = info.node
+            val type = info.type
+            val issues = mutableListOf<Issue>()
+            val nodeEdges = edgesAt[node]?.mapNotNull { edges[it] } ?: emptyList()
+
+            if(type.isPN() || type.isLogic()) {
+                val portCount = info.portTypes.values.count { it == SbgnType.INPUT_AND_OUTPUT }
+                if(portCount != 2) issues += Issue(Rule.PROCESS_PORTS, node, "${describe(info)} has $portCount instead of 2 input/output ports")
+            }
+            if(type.isPN()) {
+                val consumptions = nodeEdges.filter { it.type == SbgnType.CONSUMPTION && it.target == node }
+                val productions = nodeEdges.filter { it.type == SbgnType.PRODUCTION && it.source == node }
+                val consumptionPorts = consumptions.mapTo(HashSet()) { it.targetPort }
+                val productionPorts = productions.mapTo(HashSet()) { it.sourcePort }
+                if(consumptionPorts.any { it in productionPorts }) {
+                    issues += Issue(Rule.PROCESS_PORTS, node, "${describe(info)} has consumption and production arcs at the same port")
+                }
+                if(consumptionPorts.size > 1) {
+                    issues += Issue(Rule.PROCESS_PORTS, node, "${describe(info)} has consumption arcs at both ports")
+                }
+                if(productions.isEmpty() || consumptions.isEmpty() && productionPorts.size < 2) {
+                    issues += Issue(Rule.MISSING_ARC, node, "${describe(info)} needs at least one consumption and one production arc")
+                }
+                if(type == SbgnType.ASSOCIATION && productions.size > 1) {
+                    issues += Issue(Rule.ARC_CARDINALITY, node, "${describe(info)} has ${productions.size} products instead of 1")
+                }
+                if(type == SbgnType.DISSOCIATION && consumptions.size > 1) {
+                    issues += Issue(Rule.ARC_CARDINALITY, node, "${describe(info)} has ${consumptions.size} substrates instead of 1")
+                }
+            }
+            if(type.isLogic()) {
+                val inputs = nodeEdges.count { it.type == SbgnType.LOGIC_ARC && it.target == node }
+                val outputs = nodeEdges.count { it.source == node }
+                if(outputs > 1) issues += Issue(Rule.ARC_CARDINALITY, node, "${describe(info)} has $outputs outputs instead of 1")
+                if(type == SbgnType.NOT && inputs > 1) issues += Issue(Rule.ARC_CARDINALITY, node, "${describe(info)} has $inputs inputs instead of 1")
+                val minInputs = if(type == SbgnType.NOT) 1 else 2
+                if(outputs == 0 || inputs < minInputs) {
+                    issues += Issue(Rule.MISSING_ARC, node, "${describe(info)} needs $minInputs or more inputs and one output")
+                }
+            }
+            if(type == SbgnType.SOURCE_AND_SINK && nodeEdges.size > 1) {
+                issues += Issue(Rule.ARC_CARDINALITY, node, "${describe(info)} has ${nodeEdges.size} arcs instead of 1")
+            }
+            if(type.isEPN() && compartmentCount > 0 && !isInCompartment(info)) {
+                issues += Issue(Rule.EPN_OUTSIDE_COMPARTMENT, node, "${describe(info)} lies outside of all compartments")
+            }
+            info.cloneKey?.let { key ->
+                val groupSize = cloneGroups[key]?.size ?: 0
+                if(info.isClone && groupSize < 2) issues += Issue(Rule.DANGLING_CLONE_MARKER, node, "${describe(info)} has a clone marker but no clones")
+                if(!info.isClone && groupSize > 1) issues += Issue(Rule.MISSING_CLONE_MARKER, node, "${describe(info)} has ${groupSize - 1} clones but no clone marker")
+            }
+            return issues
+        }
+
+        private fun isInCompartment(info: NodeInfo):Boolean {
+            var parent = info.parent?.let { nodes[it] }
+            while(parent != null) {
+                if(parent.type == SbgnType.COMPARTMENT) return true
+                parent = parent.parent?.let { nodes[it] }
+            }
+            return false
+        }
+
+        private fun describe(info: NodeInfo) = info.name?.let { "${info.type.displayName} '$it'" } ?: info.type.displayName
+
+        private val SbgnType.displayName get() = name.toLowerCase().replace('_', ' ')
+    }
+}
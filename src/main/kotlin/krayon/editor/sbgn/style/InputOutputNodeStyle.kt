@@ -72,6 +72,10 @@ abstract class InputOutputNodeStyle : AbstractNodeStyle(), IStyleable {
         }
 
         override fun paint(context: IRenderContext, g: Graphics2D) {
+            if(!LevelOfDetail.showOutlines(context)) {
+                LevelOfDetail.paintSimplifiedOutline(g, node.layout.toSizeD(), paint, pen)
+                return
+            }
             g.create { gfx ->
                 val isHorizontal = node.orientation == "horizontal"
                 with(node.layout) {
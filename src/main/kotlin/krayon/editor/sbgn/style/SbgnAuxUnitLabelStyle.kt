@@ -14,7 +14,6 @@ import com.yworks.yfiles.graph.ILabel
 import com.yworks.yfiles.graph.INode
 import com.yworks.yfiles.graph.labelmodels.ILabelModelParameterFinder
 import com.yworks.yfiles.graph.styles.DefaultLabelStyle
-import com.yworks.yfiles.graph.styles.DefaultLabelStyleRenderer
 import com.yworks.yfiles.graph.styles.ILabelStyle
 import com.yworks.yfiles.graph.styles.INodeStyle
 import com.yworks.yfiles.view.Pen
@@ -35,11 +34,11 @@ class SbgnAuxUnitLabelStyle(shapeType:AuxUnitShape, insets:InsetsD) : NodeStyleL
 
     var backgroundPen: Pen
         get() = (nodeStyle as AuxUnitShapeStyle).pen
-        set(value) { (nodeStyle as AuxUnitShapeStyle).pen = value }
+        set(value) { (nodeStyle as AuxUnitShapeStyle).pen = value; invalidate() }
 
     var backgroundPaint: Paint
         get() = (nodeStyle as AuxUnitShapeStyle).paint
-        set(value) { (nodeStyle as AuxUnitShapeStyle).paint = value }
+        set(value) { (nodeStyle as AuxUnitShapeStyle).paint = value; invalidate() }
 
     var font: Font
         get() = (labelStyle as DefaultLabelStyle).font
@@ -50,6 +49,7 @@ class SbgnAuxUnitLabelStyle(shapeType:AuxUnitShape, insets:InsetsD) : NodeStyleL
                 font = value
                 minHeight = (textLayout.ascent + textLayout.descent).toDouble() + insets.verticalInsets
             }
+            invalidate()
         }
 
     var insets: InsetsD
@@ -59,12 +59,13 @@ class SbgnAuxUnitLabelStyle(shapeType:AuxUnitShape, insets:InsetsD) : NodeStyleL
                 insets = value
                 font = font //side-effect: update minHeight
             }
+            invalidate()
         }
 
     @Suppress("MemberVisibilityCanBePrivate")
     var textPaint: Paint?
         get() = (labelStyle as DefaultLabelStyle).textPaint
-        set(value) { (labelStyle as DefaultLabelStyle).textPaint = value }
+        set(value) { (labelStyle as DefaultLabelStyle).textPaint = value; invalidate() }
 
     enum class AuxUnitShape {
         RECTANGLE,
@@ -76,6 +77,7 @@ class SbgnAuxUnitLabelStyle(shapeType:AuxUnitShape, insets:InsetsD) : NodeStyleL
         init {
             hasDropShadow = false
         }
+        override val isDecoration = true
         var auxUnitShapeType = AuxUnitShape.CAPSULE
         override fun createGeneralPath(node: INode, size: SizeD): GeneralPath {
             //println("size=$size")
@@ -125,6 +127,7 @@ class SbgnAuxUnitLabelStyle(shapeType:AuxUnitShape, insets:InsetsD) : NodeStyleL
                     StateVariableShapeValue.Capsule -> (nodeStyle as AuxUnitShapeStyle).auxUnitShapeType = AuxUnitShape.CAPSULE
                     else -> (nodeStyle as AuxUnitShapeStyle).auxUnitShapeType = AuxUnitShape.ELLIPSE
                 }
+                invalidate()
             }
         }
     }
@@ -157,7 +160,7 @@ class SbgnAuxUnitLabelStyle(shapeType:AuxUnitShape, insets:InsetsD) : NodeStyleL
         }
     }
 
-    class MyLabelStyle(insets: InsetsD) : DefaultStyleableLabelStyle(object:DefaultLabelStyleRenderer() {
+    class MyLabelStyle(insets: InsetsD) : DefaultStyleableLabelStyle(object:LevelOfDetail.LabelStyleRenderer(isDecoration = true) {
         override fun getPreferredSize(): SizeD {
             return if(label.text.isEmpty()) {
                 val size = super.getPreferredSize()
@@ -138,10 +138,10 @@ class SbgnCalloutLabelStyle(private val labelStyleDelegate: DefaultStyleableLabe
         override fun initializeDrag(p0: IInputModeContext) {}
 
         override fun dragFinished(context: IInputModeContext, p1: PointD, p2: PointD) {
-            val nodeLayout = (label?.owner as INode).layout
-            calloutPoint = nodeLayout.convertToRatioPoint(p2)
-            context.graph.addValueUndoEdit("Move Callout Tip Position",
-                    nodeLayout.convertToRatioPoint(p1), calloutPoint, { calloutPoint = it })
+            val owner = label?.owner as INode
+            calloutPoint = owner.layout.convertToRatioPoint(p2)
+            context.graph.addValueUndoEdit("Move Callout Tip Position", owner.layout.convertToRatioPoint(p1), calloutPoint,
+                    ValueUndoUnit.mergeKey(label!!, "calloutPoint"), { calloutPoint = it })
         }
         override fun cancelDrag(p0: IInputModeContext?, p1: PointD?) {}
         override fun getType() = HandleTypes.MOVE!!
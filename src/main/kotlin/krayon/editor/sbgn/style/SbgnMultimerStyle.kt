@@ -24,6 +24,7 @@ import com.yworks.yfiles.view.input.ItemClickedEventArgs
 import krayon.editor.base.style.DropShadowVisual
 import krayon.editor.base.style.IStyleable
 import krayon.editor.base.style.IStyleableContext
+import krayon.editor.base.style.LevelOfDetail
 import krayon.editor.base.style.StyleProperty
 import krayon.editor.base.ui.create
 import krayon.editor.sbgn.model.*
@@ -98,12 +99,12 @@ abstract class SbgnMultimerStyle : AbstractNodeStyle(), IStyleable {
 
     protected abstract fun createShape(node:INode, size:SizeD):GeneralPath
 
-    fun paintPath(gfx:Graphics2D, node:INode, path:GeneralPath) {
+    fun paintPath(gfx:Graphics2D, node:INode, path:GeneralPath, showDecorations:Boolean = true) {
         val path2D = path.createPath(Matrix2D())
         gfx.paint = paint
 
         gfx.fill(path2D)
-        if(node.isClone && clonePaint != null) {
+        if(showDecorations && node.isClone && clonePaint != null) {
             val cloneGfx = gfx.create() as Graphics2D
             val bounds = path.bounds
             cloneGfx.clip(Rectangle2D.Double(0.0, bounds.height*(1.0-clonePercentage), bounds.width, bounds.height*clonePercentage))
@@ -129,8 +130,16 @@ abstract class SbgnMultimerStyle : AbstractNodeStyle(), IStyleable {
         }
 
         override fun paint(context: IRenderContext, g: Graphics2D) {
+            if(!LevelOfDetail.showOutlines(context)) {
+                LevelOfDetail.paintSimplifiedOutline(g, node.layout.toSizeD(), paint, pen)
+                return
+            }
+            val showDecorations = LevelOfDetail.showDecorations(context)
             g.create { gfx ->
-                if(node.type.isMultimer()) {
+                if(!showDecorations) {
+                    paintPath(gfx, node, shape, false)
+                }
+                else if(node.type.isMultimer()) {
                     gfx.translate(multimerOffset, multimerOffset)
                     paintPath(gfx, node, shape)
                     gfx.translate(-multimerOffset, -multimerOffset)
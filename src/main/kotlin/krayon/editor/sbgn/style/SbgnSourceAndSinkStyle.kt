@@ -20,6 +20,7 @@ import com.yworks.yfiles.view.ShapeVisual
 import com.yworks.yfiles.view.VisualGroup
 import krayon.editor.base.style.GeneralPathNodeStyle
 import krayon.editor.base.style.IStyleable
+import krayon.editor.base.style.LevelOfDetail
 import java.awt.geom.Line2D
 
 class SbgnSourceAndSinkStyle : GeneralPathNodeStyle(), IStyleable {
@@ -37,7 +38,10 @@ class SbgnSourceAndSinkStyle : GeneralPathNodeStyle(), IStyleable {
         }
     }
 
-    private fun createLineVisual(node:INode) = with(node.layout) { ShapeVisual(Line2D.Double(x, y+height, x+width, y), pen, paint) }
+    private fun createLineVisual(node:INode):IVisual {
+        val line = with(node.layout) { ShapeVisual(Line2D.Double(x, y+height, x+width, y), pen, paint) }
+        return IVisual { context, g -> if(LevelOfDetail.showOutlines(context)) line.paint(context, g) }
+    }
 
     override fun updateVisual(context: IRenderContext, visual: IVisual, node: INode): IVisual {
         return (visual as VisualGroup).apply {
@@ -240,7 +240,8 @@ class SbgnTerminalPortStyle : AbstractPortStyle(), IStyleable {
                                 startSize = terminalSize
                             }
                             override fun onFinished(context: IInputModeContext, p1: PointD, p2: PointD) {
-                                context.graph.addValueUndoEdit("Change Terminal Size", startSize, terminalSize, { terminalSize = it })
+                                context.graph.addValueUndoEdit("Change Terminal Size", startSize, terminalSize,
+                                        ValueUndoUnit.mergeKey(port, "terminalSize"), { terminalSize = it })
                             }
                         }
                     }
@@ -261,12 +262,14 @@ class SbgnTerminalPortStyle : AbstractPortStyle(), IStyleable {
                     }
                 }
                 var style: SbgnTerminalPortStyle? = null
+                var editedPort: IPort? = null
 
                 override fun onEvent(any: Any, args: ItemClickedEventArgs<IModelItem>) {
                     val port = args.item
                     if(port is IPort && port.style is SbgnTerminalPortStyle) {
                         args.isHandled = true
                         style = port.style as SbgnTerminalPortStyle
+                        editedPort = port
                         val bounds = style?.bounds?.toRectD()
                         node.layout = bounds
                         label.layoutParameter = FreeNodeLabelModel.INSTANCE.createCanonicalParameter(bounds, OrientedRectangle(bounds))
@@ -276,7 +279,8 @@ class SbgnTerminalPortStyle : AbstractPortStyle(), IStyleable {
                         if(labelChangedListener == null) {
                             labelChangedListener = IEventListener { _, labelArgs ->
                                 if(labelArgs.item === label) {
-                                    geim.graph.addValueUndoEdit("Change Terminal Text", style!!.text, labelArgs.item.text, { style?.text = it })
+                                    geim.graph.addValueUndoEdit("Change Terminal Text", style!!.text, labelArgs.item.text,
+                                            ValueUndoUnit.mergeKey(editedPort!!, "text"), { style?.text = it })
                                     style?.text = labelArgs.item.text
                                 }
                             }
@@ -9,22 +9,34 @@
 
 package krayon.editor.sbgn.ui
 
+import com.yworks.yfiles.geometry.PointD
 import com.yworks.yfiles.graph.DefaultGraph
 import com.yworks.yfiles.graph.GraphCopier
+import com.yworks.yfiles.graph.IGraph
 import com.yworks.yfiles.graph.INode
+import com.yworks.yfiles.view.GraphComponent
+import com.yworks.yfiles.view.ICanvasObjectDescriptor
+import com.yworks.yfiles.view.IRenderContext
+import com.yworks.yfiles.view.IVisual
 import com.yworks.yfiles.view.input.DropInputMode
 import krayon.editor.base.Application
 import krayon.editor.base.ApplicationEvent
+import krayon.editor.base.ui.ProblemReporter
+import krayon.editor.base.util.beginEdit
 import krayon.editor.base.util.getBounds
 import krayon.editor.base.util.minus
-import krayon.editor.sbgn.KrayonForSbgn.graphComponent
+import krayon.editor.sbgn.KrayonForSbgn
 import krayon.editor.sbgn.command.OpenSbgn
 import krayon.editor.sbgn.io.SbgnReader
+import java.awt.BasicStroke
+import java.awt.Color
+import java.awt.Graphics2D
 import java.awt.datatransfer.DataFlavor
 import java.awt.dnd.DropTargetDragEvent
 import java.io.File
 import java.io.FileInputStream
 import java.io.IOException
+import javax.swing.SwingUtilities
 import javax.swing.TransferHandler
 
 class SbgnFileDropInputMode : DropInputMode(DataFlavor.javaFileListFlavor){
@@ -49,20 +61,67 @@ class SbgnFileDropInputMode : DropInputMode(DataFlavor.javaFileListFlavor){
         }
     }
 
+    /**
+     * reads the file on a worker thread while a placeholder marks the drop location, then inserts the diagram as a
+     * single undoable edit and selects the inserted nodes.
+     */
     private fun pasteGraph(file:File) {
-        FileInputStream(file).use { stream ->
-            val newGraph = DefaultGraph()
-            SbgnReader().read(stream, newGraph, null)
-            val offset = mousePosition - newGraph.getBounds().center
-            val selection = graphComponent.selection
-            selection.clear()
-            GraphCopier().copy(newGraph, { _ -> true }, graphComponent.graph, offset, { _, copiedItem ->
-                if (copiedItem is INode) {
-                    selection.setSelected(copiedItem, true)
+        val graphComponent = KrayonForSbgn.graphComponent
+        val location = mousePosition.toPointD()
+        val placeholder = graphComponent.rootGroup.addChild(PlaceholderVisual(location, file.name), ICanvasObjectDescriptor.VISUAL)
+        graphComponent.invalidate()
+
+        Thread({
+            try {
+                val newGraph = DefaultGraph()
+                FileInputStream(file).use { stream -> SbgnReader().read(stream, newGraph, null) }
+                SwingUtilities.invokeLater {
+                    placeholder.remove()
+                    insertGraph(graphComponent, newGraph, location)
+                }
+            } catch (ex: Exception) {
+                SwingUtilities.invokeLater {
+                    placeholder.remove()
+                    graphComponent.invalidate()
+                    ProblemReporter.reportThrowable(ex, "Problem reading ${file.name}", graphComponent)
                 }
+            }
+        }, "sbgn-file-drop").apply { isDaemon = true }.start()
+    }
+
+    private fun insertGraph(graphComponent: GraphComponent, newGraph: IGraph, location: PointD) {
+        val graph = graphComponent.graph
+        val offset = location - newGraph.getBounds().center
+        val insertedNodes = ArrayList<INode>(newGraph.nodes.size())
+        graph.beginEdit("Insert SBGN File").use { _ ->
+            GraphCopier().copy(newGraph, { _ -> true }, graph, offset, { _, copiedItem ->
+                if (copiedItem is INode) insertedNodes += copiedItem
             })
+        }
+        with(graphComponent.selection) {
+            clear()
+            insertedNodes.forEach { setSelected(it, true) }
+        }
+        Application.fireApplicationEvent(ApplicationEvent(this,"DIAGRAM.LOADED"))
+    }
 
-            Application.fireApplicationEvent(ApplicationEvent(this,"DIAGRAM.LOADED"))
+    private class PlaceholderVisual(private val center: PointD, private val text: String) : IVisual {
+        override fun paint(context: IRenderContext, g: Graphics2D) {
+            val gfx = g.create() as Graphics2D
+            gfx.transform(context.toViewTransform)
+            val viewCenter = context.toViewCoordinates(center)
+            val metrics = gfx.fontMetrics
+            val width = metrics.stringWidth(text) + 20
+            val height = metrics.height + 12
+            val x = viewCenter.x.toInt() - width / 2
+            val y = viewCenter.y.toInt() - height / 2
+            gfx.color = Color(255, 255, 255, 200)
+            gfx.fillRect(x, y, width, height)
+            gfx.color = Color.GRAY
+            gfx.stroke = BasicStroke(1f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10f, floatArrayOf(4f, 4f), 0f)
+            gfx.drawRect(x, y, width, height)
+            gfx.drawString(text, x + 10, y + 6 + metrics.ascent)
+            gfx.dispose()
         }
     }
 
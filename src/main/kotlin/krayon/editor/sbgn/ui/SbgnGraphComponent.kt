@@ -26,6 +26,8 @@ import krayon.editor.base.style.AnchoredNodeLabelModel
 import krayon.editor.base.style.HighlightNodesManager
 import krayon.editor.base.style.LabeledHighlightNodeVisualTemplate
 import krayon.editor.base.ui.*
+import krayon.editor.base.util.ApplicationSettings
+import krayon.editor.base.util.BoundedUndoEngine
 import krayon.editor.base.util.MOUSE_MIDDLE_PRESSED
 import krayon.editor.base.util.ensureBefore
 import krayon.editor.base.util.getMainCanvasObject
@@ -43,6 +45,23 @@ class SbgnGraphComponent : StyleableGraphComponent<SbgnType>(SbgnType.MAP) {
     val constraintManager = SbgnConstraintManager
     private val itemType = SbgnItemType()
 
+    private val lazyCloneMarkerIndex = lazy { CloneMarkerIndex(graph) }
+    private val lazyValidator = lazy { SbgnValidator(graph) }
+    private val lazySearchIndex = lazy { SbgnSearchIndex(graph) }
+    val cloneMarkerIndex by lazyCloneMarkerIndex
+    val validator by lazyValidator
+    val searchIndex by lazySearchIndex
+    var undoHistory:BoundedUndoEngine? = null
+        private set
+    /** undo token of the last load or save, see [isModified] */
+    private var savedUndoToken:Any? = null
+
+    /** whether the diagram changed since it was last loaded or saved */
+    val isModified get() = undoHistory?.let { it.token != savedUndoToken } ?: true
+
+    /** creates item visuals only near the viewport, large maps open and scroll without visuals for everything */
+    val lazyVisuals = LazyVisualSupport(this)
+
     private val highlightNodesManager = object:HighlightNodesManager(this) {
         override fun createVisualTemplate(node: INode, tag: String): IVisualTemplate {
             return LabeledHighlightNodeVisualTemplate(highlightPen, tag, background)
@@ -57,10 +76,15 @@ class SbgnGraphComponent : StyleableGraphComponent<SbgnType>(SbgnType.MAP) {
 
         enableEdgesBeforeNodesMode()
 
-        val foldingView = FoldingManager().createFoldingView()
+        val foldingView = FoldingManager(BoundedUndoEngine.createGraph()).createFoldingView()
         graph = foldingView.graph
 
         foldingView.manager.masterGraph.isUndoEngineEnabled = true
+        undoHistory = foldingView.manager.masterGraph.undoEngine as? BoundedUndoEngine
+        undoHistory?.let {
+            ApplicationSettings.UNDO_MAX_DEPTH.value?.toString()?.toIntOrNull()?.let { depth -> it.maxDepth = depth }
+            ApplicationSettings.UNDO_MAX_MEGABYTES.value?.toString()?.toIntOrNull()?.let { mb -> it.maxBytes = mb.toLong() shl 20 }
+        }
 
         with(SbgnDecorations) {
                 registerPortCandidateProvider(graph)
@@ -119,6 +143,80 @@ class SbgnGraphComponent : StyleableGraphComponent<SbgnType>(SbgnType.MAP) {
         }
     }
 
+    /** nodes and edges in drawing order while the visuals are released */
+    private var releasedDrawingOrder:List<IModelItem>? = null
+
+    val isVisualsReleased get() = releasedDrawingOrder != null
+
+    fun markSaved() {
+        savedUndoToken = undoHistory?.token
+    }
+
+    /** marks the diagram as changed, e.g. after it has been recovered from an autosave */
+    fun markModified() {
+        savedUndoToken = Any()
+    }
+
+    /**
+     * stops the validator and the indexes of this diagram, once it is closed.
+     */
+    fun dispose() {
+        if(lazyValidator.isInitialized()) validator.stop()
+        if(lazyCloneMarkerIndex.isInitialized()) cloneMarkerIndex.dispose()
+        if(lazySearchIndex.isInitialized()) searchIndex.dispose()
+        lazyVisuals.uninstall()
+    }
+
+    /**
+     * removes the canvas objects of all graph items, e.g. while the component sits in an inactive tab. The drawing
+     * order of nodes and edges is kept for [restoreVisuals].
+     */
+    fun releaseVisuals() {
+        if(isVisualsReleased) return
+        val drawingOrder = ArrayList<IModelItem>(graph.nodes.size() + graph.edges.size())
+        fun collect(group: ICanvasObjectGroup) {
+            for(canvasObject in group) {
+                (canvasObject.userObject as? IModelItem)?.let { if(it is INode || it is IEdge) drawingOrder += it }
+                if(canvasObject is ICanvasObjectGroup) collect(canvasObject)
+            }
+        }
+        collect(graphModelManager.nodeGroup)
+        collect(graphModelManager.edgeGroup)
+        releasedDrawingOrder = drawingOrder
+        graphModelManager.graph = null
+        lazyVisuals.clear()
+    }
+
+    fun restoreVisuals() {
+        val drawingOrder = releasedDrawingOrder ?: return
+        releasedDrawingOrder = null
+        graphModelManager.graph = graph
+        drawingOrder.forEach { item ->
+            if(graph.contains(item)) when(item) {
+                is INode -> graphModelManager.getMainCanvasObject(item).toFront()
+                is IEdge -> graphModelManager.getCanvasObject(item)?.toFront()
+            }
+        }
+        invalidate()
+    }
+
+    /**
+     * auto-include contents of selected complex node
+     */
+    fun withComplexContents(predicate: Predicate<IModelItem>):Predicate<IModelItem> {
+        return Predicate { item ->
+            if (!predicate.test(item)) {
+                val node = item as? INode ?: (item as? ILabel)?.owner as? INode
+                if(node != null) {
+                    for (pathNode in graph.groupingSupport.getPathToRoot(node)) {
+                        if (pathNode.type.isComplex() && predicate.test(pathNode)) return@Predicate true
+                    }
+                }
+                false
+            } else true
+        }
+    }
+
     override fun createGraphClipboard(): GraphClipboard {
         val graphCopier = object:GraphCopier() {
             override fun copyTag(item: IModelItem, tag: Any?): Any? {
@@ -127,7 +225,7 @@ class SbgnGraphComponent : StyleableGraphComponent<SbgnType>(SbgnType.MAP) {
             }
         }
 
-        return object:GraphClipboard() {
+        return object:SnapshotGraphClipboard() {
             init {
                 duplicateCopier = graphCopier
                 fromClipboardCopier = graphCopier
@@ -135,30 +233,15 @@ class SbgnGraphComponent : StyleableGraphComponent<SbgnType>(SbgnType.MAP) {
                 parentNodeDetection = ParentNodeDetectionModes.ROOT
             }
 
-            /**
-             * auto-include contents of selected complex node
-             */
-            fun Predicate<IModelItem>.withAutoInclusion():Predicate<IModelItem>? {
-                val predicate = this
-                return Predicate { item ->
-                    if (!predicate.test(item)) {
-                        val node = item as? INode ?: (item as? ILabel)?.owner as? INode
-                        if(node != null) {
-                            for (pathNode in graph.groupingSupport.getPathToRoot(node)) {
-                                if (pathNode.type.isComplex() && predicate.test(pathNode)) return@Predicate true
-                            }
-                        }
-                        false
-                    } else true
-                }
-            }
+            // only nodes are copied independently
+            override fun isCopiedWithOwner(item: IModelItem) = item !is INode
 
             override fun duplicate(context: IInputModeContext?, graph: IGraph, predicate: Predicate<IModelItem>?,callback: IElementCopiedCallback?) {
-                super.duplicate(context, graph, predicate?.withAutoInclusion(), callback)
+                super.duplicate(context, graph, predicate?.let { withComplexContents(it) }, callback)
             }
 
             override fun copy(graph: IGraph, predicate: Predicate<IModelItem>?) {
-                super.copy(graph, predicate?.withAutoInclusion())
+                super.copy(graph, predicate?.let { withComplexContents(it) })
             }
         }
     }
@@ -313,6 +396,7 @@ class SbgnGraphComponent : StyleableGraphComponent<SbgnType>(SbgnType.MAP) {
             isHierarchicEdgeNestingEnabled = false
             edgeGroup.above(nodeGroup)
         }
+        lazyVisuals.install()
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.ui
+
+import com.yworks.yfiles.geometry.RectD
+import com.yworks.yfiles.graph.IEdge
+import com.yworks.yfiles.graph.ILabel
+import com.yworks.yfiles.graph.IModelItem
+import com.yworks.yfiles.graph.INode
+import krayon.editor.base.ui.UiFactory
+import krayon.editor.sbgn.model.SbgnValidator
+import java.awt.BorderLayout
+import java.awt.Color
+import java.awt.Component
+import java.awt.event.KeyEvent
+import java.awt.event.MouseAdapter
+import java.awt.event.MouseEvent
+import javax.swing.*
+
+/**
+ * Lists the issues found by the [SbgnValidator] of a graph component, errors first. Double-click or Enter selects the
+ * item of an issue and zooms to it. The validator runs while the panel is attached. Results of incremental checks
+ * only replace the issues of the checked items, then the list is rebuilt once.
+ */
+class SbgnIssuePanel : JPanel(BorderLayout()) {
+
+    var errorColor = Color(192, 32, 32)
+    var warningColor = Color(160, 110, 0)
+    /** maximum zoom used when zooming to an item */
+    var maxZoom = 1.5
+
+    private var listModel = DefaultListModel<SbgnValidator.Issue>()
+    private val issueList = JList(listModel)
+    private val summaryLabel = JLabel()
+    private var graphComponent: SbgnGraphComponent? = null
+    /** issues in the list model by item. Errors come first in the model, followed by the warnings. */
+    private val shownIssues = LinkedHashMap<IModelItem, List<SbgnValidator.Issue>>()
+    private var errorCount = 0
+
+    private val issueListener = { validator:SbgnValidator, changedItems:Collection<IModelItem>? -> updateIssues(validator, changedItems) }
+
+    init {
+        issueList.selectionMode = ListSelectionModel.SINGLE_SELECTION
+        issueList.cellRenderer = object: DefaultListCellRenderer() {
+            override fun getListCellRendererComponent(list: JList<*>?, value: Any?, index: Int, isSelected: Boolean, cellHasFocus: Boolean): Component {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus)
+                (value as? SbgnValidator.Issue)?.let { issue ->
+                    text = "${issue.severity.name.toLowerCase()}: ${issue.message}"
+                    if(!isSelected) foreground = if(issue.severity == SbgnValidator.Severity.ERROR) errorColor else warningColor
+                }
+                return this
+            }
+        }
+        issueList.addMouseListener(object: MouseAdapter() {
+            override fun mouseClicked(e: MouseEvent) {
+                if(e.clickCount == 2) issueList.selectedValue?.let { zoomToIssue(it) }
+            }
+        })
+        issueList.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "zoomToIssue")
+        issueList.actionMap.put("zoomToIssue", UiFactory.createAction { issueList.selectedValue?.let { zoomToIssue(it) } })
+
+        val header = JPanel(BorderLayout()).apply {
+            border = BorderFactory.createEmptyBorder(2, 5, 2, 5)
+            add(summaryLabel, BorderLayout.CENTER)
+            add(JButton(UiFactory.createAction {
+                graphComponent?.validator?.apply {
+                    validate()
+                    checkAll()
+                }
+            }).apply { text = "Check All" }, BorderLayout.EAST)
+        }
+        add(header, BorderLayout.NORTH)
+        add(JScrollPane(issueList), BorderLayout.CENTER)
+    }
+
+    /**
+     * Shows the issues of the given graph component. The validator of the previous component is stopped.
+     */
+    fun attach(newGraphComponent: SbgnGraphComponent?) {
+        graphComponent?.validator?.let {
+            it.issueListeners -= issueListener
+            it.stop()
+        }
+        graphComponent = newGraphComponent
+        listModel.clear()
+        shownIssues.clear()
+        errorCount = 0
+        newGraphComponent?.validator?.let {
+            it.issueListeners += issueListener
+            it.start()
+            updateIssues(it, null)
+        }
+    }
+
+    /**
+     * replaces the shown issues of the changed items, or all shown issues if changedItems is null.
+     */
+    private fun updateIssues(validator: SbgnValidator, changedItems: Collection<IModelItem>?) {
+        val selected = issueList.selectedValue
+        if(changedItems == null) {
+            shownIssues.clear()
+            shownIssues.putAll(validator.issueList.groupBy { it.item })
+            showIssues()
+        }
+        else {
+            var isChanged = false
+            changedItems.forEach { item ->
+                val itemIssues = validator.getIssues(item)
+                val oldIssues = if(itemIssues.isEmpty()) shownIssues.remove(item) else shownIssues.put(item, itemIssues)
+                if((oldIssues ?: emptyList()) != itemIssues) isChanged = true
+            }
+            if(isChanged) showIssues()
+        }
+        if(selected != null && issueList.selectedValue == null) {
+            shownIssues[selected.item]?.firstOrNull { it.rule == selected.rule }?.let { issueList.setSelectedValue(it, false) }
+        }
+        val issueCount = listModel.size()
+        summaryLabel.text = when {
+            issueCount == 0 && validator.isChecking -> "Checking..."
+            issueCount == 0 -> "No issues"
+            else -> "$errorCount errors, ${issueCount - errorCount} warnings"
+        }
+    }
+
+    /** replaces the list model by one with the shown issues, so that the list gets a single update */
+    private fun showIssues() {
+        val issues = shownIssues.values.flatten().sortedBy { it.severity }
+        errorCount = issues.count { it.severity == SbgnValidator.Severity.ERROR }
+        listModel = DefaultListModel()
+        issues.forEach { listModel.addElement(it) }
+        issueList.model = listModel
+    }
+
+    private fun zoomToIssue(issue: SbgnValidator.Issue) {
+        val graphComponent = graphComponent ?: return
+        val item = issue.item
+        if(!graphComponent.graph.contains(item)) return
+        val bounds = when(item) {
+            is INode -> item.layout.toRectD()
+            is IEdge -> RectD.add(item.sourcePort.location.let { RectD(it.x, it.y, 0.0, 0.0) }, item.targetPort.location.let { RectD(it.x, it.y, 0.0, 0.0) })
+            is ILabel -> item.layout.bounds
+            else -> return
+        }.getEnlarged(40.0)
+        graphComponent.selection.clear()
+        graphComponent.selection.setSelected(item, true)
+        val zoom = Math.min(maxZoom, Math.min(graphComponent.width / bounds.width, graphComponent.height / bounds.height))
+        graphComponent.zoomTo(bounds.center, zoom)
+        graphComponent.requestFocusInWindow()
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.ui
+
+import com.yworks.yfiles.geometry.PointD
+import com.yworks.yfiles.geometry.RectD
+import com.yworks.yfiles.graph.*
+import com.yworks.yfiles.graph.portlocationmodels.IPortLocationModelParameter
+import com.yworks.yfiles.utils.IEventListener
+import com.yworks.yfiles.utils.PropertyChangedEventArgs
+import krayon.editor.base.util.minus
+import krayon.editor.base.util.plus
+import java.awt.*
+import java.awt.event.ComponentAdapter
+import java.awt.event.ComponentEvent
+import java.awt.event.MouseAdapter
+import java.awt.event.MouseEvent
+import java.awt.geom.Path2D
+import java.awt.geom.Rectangle2D
+import java.awt.image.BufferedImage
+import java.util.concurrent.Executors
+import javax.swing.JComponent
+import javax.swing.SwingUtilities
+import javax.swing.Timer
+
+/**
+ * Overview of the diagram of a graph component. The diagram is drawn into a cached low-resolution raster with
+ * simplified shapes: nodes as boxes, arcs as lines, no labels and no styles. Graph events mark items dirty. Once per
+ * [flushDelay] the regions covered by dirty items are recorded as plain geometry and redrawn by a worker thread, so the
+ * main canvas never waits for the overview. Dragging the viewport rectangle pans the graph component.
+ */
+class SbgnOverviewPanel : JComponent() {
+
+    var nodeColor = Color(100, 100, 100)
+    var groupNodeColor = Color(120, 120, 120, 50)
+    var edgeColor = Color(160, 160, 160)
+    var viewportColor = Color(161, 192, 87)
+    /** upper bound for the longer side of the raster, in pixels */
+    var maxRasterSize = 1024
+    /** dirty items beyond this share of all items cause a full render */
+    var fullRenderRatio = 0.3
+
+    var flushDelay
+        get() = flushTimer.initialDelay
+        set(value) { flushTimer.initialDelay = value }
+
+    private class NodeRecord(val bounds: RectD, val isGroup: Boolean)
+    private class EdgeRecord(val bounds: RectD, val points: DoubleArray)
+
+    /** items to draw into [region] of the raster. A full task creates a new raster of the given size. */
+    private class RenderTask(val generation: Int, val isFull: Boolean, val region: RectD, val worldBounds: RectD,
+                             val width: Int, val height: Int, val background: Color, val nodes: List<NodeRecord>, val edges: List<EdgeRecord>)
+
+    private var graphComponent: SbgnGraphComponent? = null
+    private val graph get() = graphComponent!!.graph
+
+    /** bounds of each node and edge as last handed to the worker */
+    private val drawnBounds = HashMap<IModelItem, RectD>()
+    /** [drawnBounds] by area, rebuilt with each raster generation */
+    private var drawnGrid = BoundsGrid(1.0)
+    private val dirtyItems = LinkedHashSet<IModelItem>()
+    private var isFullRenderPending = false
+    /** tasks of earlier generations get dropped */
+    private var generation = 0
+    /** world area and size of the current raster generation, which the worker may not have published yet */
+    private var worldBounds = RectD.EMPTY
+    private var rasterWidth = 0
+    private var rasterHeight = 0
+
+    /** latest raster published by the worker */
+    private var image: BufferedImage? = null
+    private var imageWorldBounds = RectD.EMPTY
+
+    private val executor = Executors.newSingleThreadExecutor { Thread(it, "sbgn-overview").apply {
+        isDaemon = true
+        priority = Thread.MIN_PRIORITY
+    } }
+    @Volatile private var workerGeneration = 0
+    /** only accessed on the executor */
+    private var workImage: BufferedImage? = null
+
+    private val flushTimer = Timer(250) { flush() }.apply { isRepeats = false }
+
+    private var dragOffset: PointD? = null
+
+    private val nodeCreatedListener = IEventListener<ItemEventArgs<INode>> { _, args -> markDirty(args.item) }
+    private val nodeRemovedListener = IEventListener<NodeEventArgs> { _, args -> markDirty(args.item) }
+    private val nodeLayoutChangedListener = INodeLayoutChangedHandler { _, node, _ ->
+        markDirty(node)
+        graph.edgesAt(node).forEach { markDirty(it) }
+    }
+    private val isGroupNodeChangedListener = IEventListener<NodeEventArgs> { _, args -> markDirty(args.item) }
+    private val edgeCreatedListener = IEventListener<ItemEventArgs<IEdge>> { _, args -> markDirty(args.item) }
+    private val edgeRemovedListener = IEventListener<EdgeEventArgs> { _, args -> markDirty(args.item) }
+    private val edgePortsChangedListener = IEventListener<EdgeEventArgs> { _, args -> markDirty(args.item) }
+    private val portLocationChangedListener = IEventListener<ItemChangedEventArgs<IPort, IPortLocationModelParameter>> { _, args ->
+        graph.edgesAt(args.item).forEach { markDirty(it) }
+    }
+    private val bendAddedListener = IEventListener<ItemEventArgs<IBend>> { _, args -> markDirty(args.item.owner) }
+    private val bendRemovedListener = IEventListener<BendEventArgs> { _, args -> markDirty(args.owner) }
+    private val bendLocationChangedListener = IBendLocationChangedHandler { _, bend, _ -> markDirty(bend.owner) }
+    private val viewportChangedListener = IEventListener<PropertyChangedEventArgs> { _, _ -> repaint() }
+
+    init {
+        background = Color.WHITE
+        isOpaque = true
+        preferredSize = Dimension(200, 160)
+        cursor = Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR)
+        addComponentListener(object: ComponentAdapter() {
+            override fun componentResized(e: ComponentEvent) = invalidateAll()
+        })
+        val mouseHandler = object: MouseAdapter() {
+            override fun mousePressed(e: MouseEvent) {
+                val graphComponent = graphComponent ?: return
+                val location = toWorld(e.point) ?: return
+                val viewport = graphComponent.viewport
+                dragOffset = if(viewport.contains(location)) graphComponent.center - location else PointD.ORIGIN
+                graphComponent.center = location + dragOffset!!
+            }
+            override fun mouseDragged(e: MouseEvent) {
+                val offset = dragOffset ?: return
+                val location = toWorld(e.point) ?: return
+                graphComponent?.center = location + offset
+            }
+            override fun mouseReleased(e: MouseEvent) {
+                dragOffset = null
+                graphComponent?.requestFocusInWindow()
+            }
+        }
+        addMouseListener(mouseHandler)
+        addMouseMotionListener(mouseHandler)
+    }
+
+    /**
+     * shows the diagram of the given graph component. Changes of the graph are only tracked while attached.
+     */
+    fun attach(newGraphComponent: SbgnGraphComponent?) {
+        if(newGraphComponent == graphComponent) return
+        graphComponent?.let { oldGraphComponent ->
+            oldGraphComponent.graph.apply {
+                removeNodeCreatedListener(nodeCreatedListener)
+                removeNodeRemovedListener(nodeRemovedListener)
+                removeNodeLayoutChangedListener(nodeLayoutChangedListener)
+                removeIsGroupNodeChangedListener(isGroupNodeChangedListener)
+                removeEdgeCreatedListener(edgeCreatedListener)
+                removeEdgeRemovedListener(edgeRemovedListener)
+                removeEdgePortsChangedListener(edgePortsChangedListener)
+                removePortLocationParameterChangedListener(portLocationChangedListener)
+                removeBendAddedListener(bendAddedListener)
+                removeBendRemovedListener(bendRemovedListener)
+                removeBendLocationChangedListener(bendLocationChangedListener)
+            }
+            oldGraphComponent.removeViewportChangedListener(viewportChangedListener)
+        }
+        graphComponent = newGraphComponent
+        flushTimer.stop()
+        dirtyItems.clear()
+        drawnBounds.clear()
+        generation++
+        workerGeneration = generation
+        worldBounds = RectD.EMPTY
+        image = null
+        newGraphComponent?.let {
+            it.graph.apply {
+                addNodeCreatedListener(nodeCreatedListener)
+                addNodeRemovedListener(nodeRemovedListener)
+                addNodeLayoutChangedListener(nodeLayoutChangedListener)
+                addIsGroupNodeChangedListener(isGroupNodeChangedListener)
+                addEdgeCreatedListener(edgeCreatedListener)
+                addEdgeRemovedListener(edgeRemovedListener)
+                addEdgePortsChangedListener(edgePortsChangedListener)
+                addPortLocationParameterChangedListener(portLocationChangedListener)
+                addBendAddedListener(bendAddedListener)
+                addBendRemovedListener(bendRemovedListener)
+                addBendLocationChangedListener(bendLocationChangedListener)
+            }
+            it.addViewportChangedListener(viewportChangedListener)
+            invalidateAll()
+        }
+        repaint()
+    }
+
+    /**
+     * redraws the whole raster, e.g. after the panel has been resized.
+     */
+    fun invalidateAll() {
+        isFullRenderPending = true
+        scheduleFlush()
+    }
+
+    private fun markDirty(item: IModelItem) {
+        dirtyItems += item
+        scheduleFlush()
+    }
+
+    private fun scheduleFlush() {
+        // not restarted on each event, so the overview follows continuous edits like dragging
+        if(graphComponent != null && !flushTimer.isRunning) flushTimer.start()
+    }
+
+    private fun flush() {
+        if(graphComponent == null) return
+        if(dirtyItems.size > fullRenderRatio * (graph.nodes.size() + graph.edges.size())) isFullRenderPending = true
+        if(isFullRenderPending) {
+            dirtyItems.clear()
+            renderAll()
+            return
+        }
+        var region = RectD.EMPTY
+        dirtyItems.forEach { item ->
+            drawnBounds.remove(item)?.let {
+                region = RectD.add(region, it)
+                drawnGrid.remove(item, it)
+            }
+            if(graph.contains(item)) {
+                val bounds = getBounds(item)
+                drawnBounds[item] = bounds
+                drawnGrid.add(item, bounds)
+                region = RectD.add(region, bounds)
+            }
+        }
+        dirtyItems.clear()
+        if(region.isEmpty) return
+        if(!contains(worldBounds, region)) {
+            renderAll()
+            return
+        }
+        // queued behind the full render of this generation, so it draws into its raster
+        val task = createTask(false, region, worldBounds, rasterWidth, rasterHeight)
+        executor.execute { render(task) }
+    }
+
+    private fun renderAll() {
+        if(width <= 0 || height <= 0) {
+            // rendered once the panel gets a size
+            isFullRenderPending = true
+            return
+        }
+        isFullRenderPending = false
+        drawnBounds.clear()
+        graph.nodes.forEach { drawnBounds[it] = getBounds(it) }
+        graph.edges.forEach { drawnBounds[it] = getBounds(it) }
+        var contentBounds = RectD.EMPTY
+        drawnBounds.values.forEach { contentBounds = RectD.add(contentBounds, it) }
+        if(contentBounds.isEmpty) contentBounds = RectD(0.0, 0.0, 100.0, 100.0)
+        // some room to grow before the next full render
+        val margin = Math.max(contentBounds.width, contentBounds.height) * 0.1 + 20
+        worldBounds = contentBounds.getEnlarged(margin)
+        val scale = Math.min(Math.min(width / worldBounds.width, height / worldBounds.height),
+                maxRasterSize / Math.max(worldBounds.width, worldBounds.height))
+        rasterWidth = Math.max(1, Math.ceil(worldBounds.width * scale).toInt())
+        rasterHeight = Math.max(1, Math.ceil(worldBounds.height * scale).toInt())
+        drawnGrid = BoundsGrid(Math.max(worldBounds.width, worldBounds.height) / GRID_CELLS)
+        drawnBounds.forEach { item, bounds -> drawnGrid.add(item, bounds) }
+        generation++
+        workerGeneration = generation
+        val task = createTask(true, worldBounds, worldBounds, rasterWidth, rasterHeight)
+        executor.execute { render(task) }
+    }
+
+    private fun createTask(isFull: Boolean, region: RectD, worldBounds: RectD, width: Int, height: Int):RenderTask {
+        // anti-aliased strokes bleed into neighbouring pixels
+        val pixelSize = worldBounds.width / width
+        val paddedRegion = region.getEnlarged(2 * pixelSize)
+        val nodes = ArrayList<NodeRecord>()
+        val edges = ArrayList<EdgeRecord>()
+        val items = if(isFull) drawnBounds.keys else drawnGrid.query(paddedRegion)
+        items.forEach { item ->
+            val bounds = drawnBounds[item] ?: return@forEach
+            if(!intersects(paddedRegion, bounds)) return@forEach
+            when(item) {
+                is INode -> nodes += NodeRecord(bounds, graph.isGroupNode(item))
+                is IEdge -> edges += EdgeRecord(bounds, getPoints(item))
+            }
+        }
+        return RenderTask(generation, isFull, paddedRegion, worldBounds, width, height, background, nodes, edges)
+    }
+
+    private fun render(task: RenderTask) {
+        if(task.generation != workerGeneration) return
+        val image = if(task.isFull) BufferedImage(task.width, task.height, BufferedImage.TYPE_INT_RGB).also { workImage = it }
+                    else workImage ?: return
+        val scale = task.width / task.worldBounds.width
+        val g = image.createGraphics()
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON)
+            g.scale(scale, scale)
+            g.translate(-task.worldBounds.x, -task.worldBounds.y)
+            val region = Rectangle2D.Double(task.region.x, task.region.y, task.region.width, task.region.height)
+            g.clip(region)
+            g.color = task.background
+            g.fill(region)
+            g.color = groupNodeColor
+            task.nodes.filter { it.isGroup }.forEach { g.fill(toShape(it.bounds)) }
+            g.color = edgeColor
+            g.stroke = BasicStroke((1 / scale).toFloat())
+            task.edges.forEach { record ->
+                val path = Path2D.Double()
+                path.moveTo(record.points[0], record.points[1])
+                for(i in 2 until record.points.size step 2) path.lineTo(record.points[i], record.points[i + 1])
+                g.draw(path)
+            }
+            g.color = nodeColor
+            task.nodes.filter { !it.isGroup }.forEach { g.fill(toShape(it.bounds)) }
+        } finally {
+            g.dispose()
+        }
+        // the work raster keeps changing, the EDT gets a copy
+        val copy = BufferedImage(image.width, image.height, BufferedImage.TYPE_INT_RGB)
+        copy.createGraphics().apply {
+            drawImage(image, 0, 0, null)
+            dispose()
+        }
+        SwingUtilities.invokeLater {
+            if(task.generation == generation) {
+                this.image = copy
+                imageWorldBounds = task.worldBounds
+                repaint()
+            }
+        }
+    }
+
+    override fun paintComponent(g: Graphics) {
+        g.color = background
+        g.fillRect(0, 0, width, height)
+        val image = image ?: return
+        val transform = getTransform() ?: return
+        val (scale, offset) = transform
+        val g2 = g as Graphics2D
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR)
+        g2.drawImage(image, offset.x.toInt(), offset.y.toInt(),
+                (imageWorldBounds.width * scale).toInt(), (imageWorldBounds.height * scale).toInt(), null)
+        graphComponent?.viewport?.let { viewport ->
+            val rect = Rectangle2D.Double(offset.x + (viewport.x - imageWorldBounds.x) * scale, offset.y + (viewport.y - imageWorldBounds.y) * scale,
+                    viewport.width * scale, viewport.height * scale)
+            g2.color = Color(viewportColor.red, viewportColor.green, viewportColor.blue, 40)
+            g2.fill(rect)
+            g2.color = viewportColor
+            g2.stroke = BasicStroke(2f)
+            g2.draw(rect)
+        }
+    }
+
+    /** scale and offset that fit the raster into the panel */
+    private fun getTransform():Pair<Double, PointD>? {
+        if(imageWorldBounds.isEmpty || width <= 0 || height <= 0) return null
+        val scale = Math.min(width / imageWorldBounds.width, height / imageWorldBounds.height)
+        return Pair(scale, PointD((width - imageWorldBounds.width * scale) / 2, (height - imageWorldBounds.height * scale) / 2))
+    }
+
+    private fun toWorld(point: Point):PointD? {
+        val (scale, offset) = getTransform() ?: return null
+        return PointD(imageWorldBounds.x + (point.x - offset.x) / scale, imageWorldBounds.y + (point.y - offset.y) / scale)
+    }
+
+    private fun getBounds(item: IModelItem):RectD {
+        return when(item) {
+            is INode -> item.layout.toRectD()
+            is IEdge -> {
+                val points = getPoints(item)
+                var minX = points[0]; var minY = points[1]; var maxX = minX; var maxY = minY
+                for(i in 2 until points.size step 2) {
+                    minX = Math.min(minX, points[i]); maxX = Math.max(maxX, points[i])
+                    minY = Math.min(minY, points[i + 1]); maxY = Math.max(maxY, points[i + 1])
+                }
+                RectD(minX, minY, maxX - minX, maxY - minY)
+            }
+            else -> RectD.EMPTY
+        }
+    }
+
+    private fun getPoints(edge: IEdge):DoubleArray {
+        val points = DoubleArray(4 + 2 * edge.bends.size())
+        val source = edge.sourcePort.location
+        val target = edge.targetPort.location
+        points[0] = source.x
+        points[1] = source.y
+        edge.bends.forEachIndexed { index, bend ->
+            points[2 + 2 * index] = bend.location.x
+            points[3 + 2 * index] = bend.location.y
+        }
+        points[points.size - 2] = target.x
+        points[points.size - 1] = target.y
+        return points
+    }
+
+    private fun toShape(bounds: RectD) = Rectangle2D.Double(bounds.x, bounds.y, bounds.width, bounds.height)
+
+    private fun intersects(a: RectD, b: RectD) =
+            a.x <= b.x + b.width && b.x <= a.x + a.width && a.y <= b.y + b.height && b.y <= a.y + a.height
+
+    private fun contains(outer: RectD, inner: RectD) = !outer.isEmpty &&
+            inner.x >= outer.x && inner.y >= outer.y && inner.x + inner.width <= outer.x + outer.width && inner.y + inner.height <= outer.y + outer.height
+
+    /** items by the square cells their bounds overlap, so that a region is looked up without visiting all items */
+    private class BoundsGrid(val cellSize: Double) {
+        private val cells = HashMap<Long, MutableList<IModelItem>>()
+
+        fun add(item: IModelItem, bounds: RectD) = forEachCell(bounds) { key -> cells.getOrPut(key) { ArrayList(4) } += item }
+
+        fun remove(item: IModelItem, bounds: RectD) = forEachCell(bounds) { key ->
+            cells[key]?.let {
+                it -= item
+                if(it.isEmpty()) cells.remove(key)
+            }
+        }
+
+        fun query(region: RectD):Set<IModelItem> {
+            val result = LinkedHashSet<IModelItem>()
+            forEachCell(region) { key -> cells[key]?.let { result += it } }
+            return result
+        }
+
+        private inline fun forEachCell(bounds: RectD, action: (Long) -> Unit) {
+            if(bounds.isEmpty) return
+            val minX = Math.floor(bounds.x / cellSize).toLong()
+            val minY = Math.floor(bounds.y / cellSize).toLong()
+            val maxX = Math.floor((bounds.x + bounds.width) / cellSize).toLong()
+            val maxY = Math.floor((bounds.y + bounds.height) / cellSize).toLong()
+            for(x in minX..maxX) for(y in minY..maxY) action((x shl 32) or (y and 0xffffffffL))
+        }
+    }
+
+    companion object {
+        /** cells of the grid along the longer side of the raster area */
+        private const val GRID_CELLS = 64
+    }
+}
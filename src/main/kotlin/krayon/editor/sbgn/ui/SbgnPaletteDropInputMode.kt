@@ -16,6 +16,7 @@ import krayon.editor.base.command.ApplicationCommand
 import krayon.editor.base.command.CommandScope
 import krayon.editor.base.model.IModelItemFeature
 import krayon.editor.base.ui.GraphPaletteDropInputMode
+import krayon.editor.base.ui.PaletteTransferData
 import krayon.editor.base.util.beginEdit
 import krayon.editor.base.util.geim
 import krayon.editor.base.util.convertToRatioPoint
@@ -26,8 +27,9 @@ import krayon.editor.sbgn.layout.RotateTransformation
 import krayon.editor.sbgn.model.*
 import krayon.editor.sbgn.style.SbgnBuilder
 import java.awt.dnd.DropTargetDragEvent
+import java.util.*
 
-class SbgnPaletteDropInputMode(paletteGraph: IGraph) : GraphPaletteDropInputMode(paletteGraph) {
+class SbgnPaletteDropInputMode(transferData: PaletteTransferData) : GraphPaletteDropInputMode(transferData) {
 
     private val nodeDropSupport = DragNodesManager()
     private val constraintManager get() = inputModeContext.sbgnConstraintManager
@@ -59,16 +61,33 @@ class SbgnPaletteDropInputMode(paletteGraph: IGraph) : GraphPaletteDropInputMode
         return false //handle own reparenting
     }
 
+    /**
+     * (palette item type x target node type) matrix of type-only accept checks. Rows are filled on first use and
+     * dropped at drag start, since the constraint level may have changed.
+     */
+    private val acceptMatrix = EnumMap<SbgnType, BooleanArray>(SbgnType::class.java)
+
+    private fun isAccepting(itemType: SbgnType, nodeType: SbgnType, check: (SbgnType) -> Boolean):Boolean {
+        return acceptMatrix.getOrPut(itemType) { BooleanArray(SbgnType.values().size) { check(SbgnType.values()[it]) } }[nodeType.ordinal]
+    }
+
+    override fun onDragEntered(event: DropTargetDragEvent) {
+        acceptMatrix.clear()
+        super.onDragEntered(event)
+    }
+
     override fun isAcceptingLabel(edge: IEdge, paletteLabel: ILabel) = constraintManager.isEdgeAcceptingLabel(edge, paletteLabel.type)
-    override fun isAcceptingLabel(node: INode, paletteLabel: ILabel) = constraintManager.isNodeAcceptingLabel(node, paletteLabel.type)
-    override fun isAcceptingPort(node: INode, palettePort: IPort): Boolean = constraintManager.isNodeAcceptingPort(node.type, palettePort.type)
+    override fun isAcceptingLabel(node: INode, paletteLabel: ILabel) = isAccepting(paletteLabel.type, node.type) { constraintManager.isNodeTypeAcceptingLabel(it, paletteLabel.type) }
+    override fun isAcceptingPort(node: INode, palettePort: IPort): Boolean = isAccepting(palettePort.type, node.type) { constraintManager.isNodeAcceptingPort(it, palettePort.type) }
 
     override fun isAcceptingFeature(node: INode, feature: IModelItemFeature): Boolean {
         //TODO: move to constraintManager
-        return when(feature.type) {
-            SbgnType.CLONE_MARKER ->  node.type.canCarryCloneMarker()
-            SbgnType.MULTIMER -> node.type.isMultimer() || node.type.canBeMultimer()
-            else -> false
+        return isAccepting(feature.type, node.type) { nodeType ->
+            when(feature.type) {
+                SbgnType.CLONE_MARKER -> nodeType.canCarryCloneMarker()
+                SbgnType.MULTIMER -> nodeType.isMultimer() || nodeType.canBeMultimer()
+                else -> false
+            }
         }
     }
 
@@ -167,7 +186,7 @@ class SbgnPaletteDropInputMode(paletteGraph: IGraph) : GraphPaletteDropInputMode
     override fun cleanup() {
         super.cleanup()
         if(snapNode != null) {
-            transferGraph.setNodeLayout(snapNode, originalLayout)
+            if(transferGraph.contains(snapNode)) transferGraph.setNodeLayout(snapNode, originalLayout)
             snapNode = null
             originalLayout = null
         }
@@ -217,6 +236,7 @@ class SbgnPaletteDropInputMode(paletteGraph: IGraph) : GraphPaletteDropInputMode
         override fun execute(param: Any?) {
             (graphComponent.geim.mutexOwner as? SbgnPaletteDropInputMode)?.let {
                 executeDragItemCommand(it, param)
+                it.onTransferDataModified()
                 //necessary rotation and mirror commands that involve tag nodes
                 it.updatePreview(it.transferGraph, it.mousePosition.toPointD())
                 it.updatePreviewLabels(it.transferGraph)
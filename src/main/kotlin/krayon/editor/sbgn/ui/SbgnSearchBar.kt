@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.editor.sbgn.ui
+
+import com.yworks.yfiles.graph.INode
+import krayon.editor.base.style.HighlightNodesManager
+import krayon.editor.base.ui.JHintingTextField
+import krayon.editor.base.ui.UiFactory
+import krayon.editor.sbgn.model.SbgnSearchIndex
+import java.awt.BorderLayout
+import java.awt.FlowLayout
+import java.awt.event.KeyEvent
+import javax.swing.*
+import javax.swing.event.DocumentEvent
+import javax.swing.event.DocumentListener
+
+/**
+ * Searches the nodes of a graph component via its [SbgnSearchIndex] while typing. Matches are highlighted. Enter
+ * zooms to the next match, shift Enter to the previous one, Escape closes the bar.
+ */
+class SbgnSearchBar : JPanel(BorderLayout()) {
+
+    /** maximum zoom used when zooming to a match */
+    var maxZoom = 1.5
+    /** only the first matches are highlighted, highlights are costly on huge result sets */
+    var maxHighlights = 500
+
+    /** called when the bar asks to be closed */
+    val closeListeners = mutableListOf<() -> Unit>()
+
+    private val queryField = JHintingTextField(30)
+    private val resultLabel = JLabel()
+    private var graphComponent: SbgnGraphComponent? = null
+    private var matches = emptyList<INode>()
+    private var currentIndex = -1
+
+    init {
+        border = BorderFactory.createEmptyBorder(2, 5, 2, 5)
+        queryField.putClientProperty("emptyTextHint", "Search names, state variables, units... (type:macro, is:clone, typo~)")
+        queryField.document.addDocumentListener(object: DocumentListener {
+            override fun insertUpdate(e: DocumentEvent) = updateMatches()
+            override fun removeUpdate(e: DocumentEvent) = updateMatches()
+            override fun changedUpdate(e: DocumentEvent) = updateMatches()
+        })
+        queryField.getInputMap(JComponent.WHEN_FOCUSED).apply {
+            put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "nextMatch")
+            put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, KeyEvent.SHIFT_DOWN_MASK), "previousMatch")
+            put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "close")
+        }
+        queryField.actionMap.apply {
+            put("nextMatch", UiFactory.createAction { showMatch(currentIndex + 1) })
+            put("previousMatch", UiFactory.createAction { showMatch(currentIndex - 1) })
+            put("close", UiFactory.createAction { closeListeners.toList().forEach { it() } })
+        }
+
+        val buttons = JPanel(FlowLayout(FlowLayout.LEFT, 4, 0)).apply {
+            add(JButton(UiFactory.createAction { showMatch(currentIndex - 1) }).apply { text = "Previous" })
+            add(JButton(UiFactory.createAction { showMatch(currentIndex + 1) }).apply { text = "Next" })
+            add(JButton(UiFactory.createAction { selectAllMatches() }).apply { text = "Select All" })
+            add(resultLabel)
+        }
+        add(queryField, BorderLayout.CENTER)
+        add(buttons, BorderLayout.EAST)
+    }
+
+    /**
+     * Searches the given graph component. Highlights of the previous component are removed.
+     */
+    fun attach(newGraphComponent: SbgnGraphComponent?) {
+        clearHighlights()
+        graphComponent = newGraphComponent
+        updateMatches()
+    }
+
+    fun focusQuery() {
+        queryField.requestFocusInWindow()
+        queryField.selectAll()
+    }
+
+    fun selectAllMatches() {
+        val graphComponent = graphComponent ?: return
+        graphComponent.selection.clear()
+        matches.filter { graphComponent.graph.contains(it) }.forEach { graphComponent.selection.setSelected(it, true) }
+        graphComponent.requestFocusInWindow()
+    }
+
+    private fun updateMatches() {
+        clearHighlights()
+        val graphComponent = graphComponent
+        matches = if(graphComponent != null && isVisible) graphComponent.searchIndex.search(queryField.text) else emptyList()
+        currentIndex = -1
+        resultLabel.text = when {
+            queryField.text.isBlank() -> ""
+            matches.isEmpty() -> "No matches"
+            matches.size == 1 -> "1 match"
+            else -> "${matches.size} matches"
+        }
+        graphComponent?.lookup(HighlightNodesManager::class.java)?.let { highlightManager ->
+            matches.take(maxHighlights).forEachIndexed { index, node ->
+                highlightManager.addHighlight(node, "${index + 1}", HIGHLIGHT_GROUP)
+            }
+        }
+    }
+
+    private fun clearHighlights() {
+        graphComponent?.lookup(HighlightNodesManager::class.java)?.clearHighlights(HIGHLIGHT_GROUP)
+    }
+
+    private fun showMatch(index: Int) {
+        val graphComponent = graphComponent ?: return
+        if(matches.isEmpty()) return
+        currentIndex = Math.floorMod(index, matches.size)
+        val node = matches[currentIndex]
+        if(!graphComponent.graph.contains(node)) return
+        resultLabel.text = "${currentIndex + 1} of ${matches.size}"
+        val bounds = node.layout.toRectD().getEnlarged(40.0)
+        graphComponent.selection.clear()
+        graphComponent.selection.setSelected(node, true)
+        val zoom = Math.min(maxZoom, Math.min(graphComponent.width / bounds.width, graphComponent.height / bounds.height))
+        graphComponent.zoomTo(bounds.center, zoom)
+    }
+
+    companion object {
+        private const val HIGHLIGHT_GROUP = "search"
+    }
+}
@@ -171,8 +171,12 @@ class StyleManagementToolBar(val styleManager: StyleManager<SbgnType>, val palet
 
     private fun onDiagramLoaded() = { event:ApplicationEvent ->
         if (event.type == "DIAGRAM.LOADED") {
-            //remove previous file-local styles
-            styleManager.styles.filter { style -> style.isFileLocal }.forEach(styleManager::removeStyle)
+            //remove previous file-local styles, unless another open diagram uses them
+            val stylesInUse = Application.graphComponents.filter { it !== Application.focusedGraphComponent }.flatMap { otherGraphComponent ->
+                val otherGraph = otherGraphComponent.graph
+                (otherGraph.nodes + otherGraph.edges).mapNotNull { it.graphStyle } + listOfNotNull((otherGraphComponent as? SbgnGraphComponent)?.graphStyle)
+            }.toSet()
+            styleManager.styles.filter { style -> style.isFileLocal && style !in stylesInUse }.forEach(styleManager::removeStyle)
             if (!styleManager.styles.contains(styleManager.currentStyle)) {
                 styleManager.currentStyle = styleManager.getDefaultStyle()
             }
@@ -183,18 +187,19 @@ class StyleManagementToolBar(val styleManager: StyleManager<SbgnType>, val palet
             val fileStyles = stylableModelItems.mapNotNull { it.graphStyle }.toMutableSet()
             graphComponent.graphStyle?.let { fileStyles += it }
 
-            //if fileStyle matches managed style replace references in nodes, edges, and graphcomponent
-            styleManager.styles.forEach { style ->
-                fileStyles.find { it === style || it.styleTemplateMap == style.styleTemplateMap }?.let { fileStyle ->
-                    stylableModelItems.forEach {
-                        if(it.graphStyle == fileStyle) it.graphStyle = style
-                    }
-                    if(graphComponent.graphStyle == fileStyle) graphComponent.graphStyle = style
-                    fileStyles.remove(fileStyle)
+            //if fileStyle matches managed style replace references in nodes, edges, and graphcomponent.
+            //remaining file styles get added to manager.
+            val replacements = mutableMapOf<SbgnStyle, SbgnStyle>()
+            fileStyles.forEach { fileStyle ->
+                val style = styleManager.internStyle(fileStyle)
+                if(style !== fileStyle) replacements[fileStyle] = style
+            }
+            if(replacements.isNotEmpty()) {
+                stylableModelItems.forEach { item ->
+                    item.graphStyle?.let { replacements[it] }?.let { item.graphStyle = it }
                 }
+                graphComponent.graphStyle?.let { replacements[it] }?.let { graphComponent.graphStyle = it }
             }
-            //add remaining file styles to manager
-            fileStyles.forEach(styleManager::addStyle)
 
             //update combobox items. try no to change selected item.
             (0 until styleComboBox.itemCount).map { styleComboBox.getItemAt(it) }.forEach {
@@ -231,7 +236,7 @@ class StyleManagementToolBar(val styleManager: StyleManager<SbgnType>, val palet
     }
 
     private fun updateDiagram() {
-        (Application.focusedGraphComponent as SbgnGraphComponent).let { graphComponent ->
+        Application.graphComponents.filterIsInstance<SbgnGraphComponent>().forEach { graphComponent ->
             val graph = graphComponent.graph
             graph.nodes.forEach {
                 if(it.graphStyle == currentStyle) styleManager.applyStyle(currentStyle, graph, it, false)
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.util
+
+import java.io.Writer
+import java.util.*
+
+/**
+ * Per-frame render statistics: frame paint time, created and updated visuals, paint time per style or visual class,
+ * and cache hit rates. Nothing is recorded unless [isEnabled] is set. Paint times are inclusive, i.e. a style
+ * visual containing a TextVisual contributes to both.
+ */
+object RenderMetrics {
+
+    class FrameRecord(val timestamp:Long, val frameNanos:Long, val createdVisuals:Int, val updatedVisuals:Int, val paintNanos:Map<String, Long>)
+
+    var isEnabled = false
+        set(value) {
+            field = value
+            if(!value) frameStart = 0L
+        }
+
+    /** number of frames kept for percentiles and CSV output */
+    var capacity = 600
+
+    val frames = ArrayDeque<FrameRecord>()
+
+    private var frameStart = 0L
+    private var createdVisuals = 0
+    private var updatedVisuals = 0
+    private val paintNanos = HashMap<String, Long>()
+    private val cacheAccesses = LinkedHashMap<String, LongArray>()
+
+    fun beginFrame() {
+        if(!isEnabled) return
+        frameStart = System.nanoTime()
+        createdVisuals = 0
+        updatedVisuals = 0
+        paintNanos.clear()
+    }
+
+    fun endFrame() {
+        if(!isEnabled || frameStart == 0L) return
+        frames.addLast(FrameRecord(System.currentTimeMillis(), System.nanoTime() - frameStart, createdVisuals, updatedVisuals, HashMap(paintNanos)))
+        while(frames.size > capacity) frames.removeFirst()
+        frameStart = 0L
+    }
+
+    /**
+     * returns a start time to be passed to [addPaintTime], or 0 if metrics are disabled.
+     */
+    fun startTimer() = if(isEnabled) System.nanoTime() else 0L
+
+    fun addPaintTime(key:String, startTime:Long) {
+        if(startTime == 0L) return
+        paintNanos[key] = (paintNanos[key] ?: 0L) + System.nanoTime() - startTime
+    }
+
+    fun countCreatedVisual() {
+        if(isEnabled) createdVisuals++
+    }
+
+    fun countUpdatedVisual() {
+        if(isEnabled) updatedVisuals++
+    }
+
+    fun countCacheAccess(cacheName:String, isHit:Boolean) {
+        if(!isEnabled) return
+        cacheAccesses.getOrPut(cacheName) { LongArray(2) }[if(isHit) 0 else 1]++
+    }
+
+    fun getCacheHitRates():Map<String, Double> {
+        return cacheAccesses.mapValues { (_, counts) -> counts[0].toDouble() / Math.max(1L, counts[0] + counts[1]) }
+    }
+
+    val paintKeys:Set<String> get() = frames.flatMapTo(TreeSet()) { it.paintNanos.keys }
+
+    fun getFrameTimePercentile(percentile:Double) = percentile(frames.map { it.frameNanos }, percentile)
+
+    fun getPaintTimePercentile(key:String, percentile:Double) = percentile(frames.map { it.paintNanos[key] ?: 0L }, percentile)
+
+    private fun percentile(values:List<Long>, percentile:Double):Long {
+        if(values.isEmpty()) return 0L
+        val sorted = values.sorted()
+        return sorted[Math.min(sorted.size - 1, (percentile * sorted.size).toInt())]
+    }
+
+    fun reset() {
+        frames.clear()
+        cacheAccesses.clear()
+        frameStart = 0L
+    }
+
+    /**
+     * writes one line per recorded frame. Times are in microseconds.
+     */
+    fun writeCsv(writer: Writer) {
+        val keys = paintKeys.toList()
+        writer.appendln((listOf("timestamp", "frame", "created", "updated") + keys).joinToString(","))
+        frames.forEach { frame ->
+            val values = listOf(frame.timestamp, frame.frameNanos / 1000, frame.createdVisuals, frame.updatedVisuals) +
+                    keys.map { (frame.paintNanos[it] ?: 0L) / 1000 }
+            writer.appendln(values.joinToString(","))
+        }
+        getCacheHitRates().forEach { (name, hitRate) ->
+            writer.appendln("# cache $name hit rate ${"%.3f".format(Locale.US, hitRate)}")
+        }
+    }
+}
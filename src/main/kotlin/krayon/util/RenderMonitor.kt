@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018 Roland Wiese
+ * This software is licensed under the Apache License, Version 2.0 (the "License"); you may not use this software except
+ * in compliance with the License. You may obtain a copy of the License at  http://www.apache.org/licenses/LICENSE-2.0.
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package krayon.util
+
+import com.yworks.yfiles.graph.IEdge
+import com.yworks.yfiles.graph.ILabel
+import com.yworks.yfiles.graph.INode
+import com.yworks.yfiles.graph.IPort
+import com.yworks.yfiles.view.*
+import java.awt.Color
+import java.awt.Font
+import java.awt.Graphics2D
+import java.awt.Paint
+
+/**
+ * Performance overlay, companion of [EventMonitor]. While running, the graph model manager descriptors get wrapped so
+ * that visual creation and paint time can be attributed to the style class of each item. Statistics are kept by
+ * [RenderMetrics].
+ */
+class RenderMonitor(private val graphComponent: GraphComponent) {
+
+    var textColor = Color.BLACK!!
+    var background: Paint? = Color(255, 255, 255, 200)
+    var font = Font("Dialog", Font.PLAIN, 12)
+    /** number of style classes listed in the overlay */
+    var maxStyleLines = 8
+
+    var isRunning = false
+        private set
+
+    private var frameStartObject: ICanvasObject? = null
+    private var overlayObject: ICanvasObject? = null
+    private val originalDescriptors = mutableListOf<() -> Unit>()
+
+    fun start() {
+        if(isRunning) return
+        isRunning = true
+        RenderMetrics.reset()
+        RenderMetrics.isEnabled = true
+        wrapDescriptors()
+        frameStartObject = graphComponent.rootGroup.addChild(frameStartCreator, ICanvasObjectDescriptor.ALWAYS_DIRTY_INSTANCE).apply { toBack() }
+        overlayObject = graphComponent.rootGroup.addChild(overlayCreator, ICanvasObjectDescriptor.ALWAYS_DIRTY_INSTANCE)
+        graphComponent.invalidate()
+    }
+
+    fun stop() {
+        if(!isRunning) return
+        isRunning = false
+        RenderMetrics.isEnabled = false
+        originalDescriptors.forEach { it() }
+        originalDescriptors.clear()
+        frameStartObject?.remove()
+        overlayObject?.remove()
+        frameStartObject = null
+        overlayObject = null
+        graphComponent.invalidate()
+    }
+
+    private fun wrapDescriptors() {
+        with(graphComponent.graphModelManager) {
+            val nodes = nodeDescriptor
+            val edges = edgeDescriptor
+            val nodeLabels = nodeLabelDescriptor
+            val edgeLabels = edgeLabelDescriptor
+            val ports = portDescriptor
+            nodeDescriptor = MeasuringDescriptor(nodes)
+            edgeDescriptor = MeasuringDescriptor(edges)
+            nodeLabelDescriptor = MeasuringDescriptor(nodeLabels)
+            edgeLabelDescriptor = MeasuringDescriptor(edgeLabels)
+            portDescriptor = MeasuringDescriptor(ports)
+            originalDescriptors += {
+                nodeDescriptor = nodes
+                edgeDescriptor = edges
+                nodeLabelDescriptor = nodeLabels
+                edgeLabelDescriptor = edgeLabels
+                portDescriptor = ports
+            }
+        }
+    }
+
+    private class MeasuringDescriptor(private val delegate: ICanvasObjectDescriptor) : ICanvasObjectDescriptor by delegate {
+        override fun getVisualCreator(forUserObject: Any?): IVisualCreator {
+            val styleKey = when(forUserObject) {
+                is INode -> forUserObject.style.javaClass.simpleName
+                is IEdge -> forUserObject.style.javaClass.simpleName
+                is ILabel -> forUserObject.style.javaClass.simpleName
+                is IPort -> forUserObject.style.javaClass.simpleName
+                else -> forUserObject?.javaClass?.simpleName ?: "?"
+            }
+            return MeasuringVisualCreator(delegate.getVisualCreator(forUserObject), styleKey)
+        }
+    }
+
+    private class MeasuringVisualCreator(private val delegate: IVisualCreator, private val key:String) : IVisualCreator {
+        override fun createVisual(context: IRenderContext): IVisual? {
+            RenderMetrics.countCreatedVisual()
+            return delegate.createVisual(context)?.let { MeasuredVisual(it, key) }
+        }
+
+        override fun updateVisual(context: IRenderContext, oldVisual: IVisual?): IVisual? {
+            val measured = oldVisual as? MeasuredVisual
+            RenderMetrics.countUpdatedVisual()
+            val visual = delegate.updateVisual(context, measured?.delegate ?: oldVisual) ?: return null
+            return if(measured != null && measured.delegate === visual) measured else MeasuredVisual(visual, key)
+        }
+    }
+
+    private class MeasuredVisual(val delegate: IVisual, private val key:String) : IVisual {
+        override fun paint(context: IRenderContext, g: Graphics2D) {
+            val startTime = RenderMetrics.startTimer()
+            delegate.paint(context, g)
+            RenderMetrics.addPaintTime(key, startTime)
+        }
+    }
+
+    private val frameStartCreator = object: IVisualCreator {
+        private val visual = IVisual { _, _ -> RenderMetrics.beginFrame() }
+        override fun createVisual(context: IRenderContext) = visual
+        override fun updateVisual(context: IRenderContext, oldVisual: IVisual?) = visual
+    }
+
+    private val overlayCreator = object: IVisualCreator {
+        private val visual = IVisual { context, g -> paintOverlay(context, g) }
+        override fun createVisual(context: IRenderContext) = visual
+        override fun updateVisual(context: IRenderContext, oldVisual: IVisual?) = visual
+    }
+
+    private fun paintOverlay(context: IRenderContext, g: Graphics2D) {
+        RenderMetrics.endFrame()
+        val lines = createDisplayLines()
+        val gfx = g.create() as Graphics2D
+        gfx.transform(context.toViewTransform)
+        gfx.font = font
+        val metrics = gfx.fontMetrics
+        val width = lines.map { metrics.stringWidth(it) }.max() ?: 0
+        val lineHeight = metrics.height
+        background?.let {
+            gfx.paint = it
+            gfx.fillRect(10, 10, width + 20, lines.size * lineHeight + 16)
+        }
+        gfx.paint = textColor
+        lines.forEachIndexed { index, line ->
+            gfx.drawString(line, 20, 18 + metrics.ascent + index * lineHeight)
+        }
+        gfx.dispose()
+    }
+
+    private fun createDisplayLines():List<String> {
+        val lines = mutableListOf<String>()
+        with(RenderMetrics) {
+            val lastFrame = frames.peekLast()
+            lines += "frame  p50 ${getFrameTimePercentile(0.5).toMillis()}  p90 ${getFrameTimePercentile(0.9).toMillis()}  p99 ${getFrameTimePercentile(0.99).toMillis()} ms  (${frames.size} frames)"
+            lines += "visuals  created ${lastFrame?.createdVisuals ?: 0}  updated ${lastFrame?.updatedVisuals ?: 0}"
+            paintKeys.map { it to getPaintTimePercentile(it, 0.9) }.sortedByDescending { it.second }.take(maxStyleLines).forEach { (key, p90) ->
+                lines += "$key  p50 ${getPaintTimePercentile(key, 0.5).toMillis()}  p90 ${p90.toMillis()} ms"
+            }
+            getCacheHitRates().forEach { (name, hitRate) ->
+                lines += "cache $name  hit rate ${(hitRate * 100).toInt()}%"
+            }
+        }
+        return lines
+    }
+
+    private fun Long.toMillis() = "%.2f".format(this / 1000000.0)
+}